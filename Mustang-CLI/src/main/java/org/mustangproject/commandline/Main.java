@@ -56,6 +56,10 @@ import org.mustangproject.ZUGFeRD.ZUGFeRDExporterFromA1;
 import org.mustangproject.ZUGFeRD.ZUGFeRDExporterFromPDFA;
 import org.mustangproject.ZUGFeRD.ZUGFeRDImporter;
 import org.mustangproject.ZUGFeRD.ZUGFeRDVisualizer;
+import org.mustangproject.validator.EValidationLevel;
+import org.mustangproject.validator.SchematronCache;
+import org.mustangproject.validator.SchematronProfiler;
+import org.mustangproject.validator.ValidationReportWriter;
 import org.mustangproject.validator.ZUGFeRDValidator;
 import org.slf4j.LoggerFactory;
 
@@ -70,7 +74,7 @@ public class Main {
 	}
 
 	private static String getUsage() {
-		return "Usage: --action metrics|combine|extract|a3only|ubl|validate|validateExpectInvalid|validateExpectValid|visualize [-d,--directory] [-l,--listfromstdin] [-i,--ignore fileextension, PDF/A errors] [--disable-file-logging] | [-h,--help] \r\n"
+		return "Usage: --action metrics|combine|extract|a3only|ubl|validate|validateExpectInvalid|validateExpectValid|visualize|serve [-d,--directory] [-l,--listfromstdin] [-i,--ignore fileextension, PDF/A errors] [--disable-file-logging] | [-h,--help] \r\n"
 				+ "        --action license   display open source license and notice\n"
 				+ "        --action metrics\n"
 				+ "          -d, --directory count ZUGFeRD files in directory to be scanned\n"
@@ -112,17 +116,26 @@ public class Main {
 				+ "        --action validate  validate XML or PDF file \n"
 				+ "                [--no-notices]: refrain from reporting notices\n"
 				+ "                [--no-arithmetic-check]: skip the arithmetic recalculation check\n"
+				+ "                [--timings]: report how long each stage of the validation took\n"
+				+ "                [--validation-level <level>]: wellformed, xsd, schematron (main schematron only) or full (default)\n"
+				+ "                [--fail-fast]: skip the remaining stages once a stage reported an error\n"
+				+ "                [--aggregate <n>]: report repeated findings of a rule once, with a count and up to n locations\n"
+				+ "                [--report-format <xml|json>]: write the report while validating, as XML (default) or JSON\n"
+				+ "                [--compact]: write the report without indentation\n"
+				+ "                [--schematron-profile <filename>]: write how often and how long each schematron rule ran, as .csv or .json\n"
 				+ "                [--logAppend <text>]: text to be added to log line\n"
 				+ "                Additional parameters (optional - user will be prompted if not defined)\n"
 				+ "                [--source <filename>]: input PDF or XML file\n"
 				+ "                [--log-as-pdf]: save log output as pdf\n"
 				+ "        --action validateExpectInvalid  validate directory recursively expecting negative results \n"
 				+ "                [--no-notices]: refrain from reporting notices\n"
+				+ "                [--schematron-profile <filename>]: write the schematron rule profile of all files, as .csv or .json\n"
 				+ "                Additional parameters (user will be prompted if not defined)\n"
 				+ "                -d, --directory to check recursively\n"
 				+ "                --exclude: comma-separated list of filenames to ignore\n"
 				+ "        --action validateExpectValid  validate directory recursively expecting positive results \n"
 				+ "                [--no-notices]: refrain from reporting notices\n"
+				+ "                [--schematron-profile <filename>]: write the schematron rule profile of all files, as .csv or .json\n"
 				+ "                Additional parameters (user will be prompted if not defined)\n"
 				+ "                -d, --directory to check recursively \n"
 				+ "                --exclude: comma-separated list of filenames to ignore\n"
@@ -132,7 +145,16 @@ public class Main {
 				+ "                [--out <filename>]: set output HTML file\n"
 				+ "        --action pdf  convert XML to PDF \n"
 				+ "                [--source <filename>]: set input XML file\n"
-				+ "                [--out <filename>]: set output PDF file\n";
+				+ "                [--out <filename>]: set output PDF file\n"
+				+ "        --action serve  keep running and accept jobs via HTTP on 127.0.0.1\n"
+				+ "                POST /validate, /visualize, /pdf, /extract, /ubl, /combine or /custom-action/<name>\n"
+				+ "                with the file as body or ?source=<filename>, GET /health and /metrics\n"
+				+ "                every request needs the header Authorization: Bearer <token>, the token is printed at start\n"
+				+ "                [--port <number>]: TCP port, default " + MustangServer.DEFAULT_PORT + "\n"
+				+ "                [--threads <number>]: jobs processed concurrently, default number of cores\n"
+				+ "                [--root <directory>]: allow jobs to read and write local files below this directory\n"
+				+ "                [--schematron-profile <filename>]: profile the schematron rules, served at GET /schematron-profile\n"
+				+ "                and written to the file on shutdown\n";
 	}
 
 	private static void printHelp() {
@@ -459,6 +481,13 @@ public class Main {
 			options.addOption(new Option("out", "out", true, "which output file to write to"));
 			options.addOption(new Option("no-notices", "no-notices", false, "suppress non-fatal errors"));
 			options.addOption(new Option("no-arithmetic-check", "no-arithmetic-check", false, "skip the arithmetic recalculation check during validation"));
+			options.addOption(new Option("timings", "timings", false, "add the duration of each validation stage to the report"));
+			options.addOption(new Option("validation-level", "validation-level", true, "wellformed, xsd, schematron or full"));
+			options.addOption(new Option("fail-fast", "fail-fast", false, "skip the remaining validation stages once a stage reported an error"));
+			options.addOption(new Option("aggregate", "aggregate", true, "report repeated findings of a rule once, listing up to this many locations"));
+			options.addOption(new Option("report-format", "report-format", true, "xml or json validation report, written while validating"));
+			options.addOption(new Option("compact", "compact", false, "validation report without indentation"));
+			options.addOption(new Option("schematron-profile", "schematron-profile", true, "file to write the schematron rule profile to"));
 			options.addOption(
 					new Option("logAppend", "logAppend", true, "freeform text to be appended to log messages"));
 			options.addOption(
@@ -469,6 +498,9 @@ public class Main {
 			options.addOption(new Option("log-as-pdf", "log-as-pdf", false, "saving log output to pdf file"));
 			options.addOption(new Option("profileID", "profileID", true, "set profile ID"));
 			options.addOption(new Option("customizationID", "customizationID", true, "set customization ID"));
+			options.addOption(new Option("port", "port", true, "TCP port to serve on"));
+			options.addOption(new Option("threads", "threads", true, "number of jobs served concurrently"));
+			options.addOption(new Option("root", "root", true, "directory with the local files jobs may use"));
 
 			boolean optionsRecognized = false;
 			String action = "";
@@ -493,6 +525,13 @@ public class Main {
 				String lang = cmd.getOptionValue("language");
 				boolean noNotices = cmd.hasOption("no-notices");
 				boolean noArithmeticCheck = cmd.hasOption("no-arithmetic-check");
+				boolean timings = cmd.hasOption("timings");
+				String validationLevel = cmd.getOptionValue("validation-level");
+				boolean failFast = cmd.hasOption("fail-fast");
+				String aggregate = cmd.getOptionValue("aggregate");
+				String reportFormat = cmd.getOptionValue("report-format");
+				boolean compactReport = cmd.hasOption("compact");
+				String schematronProfile = cmd.getOptionValue("schematron-profile");
 				boolean LogAsPDF = cmd.hasOption("log-as-pdf");
 				String profileID = cmd.getOptionValue("profileID");
 				String customizationID = cmd.getOptionValue("customizationID");
@@ -541,11 +580,14 @@ public class Main {
 					performUBL(sourceName, outName, profileID, customizationID);
 					optionsRecognized = true;
 				} else if (action != null && action.equals("validate")) {
-					optionsRecognized = performValidate(sourceName, noNotices, noArithmeticCheck, cmd.getOptionValue("logAppend"), LogAsPDF);
+					optionsRecognized = performValidate(sourceName, noNotices, noArithmeticCheck, timings, validationLevel, failFast, aggregate, reportFormat, compactReport, cmd.getOptionValue("logAppend"), LogAsPDF, schematronProfile);
 				} else if (action != null && action.equals("validateExpectValid")) {
-					optionsRecognized = performValidateExpect(true, directoryName, excludedFilenames);
+					optionsRecognized = performValidateExpect(true, directoryName, excludedFilenames, schematronProfile);
 				} else if (action != null && action.equals("validateExpectInvalid")) {
-					optionsRecognized = performValidateExpect(false, directoryName, excludedFilenames);
+					optionsRecognized = performValidateExpect(false, directoryName, excludedFilenames, schematronProfile);
+				} else if (action != null && action.equals("serve")) {
+					performServe(cmd.getOptionValue("port"), cmd.getOptionValue("threads"), cmd.getOptionValue("root"), schematronProfile);
+					optionsRecognized = true;
 				}
 
 			} catch (UnrecognizedOptionException ex) {
@@ -567,7 +609,8 @@ public class Main {
 
 	}
 
-	private static boolean performValidate(String sourceName, boolean noNotices, boolean noArithmeticCheck, String logAppend, boolean createLogAsPDF) {
+	private static boolean performValidate(String sourceName, boolean noNotices, boolean noArithmeticCheck, boolean timings, String validationLevel, boolean failFast,
+										   String aggregate, String reportFormat, boolean compactReport, String logAppend, boolean createLogAsPDF, String schematronProfile) throws IOException {
 		boolean optionsRecognized;
 		if (sourceName == null) {
 			sourceName = getFilenameFromUser("Source PDF or XML", "invoice.pdf", "pdf|xml", true, false);
@@ -582,9 +625,38 @@ public class Main {
 		if (noArithmeticCheck) {
 			zfv.disableArithmeticCheck();
 		}
+		if (timings) {
+			zfv.enableTimings();
+		}
+		if (validationLevel != null) {
+			zfv.setValidationLevel(EValidationLevel.valueOf(validationLevel.toLowerCase()));
+		}
+		if (failFast) {
+			zfv.enableFailFast();
+		}
+		if (aggregate != null) {
+			zfv.setAggregation(Integer.parseInt(aggregate));
+		}
+		SchematronProfiler profiler = null;
+		if (schematronProfile != null) {
+			profiler = new SchematronProfiler();
+			zfv.setSchematronProfiler(profiler);
+		}
 
-		String validationResultXML = zfv.validate(sourceName);
-		System.out.println(validationResultXML);
+		String validationResultXML = null;
+		if ((reportFormat != null || compactReport) && !createLogAsPDF) {
+			// streamed, System.out is flushed but not closed
+			ValidationReportWriter report = "json".equalsIgnoreCase(reportFormat)
+				? ValidationReportWriter.json(System.out, !compactReport)
+				: ValidationReportWriter.xml(System.out, !compactReport);
+			zfv.validate(Paths.get(sourceName), report);
+		} else {
+			validationResultXML = zfv.validate(sourceName);
+			System.out.println(validationResultXML);
+		}
+		if (profiler != null) {
+			writeSchematronProfile(profiler, schematronProfile);
+		}
 
 		if (createLogAsPDF) {
 			ValidationLogVisualizer vlvi = new ValidationLogVisualizer();
@@ -599,8 +671,15 @@ public class Main {
 		return optionsRecognized;
 	}
 
-	private static boolean performValidateExpect(boolean valid, String dirName, String[] excludedFiles) {
+	private static boolean performValidateExpect(boolean valid, String dirName, String[] excludedFiles, String schematronProfile) {
+		// a whole directory will need most of the rule sets, compile them while the first files are checked
+		SchematronCache.getInstance().preloadAllInBackground();
 		ValidatorFileWalker zfWalk = new ValidatorFileWalker(valid, excludedFiles);
+		SchematronProfiler profiler = null;
+		if (schematronProfile != null) {
+			profiler = new SchematronProfiler();
+			zfWalk.setSchematronProfiler(profiler);
+		}
 		Path startingDir = Paths.get(dirName);
 		try {
 			Files.walkFileTree(startingDir, zfWalk);
@@ -609,6 +688,9 @@ public class Main {
 			// TODO Auto-generated catch block
 			e1.printStackTrace();
 		}
+		if (profiler != null) {
+			writeSchematronProfile(profiler, schematronProfile);
+		}
 		String totalResult = "valid";
 		if (!zfWalk.getResult()) {
 			totalResult = "invalid";
@@ -620,6 +702,37 @@ public class Main {
 		return true;
 	}
 
+	private static void writeSchematronProfile(SchematronProfiler profiler, String filename) {
+		try {
+			profiler.write(Paths.get(filename));
+			System.err.println("Schematron profile written to " + filename); // not stdout, it may carry the report
+		} catch (IOException e) {
+			LOGGER.error("Could not write schematron profile " + filename, e);
+		}
+	}
+
+	private static void performServe(String port, String threads, String root, String schematronProfile) throws IOException {
+		int portNumber = port == null ? MustangServer.DEFAULT_PORT : Integer.parseInt(port);
+		int threadCount = threads == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads);
+		MustangServer server = new MustangServer(portNumber, threadCount);
+		if (root != null) {
+			server.setRoot(Paths.get(root));
+		}
+		SchematronProfiler profiler = schematronProfile == null ? null : new SchematronProfiler();
+		if (profiler != null) {
+			server.setSchematronProfiler(profiler);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.stop(5);
+			if (profiler != null) {
+				writeSchematronProfile(profiler, schematronProfile);
+			}
+		}));
+		server.start();
+		System.out.println("Serving on http://127.0.0.1:" + server.getPort() + "/, token " + server.getToken() + ", stop with Ctrl+C");
+		// the server threads keep the JVM running
+	}
+
 	private static void performConvert(String pdfName, String outName) throws IOException {
 		/*
 		 * ZUGFeRDExporter ze= new ZUGFeRDExporterFromA1Factory()
@@ -785,73 +898,15 @@ public class Main {
 			ensureFileExists(xmlName);
 			ensureFileNotExists(outName);
 
-			EStandard standard = EStandard.FACTUR_X;
-			if ("zf".equals(format)) {
-				standard = EStandard.ZUGFERD;
-			}
-			if ("da".equals(format)) {
-				standard = EStandard.DELIVER_X;
-
-				zfConformanceLevelProfile = Profiles.getByName(standard, "PILOT", 1);
-			} else if ("zf".equals(format) && zfIntVersion == 1 || "ox".equals(format)) {
-				if ("ox".equals(format)) {
-					standard = EStandard.ORDER_X;
-				}
-				if (zfProfile.equals("b")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "BASIC", zfIntVersion);
-				} else if (zfProfile.equals("c")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "COMFORT", zfIntVersion);
-				} else if (zfProfile.equals("t")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "EXTENDED", zfIntVersion);
-				} else {
-					throw new Exception(String.format("Unknown ZUGFeRD profile '%s'", zfProfile));
-				}
-			} else if (format.equals("zf") && zfIntVersion == 2 || format.equals("fx")) {
-				if (zfProfile.equals("m")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "MINIMUM", zfIntVersion);
-				} else if (zfProfile.equals("w")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "BASICWL", zfIntVersion);
-				} else if (zfProfile.equals("b")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "BASIC", zfIntVersion);
-				} else if (zfProfile.equals("c")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "CIUS", zfIntVersion);
-				} else if (zfProfile.equals("e")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "EN16931", zfIntVersion);
-				} else if (zfProfile.equals("f")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "EXTENDED-CTC-FR", zfIntVersion);
-				} else if (zfProfile.equals("t")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "EXTENDED", zfIntVersion);
-				} else if (zfProfile.equals("x")) {
-					zfConformanceLevelProfile = Profiles.getByName(standard, "XRECHNUNG", zfIntVersion);
-				} else {
-					throw new Exception(String.format("Unknown ZUGFeRD profile '%s'", zfProfile));
-				}
-			} else {
-				throw new Exception(String.format("Unknown version '%i'", zfIntVersion));
-			}
+			zfConformanceLevelProfile = getCombineProfile(format, zfIntVersion, zfProfile);
 
 			// All params are good! continue...
-			if (format.equals("ox")) {
-				ze = new OXExporterFromA1();
-				if (ignoreInputErrors) {
-					((OXExporterFromA1) ze).ignorePDFAErrors();
-				}
-			} else if (format.equals("da")) {
-				ze = new DXExporterFromA1();
-				if (ignoreInputErrors) {
-					((DXExporterFromA1) ze).ignorePDFAErrors();
-				}
-			} else {
-				if (format.equals("fx")) {
-					zfIntVersion = 2; // actually we are talking of generation, not version
-					// so even if someone correctly requested factur-x 1 internally we call it
-					// zugferd 2 :-(
-				}
-				ze = new ZUGFeRDExporterFromPDFA();
-				if (ignoreInputErrors) {
-					((ZUGFeRDExporterFromPDFA) ze).ignorePDFAErrors();
-				}
+			if (format.equals("fx")) {
+				zfIntVersion = 2; // actually we are talking of generation, not version
+				// so even if someone correctly requested factur-x 1 internally we call it
+				// zugferd 2 :-(
 			}
+			ze = newCombineExporter(format, ignoreInputErrors);
 
 			ze.load(pdfName);
 			ze.setProducer("Mustang-cli")
@@ -884,6 +939,90 @@ public class Main {
 		}
 	}
 
+	/***
+	 * the conformance level to combine a PDF with
+	 *
+	 * @param format       fx, zf, ox or da, see usage
+	 * @param zfIntVersion 1 or 2
+	 * @param zfProfile    the lowercase profile letter, see usage
+	 * @return the profile
+	 * @throws Exception if the profile is unknown for the format and version
+	 */
+	static Profile getCombineProfile(String format, int zfIntVersion, String zfProfile) throws Exception {
+		EStandard standard = EStandard.FACTUR_X;
+		if ("zf".equals(format)) {
+			standard = EStandard.ZUGFERD;
+		}
+		if ("da".equals(format)) {
+			standard = EStandard.DELIVER_X;
+
+			return Profiles.getByName(standard, "PILOT", 1);
+		} else if ("zf".equals(format) && zfIntVersion == 1 || "ox".equals(format)) {
+			if ("ox".equals(format)) {
+				standard = EStandard.ORDER_X;
+			}
+			if (zfProfile.equals("b")) {
+				return Profiles.getByName(standard, "BASIC", zfIntVersion);
+			} else if (zfProfile.equals("c")) {
+				return Profiles.getByName(standard, "COMFORT", zfIntVersion);
+			} else if (zfProfile.equals("t")) {
+				return Profiles.getByName(standard, "EXTENDED", zfIntVersion);
+			} else {
+				throw new Exception(String.format("Unknown ZUGFeRD profile '%s'", zfProfile));
+			}
+		} else if (format.equals("zf") && zfIntVersion == 2 || format.equals("fx")) {
+			if (zfProfile.equals("m")) {
+				return Profiles.getByName(standard, "MINIMUM", zfIntVersion);
+			} else if (zfProfile.equals("w")) {
+				return Profiles.getByName(standard, "BASICWL", zfIntVersion);
+			} else if (zfProfile.equals("b")) {
+				return Profiles.getByName(standard, "BASIC", zfIntVersion);
+			} else if (zfProfile.equals("c")) {
+				return Profiles.getByName(standard, "CIUS", zfIntVersion);
+			} else if (zfProfile.equals("e")) {
+				return Profiles.getByName(standard, "EN16931", zfIntVersion);
+			} else if (zfProfile.equals("f")) {
+				return Profiles.getByName(standard, "EXTENDED-CTC-FR", zfIntVersion);
+			} else if (zfProfile.equals("t")) {
+				return Profiles.getByName(standard, "EXTENDED", zfIntVersion);
+			} else if (zfProfile.equals("x")) {
+				return Profiles.getByName(standard, "XRECHNUNG", zfIntVersion);
+			} else {
+				throw new Exception(String.format("Unknown ZUGFeRD profile '%s'", zfProfile));
+			}
+		} else {
+			throw new Exception(String.format("Unknown version '%d'", zfIntVersion));
+		}
+	}
+
+	/***
+	 * the exporter to combine a PDF with
+	 *
+	 * @param format            fx, zf, ox or da, see usage
+	 * @param ignoreInputErrors true to accept PDF/A errors of the input
+	 * @return the exporter, to be closed by the caller
+	 */
+	static IZUGFeRDExporter newCombineExporter(String format, boolean ignoreInputErrors) {
+		IZUGFeRDExporter ze;
+		if (format.equals("ox")) {
+			ze = new OXExporterFromA1();
+			if (ignoreInputErrors) {
+				((OXExporterFromA1) ze).ignorePDFAErrors();
+			}
+		} else if (format.equals("da")) {
+			ze = new DXExporterFromA1();
+			if (ignoreInputErrors) {
+				((DXExporterFromA1) ze).ignorePDFAErrors();
+			}
+		} else {
+			ze = new ZUGFeRDExporterFromPDFA();
+			if (ignoreInputErrors) {
+				((ZUGFeRDExporterFromPDFA) ze).ignorePDFAErrors();
+			}
+		}
+		return ze;
+	}
+
 	private static void performMetrics(String directoryName, boolean filesFromStdIn, boolean ignoreFileExt)
 			throws IOException {
 
@@ -0,0 +1,591 @@
+package org.mustangproject.commandline;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.io.IOUtils;
+import org.mustangproject.CII.CIIToUBL;
+import org.mustangproject.ZUGFeRD.IZUGFeRDExporter;
+import org.mustangproject.ZUGFeRD.Profile;
+import org.mustangproject.ZUGFeRD.ZUGFeRDImporter;
+import org.mustangproject.ZUGFeRD.ZUGFeRDVisualizer;
+import org.mustangproject.validator.EValidationLevel;
+import org.mustangproject.validator.SchematronCache;
+import org.mustangproject.validator.SchematronProfiler;
+import org.mustangproject.validator.StageTiming;
+import org.mustangproject.validator.ValidationEngine;
+import org.mustangproject.validator.ValidationReport;
+import org.mustangproject.validator.VeraPDFProcessorPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/***
+ * the long-running mode of the command line tool (--action serve): jobs are posted to a HTTP server on the loopback
+ * interface, so the JVM, the compiled schematron stylesheets, veraPDF and the visualizer stay warm between invoices.
+ *
+ * Jobs are POSTed to /validate, /visualize, /pdf, /extract, /ubl, /combine or /custom-action/&lt;name&gt;. The input
+ * file is the request body or, alternatively, the local file named by the query parameter source. The result is the
+ * response body, or written to the local file named by the parameter out. Further parameters are named like the
+ * command line options, e.g. /validate?no-notices&amp;timings or /combine?source-xml=factur-x.xml&amp;format=fx&amp;profile=e.
+ * GET /health and GET /metrics (Prometheus text format) report the state of the server, the metrics include the time
+ * spent in each validation stage, e.g. per schematron file.
+ *
+ * Every request has to carry the token generated at start in the header Authorization: Bearer &lt;token&gt;, and
+ * requests with a Host other than localhost or 127.0.0.1 or with an Origin header are rejected, so neither web pages
+ * (cross-site requests, DNS rebinding) nor other local users can submit jobs. Local files (source, source-xml, out and
+ * the file arguments of custom actions) are only available below the directory set with setRoot().
+ */
+public class MustangServer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MustangServer.class.getCanonicalName()); // log output
+
+	public static final int DEFAULT_PORT = 8090;
+	/*** the arguments of custom actions which name local files */
+	private static final List<String> FILE_ARGUMENTS = Arrays.asList("--input-xml", "--input-file", "--temp-output-file", "--output-file");
+
+	private final HttpServer server;
+	private final ExecutorService workers;
+	/*** the summed up timings of the validation stages, by stage and schema or stylesheet */
+	private final Map<String, JobMetrics> stageMetrics = new ConcurrentHashMap<>();
+	/*** replaced by setSchematronProfiler() only before start() */
+	private ValidationEngine engine = new ValidationEngine().withListener(this::stageCompleted);
+	private SchematronProfiler schematronProfiler;
+	/*** one visualizer per worker thread, each keeps its compiled stylesheets */
+	private final ThreadLocal<ZUGFeRDVisualizer> visualizers = ThreadLocal.withInitial(ZUGFeRDVisualizer::new);
+	private final Map<String, Job> jobs = new LinkedHashMap<>();
+	/*** filled by the constructor, read only afterwards */
+	private final Map<String, JobMetrics> metrics = new LinkedHashMap<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final long startMillis = System.currentTimeMillis();
+	private final String token;
+	/*** the only directory local files may be read from or written to, null if none may */
+	private Path root;
+
+	/***
+	 * @param port    the TCP port on the loopback interface, 0 for any free one
+	 * @param threads the number of jobs processed concurrently
+	 * @throws IOException if the port can not be bound
+	 */
+	public MustangServer(int port, int threads) throws IOException {
+		jobs.put("validate", this::validate);
+		jobs.put("visualize", request -> visualize(request, false));
+		jobs.put("pdf", request -> visualize(request, true));
+		jobs.put("extract", this::extract);
+		jobs.put("ubl", this::ubl);
+		jobs.put("combine", this::combine);
+		jobs.put("custom-action", this::customAction);
+		for (String action : jobs.keySet()) {
+			metrics.put(action, new JobMetrics());
+		}
+
+		final byte[] random = new byte[24];
+		new SecureRandom().nextBytes(random);
+		token = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		workers = Executors.newFixedThreadPool(threads);
+		server.setExecutor(workers);
+		server.createContext("/health", authorized(exchange -> respond(exchange, 200, "application/json",
+			("{\"status\":\"UP\",\"uptimeSeconds\":" + (System.currentTimeMillis() - startMillis) / 1000 + "}")
+				.getBytes(StandardCharsets.UTF_8))));
+		server.createContext("/metrics", authorized(exchange -> respond(exchange, 200, "text/plain; version=0.0.4",
+			getMetrics().getBytes(StandardCharsets.UTF_8))));
+		server.createContext("/schematron-profile", authorized(this::schematronProfile));
+		server.createContext("/", authorized(this::handleJob));
+	}
+
+	/***
+	 * allow jobs to read and write local files below a directory, by default they can only use the request and
+	 * response bodies. Has to be called before start()
+	 * @param root the directory, file names are resolved relative to it
+	 * @throws IOException if the directory does not exist
+	 */
+	public void setRoot(Path root) throws IOException {
+		this.root = root.toRealPath();
+		if (!Files.isDirectory(this.root)) {
+			throw new IOException(root + " is not a directory");
+		}
+	}
+
+	/***
+	 * @return the secret every request has to send in the header Authorization: Bearer &lt;token&gt;
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/***
+	 * profile the schematron rules of all validations, the profile is available at GET /schematron-profile as JSON,
+	 * or with ?format=csv as CSV. Has to be called before start()
+	 * @param schematronProfiler where to add the numbers
+	 */
+	public void setSchematronProfiler(SchematronProfiler schematronProfiler) {
+		this.schematronProfiler = schematronProfiler;
+		engine = engine.withSchematronProfiler(schematronProfiler);
+	}
+
+	/***
+	 * starts accepting jobs and warms up the validator in the background
+	 */
+	public void start() {
+		SchematronCache.getInstance().preloadAllInBackground();
+		VeraPDFProcessorPool.getInstance();
+		server.start();
+		LOGGER.info("Listening on http://{}:{}/", server.getAddress().getHostString(), getPort());
+	}
+
+	/***
+	 * stops accepting jobs and waits for the running ones
+	 * @param delaySeconds how long to wait for running jobs at most
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		workers.shutdown();
+		try {
+			workers.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/***
+	 * rejects requests not addressed to the loopback interface by name or address (DNS rebinding), sent by a browser
+	 * on behalf of a web page (Origin) or without the token
+	 */
+	private HttpHandler authorized(HttpHandler handler) {
+		final List<String> hosts = Arrays.asList("localhost:" + getPort(), "127.0.0.1:" + getPort(), "[::1]:" + getPort());
+		final byte[] expected = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+		return exchange -> {
+			final String host = exchange.getRequestHeaders().getFirst("Host");
+			final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+			if (host == null || !hosts.contains(host.toLowerCase()) || exchange.getRequestHeaders().containsKey("Origin")) {
+				exchange.getRequestBody().close();
+				respond(exchange, 403, "text/plain", "Forbidden".getBytes(StandardCharsets.UTF_8));
+			} else if (authorization == null || !MessageDigest.isEqual(expected, authorization.getBytes(StandardCharsets.UTF_8))) {
+				exchange.getRequestBody().close();
+				exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+				respond(exchange, 401, "text/plain", "Token required, see the output of --action serve".getBytes(StandardCharsets.UTF_8));
+			} else {
+				handler.handle(exchange);
+			}
+		};
+	}
+
+	/***
+	 * @param name a file name from a request, relative to the root directory
+	 * @return the file, guaranteed to be below the root directory
+	 * @throws IllegalArgumentException if no root directory is set or the file is outside of it
+	 */
+	private Path resolve(String name) throws IOException {
+		if (root == null) {
+			throw new IllegalArgumentException("Local files are not available, start with --root <directory>");
+		}
+		final Path file = root.resolve(name).normalize();
+		// resolve symbolic links, of the parent directory if the file is about to be created
+		final Path existing = Files.exists(file) ? file : file.getParent();
+		if (!file.startsWith(root) || existing == null || !Files.exists(existing) || !existing.toRealPath().startsWith(root)) {
+			throw new IllegalArgumentException("File " + name + " is outside of the root directory");
+		}
+		return file;
+	}
+
+	private void handleJob(HttpExchange exchange) throws IOException {
+		final String[] path = exchange.getRequestURI().getPath().split("/", 3);
+		final String action = path.length > 1 ? path[1] : "";
+		final Job job = jobs.get(action);
+		if (job == null) {
+			respond(exchange, 404, "text/plain", ("Unknown action '" + action + "'").getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			respond(exchange, 405, "text/plain", "Jobs have to be POSTed".getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		final JobMetrics jobMetrics = metrics.get(action);
+		final long start = System.nanoTime();
+		inFlight.incrementAndGet();
+		Response response;
+		try {
+			final Request request = new Request(exchange, path.length > 2 ? path[2] : null);
+			response = job.run(request);
+			final String out = request.param("out");
+			if (out != null && response.status == 200) {
+				Files.write(resolve(out), response.body);
+				response = new Response("text/plain", ("Written to " + out).getBytes(StandardCharsets.UTF_8));
+			}
+		} catch (IllegalArgumentException e) {
+			jobMetrics.failures.increment();
+			response = new Response(400, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+		} catch (Exception e) {
+			jobMetrics.failures.increment();
+			LOGGER.error("{} failed", action, e);
+			response = new Response(500, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+		} finally {
+			inFlight.decrementAndGet();
+			jobMetrics.count.increment();
+			jobMetrics.nanos.add(System.nanoTime() - start);
+		}
+		response.headers.forEach(exchange.getResponseHeaders()::set);
+		respond(exchange, response.status, response.contentType, response.body);
+	}
+
+	private Response validate(Request request) throws IOException {
+		ValidationEngine validationEngine = engine;
+		if (request.flag("no-notices")) {
+			validationEngine = validationEngine.withoutNotices();
+		}
+		if (request.flag("no-arithmetic-check")) {
+			validationEngine = validationEngine.withoutArithmeticCheck();
+		}
+		if (request.flag("timings")) {
+			validationEngine = validationEngine.withTimings();
+		}
+		final String validationLevel = request.param("validation-level");
+		if (validationLevel != null) {
+			final EValidationLevel level;
+			try {
+				level = EValidationLevel.valueOf(validationLevel.toLowerCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown validation-level '" + validationLevel + "', expected one of "
+					+ Arrays.toString(EValidationLevel.values()), e);
+			}
+			validationEngine = validationEngine.withValidationLevel(level);
+		}
+		if (request.flag("fail-fast")) {
+			validationEngine = validationEngine.withFailFast();
+		}
+		final String aggregate = request.param("aggregate");
+		if (aggregate != null) {
+			validationEngine = validationEngine.withAggregation(Integer.parseInt(aggregate));
+		}
+		final ValidationReport report;
+		final String source = request.param("source");
+		if (source != null) {
+			final Path file = resolve(source);
+			if (!Files.isRegularFile(file)) {
+				throw new IllegalArgumentException("File " + source + " not found");
+			}
+			report = validationEngine.validate(file);
+		} else {
+			final String name = request.param("name");
+			report = validationEngine.validate(request.body(), name == null ? "invoice" : name);
+		}
+		final Response response = new Response("application/xml", report.getXML().getBytes(StandardCharsets.UTF_8));
+		response.headers.put("X-Mustang-Valid", Boolean.toString(report.isValid()));
+		return response;
+	}
+
+	private Response visualize(Request request, boolean intoPDF) throws Exception {
+		ZUGFeRDVisualizer.Language lang = ZUGFeRDVisualizer.Language.EN;
+		final String language = request.param("language");
+		if ("de".equalsIgnoreCase(language)) {
+			lang = ZUGFeRDVisualizer.Language.DE;
+		} else if ("fr".equalsIgnoreCase(language)) {
+			lang = ZUGFeRDVisualizer.Language.FR;
+		}
+		final byte[] xml = request.input();
+		final ZUGFeRDVisualizer zvi = visualizers.get();
+		if (intoPDF) {
+			return new Response("application/pdf", zvi.toPDF(new String(xml, StandardCharsets.UTF_8), lang));
+		}
+		return new Response("text/html", zvi.visualize(new ByteArrayInputStream(xml), lang).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private Response extract(Request request) throws IOException {
+		final ZUGFeRDImporter zi = new ZUGFeRDImporter();
+		zi.doIgnoreCalculationErrors();
+		zi.setInputStream(new ByteArrayInputStream(request.input()));
+		final byte[] xml = zi.getRawXML();
+		if (xml == null) {
+			return new Response(404, "text/plain", "No ZUGFeRD XML found in PDF file".getBytes(StandardCharsets.UTF_8));
+		}
+		return new Response("application/xml", xml);
+	}
+
+	private Response ubl(Request request) throws IOException {
+		final Path in = Files.createTempFile("mustang-cii", ".xml");
+		final Path out = Files.createTempFile("mustang-ubl", ".xml");
+		try {
+			Files.write(in, request.input());
+			new CIIToUBL().convert(in.toFile(), out.toFile(), request.param("profileID"), request.param("customizationID"));
+			return new Response("application/xml", Files.readAllBytes(out));
+		} finally {
+			Files.deleteIfExists(in);
+			Files.deleteIfExists(out);
+		}
+	}
+
+	private Response combine(Request request) throws Exception {
+		final String xmlName = request.param("source-xml");
+		if (xmlName == null) {
+			throw new IllegalArgumentException("Parameter source-xml is required");
+		}
+		final String format = request.param("format", "fx");
+		int version = Integer.parseInt(request.param("version", "2"));
+		final Profile profile = Main.getCombineProfile(format, version, request.param("profile", "e").toLowerCase());
+		if (format.equals("fx")) {
+			version = 2; // the generation, see performCombine
+		}
+		try (IZUGFeRDExporter ze = Main.newCombineExporter(format, request.flag("ignorefileextension"))) {
+			ze.load(request.input());
+			ze.setProducer("Mustang-cli").setZUGFeRDVersion(version).setCreator(System.getProperty("user.name"))
+				.setProfile(profile);
+			if (format.equals("zf")) {
+				ze.disableFacturX();
+			}
+			ze.setXML(Files.readAllBytes(resolve(xmlName)));
+			final ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+			ze.export(pdf);
+			return new Response("application/pdf", pdf.toByteArray());
+		}
+	}
+
+	/***
+	 * the APplus actions, the body contains the arguments of --custom-action &lt;name&gt;, one per line. The files named
+	 * by the arguments are resolved relative to the root directory
+	 */
+	private Response customAction(Request request) throws Exception {
+		final String name = request.subPath == null ? "" : request.subPath.toUpperCase();
+		final List<String> arguments = new ArrayList<>();
+		arguments.add("--custom-action");
+		arguments.add(name);
+		for (String line : new String(request.body(), StandardCharsets.UTF_8).split("\r?\n")) {
+			if (!line.isEmpty()) {
+				if (arguments.size() > 2 && FILE_ARGUMENTS.contains(arguments.get(arguments.size() - 1).toLowerCase())) {
+					line = resolve(line).toString();
+				}
+				arguments.add(line);
+			}
+		}
+		final String[] args = arguments.toArray(new String[0]);
+		// the actions exit the JVM if required arguments are missing
+		final String returnString;
+		switch (name) {
+			case "GENERATE_FROM_XML":
+				requireArgument(args, "--input-xml");
+				returnString = APplusActions.handleGenerateFromXML(args);
+				break;
+			case "GENERATE_SIMPLE":
+				requireArgument(args, "--input-file");
+				requireArgument(args, "--output-format");
+				returnString = APplusActions.handleGenerateSimple(args);
+				break;
+			case "VALIDATE":
+				if (!new File(requireArgument(args, "--input-xml")).exists()) {
+					throw new IllegalArgumentException("input file not found");
+				}
+				returnString = APplusActions.handleValidate(args);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown custom action '" + name + "'");
+		}
+		final String outputFile = argument(args, "--output-file");
+		if (returnString != null && outputFile != null) {
+			Files.write(Paths.get(outputFile), returnString.getBytes(StandardCharsets.UTF_8));
+		}
+		return new Response("application/xml", returnString == null ? new byte[0] : returnString.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String requireArgument(String[] args, String key) {
+		final String value = argument(args, key);
+		if (value == null) {
+			throw new IllegalArgumentException(key + " parameter is required");
+		}
+		return value;
+	}
+
+	private static String argument(String[] args, String key) {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (args[i].equalsIgnoreCase(key)) {
+				return args[i + 1];
+			}
+		}
+		return null;
+	}
+
+	/***
+	 * @return the counters in the Prometheus text exposition format
+	 */
+	String getMetrics() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("# TYPE mustang_jobs_total counter\n");
+		metrics.forEach((action, m) -> sb.append("mustang_jobs_total{action=\"").append(action).append("\"} ").append(m.count.sum()).append('\n'));
+		sb.append("# TYPE mustang_job_failures_total counter\n");
+		metrics.forEach((action, m) -> sb.append("mustang_job_failures_total{action=\"").append(action).append("\"} ").append(m.failures.sum()).append('\n'));
+		sb.append("# TYPE mustang_job_seconds_sum counter\n");
+		metrics.forEach((action, m) -> sb.append("mustang_job_seconds_sum{action=\"").append(action).append("\"} ").append(m.nanos.sum() / 1e9).append('\n'));
+		final Map<String, JobMetrics> stages = new TreeMap<>(stageMetrics);
+		sb.append("# TYPE mustang_validation_stage_total counter\n");
+		stages.forEach((labels, m) -> sb.append("mustang_validation_stage_total{").append(labels).append("} ").append(m.count.sum()).append('\n'));
+		sb.append("# TYPE mustang_validation_stage_seconds_sum counter\n");
+		stages.forEach((labels, m) -> sb.append("mustang_validation_stage_seconds_sum{").append(labels).append("} ").append(m.nanos.sum() / 1e9).append('\n'));
+		sb.append("# TYPE mustang_jobs_in_flight gauge\n");
+		sb.append("mustang_jobs_in_flight ").append(inFlight.get()).append('\n');
+		final SchematronCache schematron = SchematronCache.getInstance();
+		sb.append("# TYPE mustang_schematron_cache_hits_total counter\n");
+		sb.append("mustang_schematron_cache_hits_total ").append(schematron.getHitCount()).append('\n');
+		sb.append("# TYPE mustang_schematron_cache_misses_total counter\n");
+		sb.append("mustang_schematron_cache_misses_total ").append(schematron.getMissCount()).append('\n');
+		sb.append("# TYPE mustang_schematron_compile_seconds_total counter\n");
+		sb.append("mustang_schematron_compile_seconds_total ").append(schematron.getTotalCompileTimeMillis() / 1000.0).append('\n');
+		final VeraPDFProcessorPool pool = VeraPDFProcessorPool.getInstance();
+		sb.append("# TYPE mustang_verapdf_processors_created_total counter\n");
+		sb.append("mustang_verapdf_processors_created_total ").append(pool.getCreatedCount()).append('\n');
+		sb.append("# TYPE mustang_verapdf_processors_recycled_total counter\n");
+		sb.append("mustang_verapdf_processors_recycled_total ").append(pool.getRecycledCount()).append('\n');
+		sb.append("# TYPE mustang_uptime_seconds gauge\n");
+		sb.append("mustang_uptime_seconds ").append((System.currentTimeMillis() - startMillis) / 1000).append('\n');
+		return sb.toString();
+	}
+
+	private void schematronProfile(HttpExchange exchange) throws IOException {
+		if (schematronProfiler == null) {
+			respond(exchange, 404, "text/plain", "Not profiling, start with --schematron-profile".getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		final String query = exchange.getRequestURI().getQuery();
+		final boolean csv = query != null && query.contains("format=csv");
+		final StringWriter out = new StringWriter();
+		if (csv) {
+			schematronProfiler.writeCSV(out);
+		} else {
+			schematronProfiler.writeJSON(out);
+		}
+		respond(exchange, 200, csv ? "text/csv" : "application/json", out.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void stageCompleted(String filename, StageTiming timing) {
+		final String labels = "stage=\"" + timing.getStage() + "\"" + (timing.getName() == null ? "" : ",file=\"" + timing.getName() + "\"");
+		final JobMetrics m = stageMetrics.computeIfAbsent(labels, key -> new JobMetrics());
+		m.count.increment();
+		m.nanos.add(timing.getNanos());
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+
+	private interface Job {
+		Response run(Request request) throws Exception;
+	}
+
+	private static final class JobMetrics {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+	}
+
+	private final class Request {
+		private final HttpExchange exchange;
+		private final String subPath;
+		private final Map<String, String> params = new HashMap<>();
+		private byte[] body;
+
+		Request(HttpExchange exchange, String subPath) {
+			this.exchange = exchange;
+			this.subPath = subPath;
+			final String query = exchange.getRequestURI().getRawQuery();
+			if (query != null) {
+				for (String pair : query.split("&")) {
+					final int eq = pair.indexOf('=');
+					final String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+					params.put(key, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+				}
+			}
+		}
+
+		String param(String name) {
+			return params.get(name);
+		}
+
+		String param(String name, String defaultValue) {
+			return params.getOrDefault(name, defaultValue);
+		}
+
+		boolean flag(String name) {
+			final String value = params.get(name);
+			return value != null && !"false".equalsIgnoreCase(value);
+		}
+
+		byte[] body() throws IOException {
+			if (body == null) {
+				try (InputStream in = exchange.getRequestBody()) {
+					body = IOUtils.toByteArray(in);
+				}
+			}
+			return body;
+		}
+
+		/***
+		 * @return the file named by the parameter source, otherwise the body
+		 */
+		byte[] input() throws IOException {
+			final String source = param("source");
+			if (source == null) {
+				return body();
+			}
+			final Path file = resolve(source);
+			if (!Files.isRegularFile(file)) {
+				throw new IllegalArgumentException("File " + source + " not found");
+			}
+			return Files.readAllBytes(file);
+		}
+	}
+
+	private static final class Response {
+		private final int status;
+		private final String contentType;
+		private final byte[] body;
+		private final Map<String, String> headers = new HashMap<>();
+
+		Response(String contentType, byte[] body) {
+			this(200, contentType, body);
+		}
+
+		Response(int status, String contentType, byte[] body) {
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body;
+		}
+	}
+
+}
@@ -15,6 +15,7 @@ import java.util.Date;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.mustangproject.validator.SchematronProfiler;
 import org.mustangproject.validator.ZUGFeRDValidator;
 
 import static org.xmlunit.assertj.XmlAssert.assertThat;
@@ -49,6 +50,14 @@ public class ValidatorFileWalker
 		return allValid;
 	}
 
+	/***
+	 * profile the schematron rules of all validated files
+	 * @param schematronProfiler where to add the numbers, null to not profile
+	 */
+	public void setSchematronProfiler(SchematronProfiler schematronProfiler) {
+		zul.setSchematronProfiler(schematronProfiler);
+	}
+
 	// Print information about
 	// each type of file.
 	@Override
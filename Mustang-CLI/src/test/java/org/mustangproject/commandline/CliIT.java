@@ -1,6 +1,9 @@
 package org.mustangproject.commandline;
 
 import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -66,6 +69,78 @@ public class CliIT {
 		return builder.toString();
 	}
 
+	@Test
+	public void testServe() throws Exception {
+		Path jar = Files.newDirectoryStream(Paths.get("target"), "Mustang-CLI-*.jar").iterator().next();
+		ProcessBuilder pb = new ProcessBuilder("java", "-jar", jar.toString(), "--action", "serve", "--port", "0",
+			"--disable-file-logging");
+		pb.redirectErrorStream(true);
+		Process process = pb.start();
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			String line;
+			String url = null;
+			String token = null;
+			while (url == null && (line = reader.readLine()) != null) {
+				if (line.startsWith("Serving on ")) {
+					url = line.substring("Serving on ".length(), line.indexOf(','));
+					token = line.substring(line.indexOf(", token ") + ", token ".length(), line.lastIndexOf(','));
+				}
+			}
+			assertTrue(url != null);
+
+			HttpURLConnection anonymous = (HttpURLConnection) new URL(url + "health").openConnection();
+			assertTrue(anonymous.getResponseCode() == 401);
+
+			// HttpURLConnection does not send Host and Origin as set
+			URL server = new URL(url);
+			String crossSite = statusLine(server, "POST /ubl HTTP/1.1\r\nHost: 127.0.0.1:" + server.getPort()
+				+ "\r\nOrigin: http://example.com\r\nAuthorization: Bearer " + token + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+			assertTrue(crossSite.contains(" 403"));
+			String rebound = statusLine(server, "GET /health HTTP/1.1\r\nHost: example.com:" + server.getPort()
+				+ "\r\nAuthorization: Bearer " + token + "\r\nConnection: close\r\n\r\n");
+			assertTrue(rebound.contains(" 403"));
+
+			HttpURLConnection health = (HttpURLConnection) new URL(url + "health").openConnection();
+			health.setRequestProperty("Authorization", "Bearer " + token);
+			assertTrue(health.getResponseCode() == 200);
+
+			HttpURLConnection ubl = (HttpURLConnection) new URL(url + "ubl").openConnection();
+			ubl.setRequestProperty("Authorization", "Bearer " + token);
+			ubl.setRequestMethod("POST");
+			ubl.setDoOutput(true);
+			try (OutputStream out = ubl.getOutputStream()) {
+				out.write(Files.readAllBytes(Paths.get("src/test/resources/cii.xml")));
+			}
+			assertTrue(ubl.getResponseCode() == 200);
+			try (InputStream in = ubl.getInputStream()) {
+				assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("Invoice"));
+			}
+
+			HttpURLConnection metrics = (HttpURLConnection) new URL(url + "metrics").openConnection();
+			metrics.setRequestProperty("Authorization", "Bearer " + token);
+			try (InputStream in = metrics.getInputStream()) {
+				assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("mustang_jobs_total{action=\"ubl\"} 1"));
+			}
+
+			// local files need --root
+			HttpURLConnection source = (HttpURLConnection) new URL(url + "ubl?source=src/test/resources/cii.xml").openConnection();
+			source.setRequestProperty("Authorization", "Bearer " + token);
+			source.setRequestMethod("POST");
+			assertTrue(source.getResponseCode() == 400);
+		} finally {
+			process.destroy();
+			process.waitFor(10, TimeUnit.SECONDS);
+		}
+	}
+
+	private static String statusLine(URL server, String request) throws IOException {
+		try (Socket socket = new Socket(server.getHost(), server.getPort())) {
+			socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+			return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+		}
+	}
+
 	@Test
 	public void testMetric() {
 		StatRun sr = new StatRun();
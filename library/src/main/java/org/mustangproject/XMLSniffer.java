@@ -0,0 +1,239 @@
+package org.mustangproject;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/***
+ * recognizes the standard, profile and parties of an invoice (or order, despatch advice) by reading it as a stream,
+ * without building a DOM. Reading stops as soon as everything has been found: the root element, guideline and
+ * document type are at the start of the document, the countries of seller and buyer in CII follow the line items.
+ * sniffRoot() only reads up to the root element.
+ *
+ * Instances are the immutable result of a sniff, fields which have not been found are null.
+ */
+public final class XMLSniffer {
+
+	/*** configured once, creating readers is thread-safe */
+	private static final XMLInputFactory FACTORY = newFactory();
+
+	private String rootElement;
+	private String namespace;
+	private String guidelineID;
+	private String typeCode;
+	private String sellerCountry;
+	private String buyerCountry;
+
+	private XMLSniffer() {
+	}
+
+	/***
+	 * @param xml the document
+	 * @return what has been found
+	 * @throws XMLStreamException if the document is not well-formed up to where it had to be read
+	 */
+	public static XMLSniffer sniff(byte[] xml) throws XMLStreamException {
+		return sniff(new ByteArrayInputStream(xml));
+	}
+
+	/***
+	 * @param xml the document, is read as far as necessary but not closed
+	 * @return what has been found
+	 * @throws XMLStreamException if the document is not well-formed up to where it had to be read
+	 */
+	public static XMLSniffer sniff(InputStream xml) throws XMLStreamException {
+		return read(xml, false);
+	}
+
+	/***
+	 * reads only up to the root element, enough for getStandard()
+	 * @param xml the document, is read as far as necessary but not closed
+	 * @return the root element and its namespace, all other fields are null
+	 * @throws XMLStreamException if the document does not start like XML
+	 */
+	public static XMLSniffer sniffRoot(InputStream xml) throws XMLStreamException {
+		return read(xml, true);
+	}
+
+	/***
+	 * @return the local name of the root element, e.g. CrossIndustryInvoice or Invoice
+	 */
+	public String getRootElement() {
+		return rootElement;
+	}
+
+	/***
+	 * @return the namespace URI of the root element, empty if it has none
+	 */
+	public String getNamespace() {
+		return namespace;
+	}
+
+	/***
+	 * @return the guideline of a CII document (GuidelineSpecifiedDocumentContextParameter/ID) or the customization of
+	 * an UBL document (CustomizationID), e.g. urn:cen.eu:en16931:2017. If there are several, the first one, without
+	 * leading and trailing whitespace
+	 */
+	public String getGuidelineID() {
+		return guidelineID;
+	}
+
+	/***
+	 * @return the document type code, e.g. 380 for an invoice
+	 */
+	public String getTypeCode() {
+		return typeCode;
+	}
+
+	/***
+	 * @return the country code of the postal address of the seller (CII) or accounting supplier (UBL)
+	 */
+	public String getSellerCountry() {
+		return sellerCountry;
+	}
+
+	/***
+	 * @return the country code of the postal address of the buyer (CII) or accounting customer (UBL)
+	 */
+	public String getBuyerCountry() {
+		return buyerCountry;
+	}
+
+	/***
+	 * @return the standard according to the root element, null if it is not recognized
+	 */
+	public EStandard getStandard() {
+		if (rootElement == null) {
+			return null;
+		}
+		switch (rootElement) {
+			case "CrossIndustryDocument":
+				return EStandard.ZUGFERD;
+			case "CrossIndustryInvoice":
+				return EStandard.FACTUR_X;
+			case "Invoice":
+				return EStandard.UBL;
+			case "CreditNote":
+				return EStandard.UBL_CREDITNOTE;
+			case "DespatchAdvice":
+				return EStandard.UBL_DESPATCHADVICE;
+			case "SCRDMCCBDACIOMessageStructure":
+				return EStandard.ORDER_X;
+			case "SCRDMCCBDACIDAMessageStructure":
+				return EStandard.DELIVER_X;
+			default:
+				return null;
+		}
+	}
+
+	private boolean isComplete() {
+		return guidelineID != null && typeCode != null && sellerCountry != null && buyerCountry != null;
+	}
+
+	private static XMLSniffer read(InputStream xml, boolean rootOnly) throws XMLStreamException {
+		final XMLSniffer result = new XMLSniffer();
+		final XMLStreamReader reader = FACTORY.createXMLStreamReader(xml);
+		try {
+			// the local names of the open elements, the root element first
+			final List<String> path = new ArrayList<>();
+			while (reader.hasNext()) {
+				final int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					final String name = reader.getLocalName();
+					if (path.isEmpty()) {
+						result.rootElement = name;
+						result.namespace = reader.getNamespaceURI() == null ? "" : reader.getNamespaceURI();
+						if (rootOnly) {
+							break;
+						}
+					}
+					path.add(name);
+					final int field = result.fieldAt(path);
+					if (field != NONE) {
+						// reads up to the end element
+						result.set(field, reader.getElementText().trim());
+						path.remove(path.size() - 1);
+						if (result.isComplete()) {
+							break;
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					path.remove(path.size() - 1);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return result;
+	}
+
+	private static final int NONE = 0, GUIDELINE = 1, TYPE_CODE = 2, SELLER_COUNTRY = 3, BUYER_COUNTRY = 4;
+
+	/***
+	 * @param path the local names of the open elements, the current one last
+	 * @return which of the fields which have not been found yet the current element contains, or NONE
+	 */
+	private int fieldAt(List<String> path) {
+		final String name = path.get(path.size() - 1);
+		final String parent = path.size() > 1 ? path.get(path.size() - 2) : "";
+		if (guidelineID == null && ("ID".equals(name) && "GuidelineSpecifiedDocumentContextParameter".equals(parent)
+			|| "CustomizationID".equals(name))) {
+			return GUIDELINE;
+		}
+		if (typeCode == null && ("TypeCode".equals(name) && path.size() == 3
+			&& ("ExchangedDocument".equals(parent) || "HeaderExchangedDocument".equals(parent))
+			|| path.size() == 2 && ("InvoiceTypeCode".equals(name) || "CreditNoteTypeCode".equals(name)))) {
+			return TYPE_CODE;
+		}
+		final boolean isCIICountry = "CountryID".equals(name) && "PostalTradeAddress".equals(parent)
+			&& (path.contains("ApplicableHeaderTradeAgreement") || path.contains("ApplicableSupplyChainTradeAgreement"));
+		final boolean isUBLCountry = "IdentificationCode".equals(name) && "Country".equals(parent);
+		if (sellerCountry == null && (isCIICountry && path.contains("SellerTradeParty")
+			|| isUBLCountry && path.contains("AccountingSupplierParty"))) {
+			return SELLER_COUNTRY;
+		}
+		if (buyerCountry == null && (isCIICountry && path.contains("BuyerTradeParty")
+			|| isUBLCountry && path.contains("AccountingCustomerParty"))) {
+			return BUYER_COUNTRY;
+		}
+		return NONE;
+	}
+
+	private void set(int field, String value) {
+		switch (field) {
+			case GUIDELINE:
+				guidelineID = value;
+				break;
+			case TYPE_CODE:
+				typeCode = value;
+				break;
+			case SELLER_COUNTRY:
+				sellerCountry = value;
+				break;
+			default:
+				buyerCountry = value;
+		}
+	}
+
+	private static XMLInputFactory newFactory() {
+		final XMLInputFactory factory = XMLInputFactory.newFactory();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		// no DTDs and therefore no (external) entities, like XMLTools.getDocumentBuilder
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+	@Override
+	public String toString() {
+		return rootElement + "{" + namespace + "} guideline:" + guidelineID + " type:" + typeCode + " seller:"
+			+ sellerCountry + " buyer:" + buyerCountry;
+	}
+
+}
@@ -8,6 +8,8 @@ import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.IOUtils;
 import org.dom4j.io.XMLWriter;
@@ -28,6 +30,11 @@ import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 
 public class XMLTools extends XMLWriter {
+	/***
+	 * compiled schemas by the external form of their URL
+	 */
+	private static final Map<String, Schema> schemaCache = new ConcurrentHashMap<>();
+
 	@Override
 	public String escapeAttributeEntities(String s) {
 		return super.escapeAttributeEntities(s);
@@ -88,16 +95,42 @@ public class XMLTools extends XMLWriter {
 		return dbf.newDocumentBuilder();
 	}
 
-	public static Validator getValidator(URL schemaFile) throws SAXException {
-		SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-		try {
-			schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-		} catch (SAXNotSupportedException | SAXNotRecognizedException e) {
-			// ignore
+	/***
+	 * returns the compiled schema for the given schema file. Compiling e.g. the UBL or Factur-X EXTENDED
+	 * schema trees is expensive, so each schema is compiled only once per JVM. Schema objects are immutable
+	 * and thread-safe, only the validators created from them must not be shared.
+	 * @param schemaFile the URL of the xsd file
+	 * @return the compiled, shared schema
+	 * @throws SAXException if the schema could not be compiled
+	 */
+	public static Schema getSchema(URL schemaFile) throws SAXException {
+		final String key = schemaFile.toExternalForm();
+		Schema schema = schemaCache.get(key);
+		if (schema == null) {
+			SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+			try {
+				schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+			} catch (SAXNotSupportedException | SAXNotRecognizedException e) {
+				// ignore
+			}
+			schema = schemaFactory.newSchema(schemaFile);
+			// if two threads compiled concurrently, both results are equivalent, keep the first one
+			final Schema previous = schemaCache.putIfAbsent(key, schema);
+			if (previous != null) {
+				schema = previous;
+			}
 		}
-		Schema schema = schemaFactory.newSchema(schemaFile);
+		return schema;
+	}
 
-		Validator validator = schema.newValidator();
+	/***
+	 * returns a new validator for the given schema file, the compiled schema is shared
+	 * @param schemaFile the URL of the xsd file
+	 * @return a validator with secure processing enabled, to be used by a single thread
+	 * @throws SAXException if the schema could not be compiled
+	 */
+	public static Validator getValidator(URL schemaFile) throws SAXException {
+		Validator validator = getSchema(schemaFile).newValidator();
 		try {
 			validator.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
 		} catch (SAXNotSupportedException | SAXNotRecognizedException e) {
@@ -107,7 +140,17 @@ public class XMLTools extends XMLWriter {
 	}
 
 	public static TransformerFactory getTransformerFactory() {
-		TransformerFactory factory = new net.sf.saxon.TransformerFactoryImpl();
+		return getTransformerFactory(new net.sf.saxon.Configuration());
+	}
+
+	/***
+	 * returns a transformer factory working on the given Saxon configuration. Stylesheets compiled by factories
+	 * sharing one configuration can all process the same, pre-built source tree
+	 * @param configuration the shared Saxon configuration
+	 * @return a new transformer factory with secure processing enabled
+	 */
+	public static TransformerFactory getTransformerFactory(net.sf.saxon.Configuration configuration) {
+		TransformerFactory factory = new net.sf.saxon.TransformerFactoryImpl(configuration);
 		try {
 			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
 		} catch (TransformerConfigurationException e) {
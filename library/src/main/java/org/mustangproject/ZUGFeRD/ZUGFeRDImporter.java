@@ -22,16 +22,15 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.stream.XMLStreamException;
 
+import org.mustangproject.EStandard;
 import org.mustangproject.FileAttachment;
 import org.mustangproject.Item;
 import org.mustangproject.Product;
 import org.mustangproject.ReferencedDocument;
 import org.mustangproject.SchemedID;
+import org.mustangproject.XMLSniffer;
 import org.mustangproject.XMLTools;
 import org.mustangproject.util.NodeMap;
 import org.slf4j.Logger;
@@ -77,12 +76,36 @@ public class ZUGFeRDImporter extends ZUGFeRDInvoiceImporter {
 		return importedInvoice.getNumber();
 	}
 
+	/**
+	 * @return the guideline ID of a CII document, read from the start of the raw XML, empty if there is none
+	 */
+	private String sniffGuideline() {
+		if (!containsMeta) {
+			throw new ZUGFeRDExportException("No suitable data/ZUGFeRD file could be found.");
+		}
+		if (rawXML == null) {
+			return extractString("//*[local-name() = 'GuidelineSpecifiedDocumentContextParameter']//*[local-name() = 'ID']");
+		}
+		try {
+			final XMLSniffer sniffed = XMLSniffer.sniff(rawXML);
+			// UBL has a CustomizationID instead, which is not a ZUGFeRD profile
+			final EStandard standard = sniffed.getStandard();
+			if (sniffed.getGuidelineID() == null || standard == EStandard.UBL || standard == EStandard.UBL_CREDITNOTE) {
+				return "";
+			}
+			return sniffed.getGuidelineID();
+		} catch (final XMLStreamException e) {
+			LOGGER.error("Failed to read guideline", e);
+			throw new ZUGFeRDExportException(e);
+		}
+	}
+
 	/**
 	 * @return the ZUGFeRD Profile
 	 */
 	public String getZUGFeRDProfil() {
 
-		String guideline = extractString("//*[local-name() = 'GuidelineSpecifiedDocumentContextParameter']//*[local-name() = 'ID']");
+		String guideline = sniffGuideline();
 		if (guideline.contains("xrechnung")) {
 			return "XRECHNUNG";
 		}
@@ -843,20 +866,15 @@ public class ZUGFeRDImporter extends ZUGFeRDInvoiceImporter {
 	}
 
 	/**
-	 * Get a NodeList by providing an path
+	 * Get a NodeList by providing an path, the result is remembered for the current document
 	 *
 	 * @param path a compliable Path
 	 * @return a Nodelist or null, if an error occurs
 	 */
 	public NodeList getNodeListByPath(String path) {
 
-		final XPathFactory xpathFact = XPathFactory.newInstance();
-		final XPath xPath = xpathFact.newXPath();
-		final String s = path;
-
 		try {
-			final XPathExpression xpr = xPath.compile(s);
-			return (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+			return getXPathCache().getNodeList(path);
 		} catch (final Exception e) {
 			LOGGER.error("Failed to evaluate XPath", e);
 			return null;
@@ -16,25 +16,28 @@ import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
 import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
@@ -59,7 +62,9 @@ import org.mustangproject.SchemedID;
 import org.mustangproject.TradeParty;
 import org.mustangproject.XMLTools;
 import org.mustangproject.Exceptions.StructureException;
+import org.mustangproject.util.DocumentIndex;
 import org.mustangproject.util.NodeMap;
+import org.mustangproject.util.XPathCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -102,6 +107,9 @@ public class ZUGFeRDInvoiceImporter {
 	protected CalculatedInvoice importedInvoice;
 	protected boolean recalcPrice;
 	protected boolean ignoreCalculationErrors;
+	protected boolean ignoreLineItems;
+	protected boolean ignoreOtherAttachments;
+	private XPathCache xpathCache;
 	protected boolean containsAXMLFileAttachment;
 
 	public ZUGFeRDInvoiceImporter() {
@@ -117,8 +125,13 @@ public class ZUGFeRDInvoiceImporter {
 	}
 
 	public void setPDFFilename(String pdfFilename) {
-		try (InputStream bis = Files.newInputStream(Paths.get(pdfFilename), StandardOpenOption.READ)) {
-			extractLowLevel(bis);
+		try (BufferedInputStream bis = new BufferedInputStream(Files.newInputStream(Paths.get(pdfFilename), StandardOpenOption.READ))) {
+			if (isPDF(bis)) {
+				// read from the file on demand, i.e. only the objects needed for the metadata and the attachments
+				extractPDF(new RandomAccessReadBufferedFile(pdfFilename));
+			} else {
+				extractLowLevel(bis);
+			}
 		} catch (final IOException e) {
 			LOGGER.error("Failed to extract ZUGFeRD data", e);
 			throw new ZUGFeRDExportException(e);
@@ -150,66 +163,84 @@ public class ZUGFeRDInvoiceImporter {
 	 */
 	private void extractLowLevel(InputStream inStream) throws IOException {
 		BufferedInputStream pdfStream = new BufferedInputStream(inStream);
+		if (isPDF(pdfStream)) { // we have a pdf
+			extractPDF(new RandomAccessReadBuffer(pdfStream));
+		} else {
+			// no PDF probably XML
+			containsMeta = true;
+			try {
+				setRawXML(XMLTools.getBytesFromStream(pdfStream));
+			} catch (ParseException e) {
+				LOGGER.error("Failed to parse PDF", e);
+			}
+
+
+		}
+	}
+
+	/***
+	 * checks for the %PDF signature without consuming it
+	 * @param pdfStream a stream supporting mark and reset
+	 * @return true if the stream starts like a PDF
+	 */
+	private static boolean isPDF(BufferedInputStream pdfStream) throws IOException {
 		byte[] pad = new byte[4];
-		pdfStream.mark(0);
-		int count = pdfStream.read(pad);
+		pdfStream.mark(4);
+		int count = pdfStream.readNBytes(pad, 0, pad.length);
 		pdfStream.reset();
 		byte[] pdfSignature = {'%', 'P', 'D', 'F'};
-		if (count == 4 && Arrays.equals(pad, pdfSignature)) { // we have a pdf
+		return count == 4 && Arrays.equals(pad, pdfSignature);
+	}
 
-			try (PDDocument doc = Loader.loadPDF(IOUtils.toByteArray(pdfStream))) {
-				// PDDocumentInformation info = doc.getDocumentInformation();
-				final PDDocumentNameDictionary names = new PDDocumentNameDictionary(doc.getDocumentCatalog());
-				//start
+	/***
+	 * reads the XMP metadata and the embedded files of a PDF. PDFBox parses only the cross reference table up front
+	 * and resolves the other objects when they are accessed, so only the path from the trailer via the catalog and its
+	 * name tree to the file specifications is read, the pages are not
+	 * @param source the PDF, closed afterwards
+	 */
+	private void extractPDF(RandomAccessRead source) {
+		try (RandomAccessRead pdf = source; PDDocument doc = Loader.loadPDF(pdf)) {
+			// PDDocumentInformation info = doc.getDocumentInformation();
+			final PDDocumentNameDictionary names = new PDDocumentNameDictionary(doc.getDocumentCatalog());
+			//start
+
+			if (doc.getDocumentCatalog() == null || doc.getDocumentCatalog().getMetadata() == null) {
+				LOGGER.info("no-xmlpart");
+				return;
+			}
 
-				if (doc.getDocumentCatalog() == null || doc.getDocumentCatalog().getMetadata() == null) {
-					LOGGER.info("no-xmlpart");
-					return;
-				}
+			try (InputStream XMP = doc.getDocumentCatalog().getMetadata().exportXMPMetadata()) {
+				xmpString = new String(XMLTools.getBytesFromStream(XMP), StandardCharsets.UTF_8);
+			}
 
-				try (InputStream XMP = doc.getDocumentCatalog().getMetadata().exportXMPMetadata()) {
-					xmpString = new String(XMLTools.getBytesFromStream(XMP), StandardCharsets.UTF_8);
-				}
+			final PDEmbeddedFilesNameTreeNode etn = names.getEmbeddedFiles();
+			if (etn == null) {
+				return;
+			}
 
-				final PDEmbeddedFilesNameTreeNode etn = names.getEmbeddedFiles();
-				if (etn == null) {
-					return;
-				}
+			final Map<String, PDComplexFileSpecification> efMap = etn.getNames();
+			// String filePath = "/tmp/";
 
-				final Map<String, PDComplexFileSpecification> efMap = etn.getNames();
-				// String filePath = "/tmp/";
+			if (efMap != null) {
+				extractFiles(efMap); // see
+				// https://memorynotfound.com/apache-pdfbox-extract-embedded-file-pdf-document/
+			} else {
 
-				if (efMap != null) {
-					extractFiles(efMap); // see
-					// https://memorynotfound.com/apache-pdfbox-extract-embedded-file-pdf-document/
-				} else {
-
-					final List<PDNameTreeNode<PDComplexFileSpecification>> kids = etn.getKids();
-					if (kids == null) {
-						return;
-					}
-					for (final PDNameTreeNode<PDComplexFileSpecification> node : kids) {
-						final Map<String, PDComplexFileSpecification> namesL = node.getNames();
-						if (namesL == null || namesL.isEmpty()) {
-							continue;
-						}
-						extractFiles(namesL);
+				final List<PDNameTreeNode<PDComplexFileSpecification>> kids = etn.getKids();
+				if (kids == null) {
+					return;
+				}
+				for (final PDNameTreeNode<PDComplexFileSpecification> node : kids) {
+					final Map<String, PDComplexFileSpecification> namesL = node.getNames();
+					if (namesL == null || namesL.isEmpty()) {
+						continue;
 					}
+					extractFiles(namesL);
 				}
-			} catch (Exception e) {
-				LOGGER.error("Failed to parse PDF", e);
-				//ignore otherwise
 			}
-		} else {
-			// no PDF probably XML
-			containsMeta = true;
-			try {
-				setRawXML(XMLTools.getBytesFromStream(pdfStream));
-			} catch (ParseException e) {
-				LOGGER.error("Failed to parse PDF", e);
-			}
-
-
+		} catch (Exception e) {
+			LOGGER.error("Failed to parse PDF", e);
+			//ignore otherwise
 		}
 	}
 
@@ -228,6 +259,24 @@ public class ZUGFeRDInvoiceImporter {
 		ignoreCalculationErrors = true;
 	}
 
+	/***
+	 * do not add the line items to the imported invoice, e.g. if only the header is needed or if the lines are processed
+	 * one at a time by getItemIterator() or getItemStream(). The totals are taken from the XML as usual, the check of
+	 * the invoice total is skipped because it would need the items
+	 */
+	public void doIgnoreLineItems() {
+		ignoreLineItems = true;
+	}
+
+	/***
+	 * when reading a PDF, decode only the invoice XML and the additional_data files and skip all other embedded files,
+	 * e.g. the attachments of a large invoice if only the invoice data is needed. getFileAttachmentsPDF() will then only
+	 * contain the decoded files. Has to be called before the PDF is set
+	 */
+	public void doIgnoreOtherAttachments() {
+		ignoreOtherAttachments = true;
+	}
+
 
 	/***
 	 * if the file attachment is not in the list of allowed file names we can't import the XML,
@@ -255,8 +304,6 @@ public class ZUGFeRDInvoiceImporter {
 			/**
 			 * filenames for invoice data (ZUGFeRD v1 and v2, Factur-X)
 			 */
-
-			final PDEmbeddedFile embeddedFile = entry.getValue().getEmbeddedFile();
 			List<String> validFilenames = Arrays.asList(
 				"ZUGFeRD-invoice.xml",
 				"zugferd-invoice.xml",
@@ -265,20 +312,29 @@ public class ZUGFeRDInvoiceImporter {
 				"order-x.xml",
 				"cida.xml"
 			);
+			final boolean isInvoice = validFilenames.contains(filename);
+			final boolean isAdditionalData = filename.startsWith("additional_data");
+			if (ignoreOtherAttachments && !isInvoice && !isAdditionalData) {
+				// neither the stream of the file nor its data are read
+				continue;
+			}
 
-			if (validFilenames.contains(filename)) {
+			final PDEmbeddedFile embeddedFile = entry.getValue().getEmbeddedFile();
+			// decoded once, shared by the invoice and the attachment
+			final byte[] content = embeddedFile.toByteArray();
+			if (isInvoice) {
 				containsMeta = true;
 
 				try {
-					setRawXML(embeddedFile.toByteArray());
+					setRawXML(content);
 				} catch (ParseException e) {
 					LOGGER.error("Failed to parse XML", e);
 				}
 			}
-			if (filename.startsWith("additional_data")) {
-				additionalXMLs.put(filename, embeddedFile.toByteArray());
+			if (isAdditionalData) {
+				additionalXMLs.put(filename, content);
 			}
-			pdfAttachments.add(new FileAttachment(filename, embeddedFile.getSubtype(), "Data", embeddedFile.toByteArray()));
+			pdfAttachments.add(new FileAttachment(filename, embeddedFile.getSubtype(), "Data", content));
 		}
 	}
 
@@ -303,6 +359,20 @@ public class ZUGFeRDInvoiceImporter {
 
 	}
 
+	/***
+	 * set an already parsed CII or UBL invoice, so that it does not have to be parsed again, e.g. by the validator.
+	 * Unlike setRawXML, the invoice is not parsed automatically, use extractInto for that
+	 * @param doc the namespace aware parsed document, which will only be read
+	 * @param rawXML the xml the document has been parsed from
+	 */
+	public void fromDocument(Document doc, byte[] rawXML) {
+		this.containsMeta = true;
+		this.rawXML = rawXML;
+		this.version = null;
+		this.parseAutomatically = false;
+		this.document = doc;
+	}
+
 	/***
 	 * set the xml of a CII invoice, simple version
 	 * @param rawXML the cii(?) as a string
@@ -385,19 +455,16 @@ public class ZUGFeRDInvoiceImporter {
 		 * setSender setRecipient setnumber bspw. due date
 		 * //ExchangedDocument//IssueDateTime//DateTimeString : due date optional
 		 */
-		XPathFactory xpathFact = XPathFactory.newInstance();
-		XPath xpath = xpathFact.newXPath();
-		XPathExpression xpr = xpath.compile("//*[local-name()=\"SellerTradeParty\"]|//*[local-name()=\"AccountingSupplierParty\"]/*");
-		NodeList SellerNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		// one walk through the document instead of one per //* expression
+		DocumentIndex documentIndex = new DocumentIndex(getDocument());
+		NodeList SellerNodes = documentIndex.union(documentIndex.getElements("SellerTradeParty"), documentIndex.getChildren("AccountingSupplierParty"));
 
-		XPathExpression shipEx = xpath.compile("//*[local-name()=\"ShipToTradeParty\"]");
-		NodeList deliveryNodes = (NodeList) shipEx.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList deliveryNodes = documentIndex.getElements("ShipToTradeParty");
 		if (deliveryNodes.getLength() > 0) {
 			zpp.setDeliveryAddress(new TradeParty(deliveryNodes));
 		}
 
-		XPathExpression ultimateShipEx = xpath.compile("//*[local-name()=\"UltimateShipToTradeParty\"]");
-		NodeList ultimateDeliveryNodes = (NodeList) ultimateShipEx.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList ultimateDeliveryNodes = documentIndex.getElements("UltimateShipToTradeParty");
 		if (ultimateDeliveryNodes.getLength() > 0) {
 			zpp.setEndCustomerDeliveryAddress(new TradeParty(ultimateDeliveryNodes));
 		}
@@ -405,16 +472,16 @@ public class ZUGFeRDInvoiceImporter {
 		List<IncludedNote> includedNotes = new ArrayList<>();
 
 		//UBL...
-		XPathExpression UBLNotesEx = xpath.compile("/*[local-name()=\"Invoice\"  or local-name()=\"CreditNote\"]/*[local-name()=\"Note\"]");
-		NodeList UBLNotesNd = (NodeList) UBLNotesEx.evaluate(getDocument(), XPathConstants.NODESET);
-		if (UBLNotesNd.getLength() > 0) {
+		String rootNode = documentIndex.getRootName();
+		boolean isUBL = Arrays.asList("Invoice", "CreditNote").contains(rootNode);
+		if (isUBL) {
+			NodeList UBLNotesNd = documentIndex.getRootChildren("Note");
 			for (int nodeIndex = 0; nodeIndex < UBLNotesNd.getLength(); nodeIndex++) {
 				includedNotes.add(IncludedNote.generalNote(UBLNotesNd.item(nodeIndex).getTextContent()));
 			}
 		}
 
-		XPathExpression shipExUBL = xpath.compile("//*[local-name()=\"Delivery\"]");
-		Node deliveryNode = (Node) shipExUBL.evaluate(getDocument(), XPathConstants.NODE);
+		Node deliveryNode = documentIndex.getElements("Delivery").item(0);
 
 		if (deliveryNode != null) {
 			TradeParty delivery = new TradeParty();
@@ -457,21 +524,16 @@ public class ZUGFeRDInvoiceImporter {
 		}
 
 
-		xpr = xpath.compile("//*[local-name()=\"BuyerTradeParty\"]|//*[local-name()=\"AccountingCustomerParty\"]/*");
-		NodeList BuyerNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList BuyerNodes = documentIndex.union(documentIndex.getElements("BuyerTradeParty"), documentIndex.getChildren("AccountingCustomerParty"));
 
-		xpr = xpath.compile("//*[local-name()=\"InvoicerTradeParty\"]");
-		NodeList invoicerNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList invoicerNodes = documentIndex.getElements("InvoicerTradeParty");
 
-		xpr = xpath.compile("//*[local-name()=\"InvoiceeTradeParty\"]");
-		NodeList invoiceeNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList invoiceeNodes = documentIndex.getElements("InvoiceeTradeParty");
 
-		xpr = xpath.compile("//*[local-name()=\"PayeeTradeParty\"]");
-		NodeList payeeNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList payeeNodes = documentIndex.getElements("PayeeTradeParty");
 
 		// UBL
-		XPathExpression shipPayee = xpath.compile("//*[local-name()=\"PayeeParty\"]/*");
-		NodeList ublPayeeNodes = (NodeList) shipPayee.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList ublPayeeNodes = documentIndex.getChildren("PayeeParty");
 
 		//NodeList UBLpayeeNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
 		if (ublPayeeNodes.getLength() > 0) {
@@ -494,12 +556,12 @@ public class ZUGFeRDInvoiceImporter {
 //		}
 
 
-		xpr = xpath.compile("//*[local-name()=\"ExchangedDocument\"]|//*[local-name()=\"HeaderExchangedDocument\"]");
-		NodeList ExchangedDocumentNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList ExchangedDocumentNodes = documentIndex.getElements("ExchangedDocument", "HeaderExchangedDocument");
 
-		xpr = xpath.compile("//*[local-name()=\"SpecifiedTradeSettlementMonetarySummation\"]/*[local-name()=\"GrandTotalAmount\"]|//*[local-name()=\"SpecifiedTradeSettlementHeaderMonetarySummation\"]/*[local-name()=\"GrandTotalAmount\"]|//*[local-name()=\"LegalMonetaryTotal\"]/*[local-name()=\"TaxInclusiveAmount\"]");
 		BigDecimal expectedGrandTotal = null;
-		NodeList totalNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList totalNodes = documentIndex.union(documentIndex.getChildren("SpecifiedTradeSettlementMonetarySummation", "GrandTotalAmount"),
+			documentIndex.getChildren("SpecifiedTradeSettlementHeaderMonetarySummation", "GrandTotalAmount"),
+			documentIndex.getChildren("LegalMonetaryTotal", "TaxInclusiveAmount"));
 		if (totalNodes.getLength() > 0) {
 			expectedGrandTotal = new BigDecimal(XMLTools.trimOrNull(totalNodes.item(0)));
 			if (zpp instanceof CalculatedInvoice) {
@@ -510,9 +572,10 @@ public class ZUGFeRDInvoiceImporter {
 			}
 		}
 
-		xpr = xpath.compile("//*[local-name()=\"SpecifiedTradeSettlementMonetarySummation\"]/*[local-name()=\"TaxBasisTotalAmount\"]|//*[local-name()=\"SpecifiedTradeSettlementHeaderMonetarySummation\"]/*[local-name()=\"TaxBasisTotalAmount\"]|//*[local-name()=\"LegalMonetaryTotal\"]/*[local-name()=\"TaxExclusiveAmount\"]");
 		BigDecimal expectedTaxBasis = null;
-		NodeList basisNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList basisNodes = documentIndex.union(documentIndex.getChildren("SpecifiedTradeSettlementMonetarySummation", "TaxBasisTotalAmount"),
+			documentIndex.getChildren("SpecifiedTradeSettlementHeaderMonetarySummation", "TaxBasisTotalAmount"),
+			documentIndex.getChildren("LegalMonetaryTotal", "TaxExclusiveAmount"));
 		if (basisNodes.getLength() > 0) {
 			expectedTaxBasis = new BigDecimal(XMLTools.trimOrNull(basisNodes.item(0)));
 			if (zpp instanceof CalculatedInvoice) {
@@ -523,29 +586,29 @@ public class ZUGFeRDInvoiceImporter {
 			}
 		}
 
-		xpr = xpath.compile("//*[local-name()=\"TotalPrepaidAmount\"]|//*[local-name()=\"PrepaidAmount\"]");
-		NodeList prepaidNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList prepaidNodes = documentIndex.getElements("TotalPrepaidAmount", "PrepaidAmount");
 		if (prepaidNodes.getLength() > 0) {
 			zpp.setTotalPrepaidAmount(new BigDecimal(XMLTools.trimOrNull(prepaidNodes.item(0))));
 		}
 
 
-		xpr = xpath.compile("//*[local-name()=\"SpecifiedTradeSettlementHeaderMonetarySummation\"]/*[local-name()=\"LineTotalAmount\"]|//*[local-name()=\"LegalMonetaryTotal\"]/*[local-name()=\"LineExtensionAmount\"]");
-		NodeList lineTotalNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList lineTotalNodes = documentIndex.union(documentIndex.getChildren("SpecifiedTradeSettlementHeaderMonetarySummation", "LineTotalAmount"),
+			documentIndex.getChildren("LegalMonetaryTotal", "LineExtensionAmount"));
 		if (lineTotalNodes.getLength() > 0) {
 			if (zpp instanceof CalculatedInvoice) {
 				((CalculatedInvoice) zpp).setLineTotalAmount(new BigDecimal(XMLTools.trimOrNull(lineTotalNodes.item(0))));
 			}
 		}
 
-		String currency = extractString("//*[local-name()=\"ApplicableHeaderTradeSettlement\"]/*[local-name()=\"InvoiceCurrencyCode\"]|//*[local-name()=\"DocumentCurrencyCode\"]");
+		String currency = DocumentIndex.getText(documentIndex.union(documentIndex.getChildren("ApplicableHeaderTradeSettlement", "InvoiceCurrencyCode"),
+			documentIndex.getElements("DocumentCurrencyCode")));
 		zpp.setCurrency(currency);
-		String taxCurrency = extractString("//*[local-name()=\"ApplicableHeaderTradeSettlement\"]/*[local-name()=\"TaxCurrencyCode\"]");
+		String taxCurrency = DocumentIndex.getText(documentIndex.getChildren("ApplicableHeaderTradeSettlement", "TaxCurrencyCode"));
 		if (!taxCurrency.isEmpty()) {
 			zpp.setTaxCurrency(taxCurrency);
 		}
-		xpr = xpath.compile("//*[local-name()=\"SpecifiedTradeSettlementHeaderMonetarySummation\"]/*[local-name()=\"TaxTotalAmount\"]|//*[local-name()=\"TaxTotal\"]/*[local-name()=\"TaxAmount\"]");
-		NodeList taxTotalNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList taxTotalNodes = documentIndex.union(documentIndex.getChildren("SpecifiedTradeSettlementHeaderMonetarySummation", "TaxTotalAmount"),
+			documentIndex.getChildren("TaxTotal", "TaxAmount"));
 		if (zpp instanceof CalculatedInvoice) {
 			for (int i = 0; i < taxTotalNodes.getLength(); i++) {
 				String taxTotalStr = XMLTools.trimOrNull(taxTotalNodes.item(i));
@@ -566,8 +629,7 @@ public class ZUGFeRDInvoiceImporter {
 		}
 
 		if (taxCurrency != null) {
-			xpr = xpath.compile("//*[local-name()=\"ApplicableHeaderTradeSettlement\"]/*[local-name()=\"TaxApplicableTradeCurrencyExchange\"]");
-			NodeList nodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+			NodeList nodes = documentIndex.getChildren("ApplicableHeaderTradeSettlement", "TaxApplicableTradeCurrencyExchange");
 			if (nodes.getLength() > 0 ) {
 				NodeList children = nodes.item(0).getChildNodes();
 				for (int index = 0; index < children.getLength(); index++) {
@@ -589,8 +651,8 @@ public class ZUGFeRDInvoiceImporter {
 			}
 		}
 
-		xpr = xpath.compile("//*[local-name()=\"SpecifiedTradeSettlementHeaderMonetarySummation\"]/*[local-name()=\"DuePayableAmount\"]|//*[local-name()=\"LegalMonetaryTotal\"]/*[local-name()=\"PayableAmount\"]");
-		NodeList lineDueNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList lineDueNodes = documentIndex.union(documentIndex.getChildren("SpecifiedTradeSettlementHeaderMonetarySummation", "DuePayableAmount"),
+			documentIndex.getChildren("LegalMonetaryTotal", "PayableAmount"));
 		BigDecimal duePayableAmount = null;
 		if (lineDueNodes.getLength() > 0) {
 			duePayableAmount = new BigDecimal(XMLTools.trimOrNull(lineDueNodes.item(0)));
@@ -686,36 +748,36 @@ public class ZUGFeRDInvoiceImporter {
 			}
 		}
 		zpp.addNotes(includedNotes);
-		String rootNode = extractString("local-name(/*)");
 		String potentialCashDiscountTerms;
-		if (rootNode != null && Arrays.asList("Invoice", "CreditNote").contains(rootNode)) {
+		if (isUBL) {
 			// UBL...
 			// //*[local-name()="Invoice" or local-name()="CreditNote"]
-			number = extractString("/*[local-name()=\"Invoice\" or local-name()=\"CreditNote\"]/*[local-name()=\"ID\"]").trim();
-			potentialCashDiscountTerms = extractString("/*[local-name()=\"Invoice\" or local-name()=\"CreditNote\"]/*[local-name()=\"PaymentTerms\"]/*[local-name()=\"Note\"]").trim();
-			typeCode = extractString("/*[local-name()=\"Invoice\"]/*[local-name()=\"InvoiceTypeCode\"] | /*[local-name()=\"CreditNote\"]/*[local-name()=\"CreditNoteTypeCode\"]").trim();
-			String issueDateStr = extractString("/*[local-name()=\"Invoice\" or local-name()=\"CreditNote\"]/*[local-name()=\"IssueDate\"]").trim();
+			number = DocumentIndex.getText(documentIndex.getRootChildren("ID")).trim();
+			potentialCashDiscountTerms = DocumentIndex.getText(documentIndex.getChildren(documentIndex.getRootChildren("PaymentTerms"), "Note")).trim();
+			typeCode = DocumentIndex.getText(documentIndex.getRootChildren(rootNode.equals("Invoice") ? "InvoiceTypeCode" : "CreditNoteTypeCode")).trim();
+			String issueDateStr = DocumentIndex.getText(documentIndex.getRootChildren("IssueDate")).trim();
 			if (!issueDateStr.isEmpty()) {
 				issueDate = parseDate(issueDateStr, "yyyy-MM-dd");
 			}
 
-			String tenderReference = extractString("/*[local-name()=\"Invoice\" or local-name()=\"CreditNote\"]/*[local-name()=\"OriginatorDocumentReference\"]/*[local-name()=\"ID\"]").trim();
+			String tenderReference = DocumentIndex.getText(documentIndex.getChildren(documentIndex.getRootChildren("OriginatorDocumentReference"), "ID")).trim();
 			if (tenderReference != null && !tenderReference.isEmpty()) {
 				zpp.setTenderReferencedDocument(tenderReference);
 			}
 
-			String dueDt = extractString("/*[local-name()=\"Invoice\" or local-name()=\"CreditNote\"]/*[local-name()=\"DueDate\"] | /*[local-name()=\"CreditNote\"]/*[local-name()=\"PaymentMeans\"]/*[local-name()=\"PaymentDueDate\"]").trim();
+			String dueDt = DocumentIndex.getText(rootNode.equals("CreditNote")
+				? documentIndex.union(documentIndex.getRootChildren("DueDate"), documentIndex.getChildren(documentIndex.getRootChildren("PaymentMeans"), "PaymentDueDate"))
+				: documentIndex.getRootChildren("DueDate")).trim();
 			if (!dueDt.isEmpty()) {
 				dueDate = parseDate(dueDt, "yyyy-MM-dd");
 			}
-			String deliveryDt = extractString("//*[local-name()=\"Delivery\"]/*[local-name()=\"ActualDeliveryDate\"]").trim();
+			String deliveryDt = DocumentIndex.getText(documentIndex.getChildren("Delivery", "ActualDeliveryDate")).trim();
 			if (!deliveryDt.isEmpty()) {
 				deliveryDate = parseDate(deliveryDt, "yyyy-MM-dd");
 			}
 		} else {
 			//CII — collect ALL Description texts so that #SKONTO# lines in any term block are found
-			XPathExpression descXpr = xpath.compile("//*[local-name()=\"SpecifiedTradePaymentTerms\"]/*[local-name()=\"Description\"]");
-			NodeList descNodes = (NodeList) descXpr.evaluate(getDocument(), XPathConstants.NODESET);
+			NodeList descNodes = documentIndex.getChildren("SpecifiedTradePaymentTerms", "Description");
 			StringBuilder sbDesc = new StringBuilder();
 			for (int di = 0; di < descNodes.getLength(); di++) {
 				String txt = descNodes.item(di).getTextContent();
@@ -729,17 +791,16 @@ public class ZUGFeRDInvoiceImporter {
 			potentialCashDiscountTerms = sbDesc.toString();
 		}
 
-		String creditorReferenceID = extractString("//*[local-name()=\"ApplicableHeaderTradeSettlement\"]/*[local-name()=\"CreditorReferenceID\"]").trim(); //BT-90
+		String creditorReferenceID = DocumentIndex.getText(documentIndex.getChildren("ApplicableHeaderTradeSettlement", "CreditorReferenceID")).trim(); //BT-90
 		if (creditorReferenceID == null || creditorReferenceID.isEmpty()) {
 			//maybe it's there in UBL?
-			creditorReferenceID = extractString("//*[local-name()=\"AccountingSupplierParty\"]/*[local-name()=\"Party\"]/*[local-name()=\"PartyIdentification\"]/*[local-name()=\"ID\"]").trim();
+			creditorReferenceID = DocumentIndex.getText(documentIndex.getChildren(documentIndex.getChildren(documentIndex.getChildren("AccountingSupplierParty", "Party"), "PartyIdentification"), "ID")).trim();
 		}
 		if (creditorReferenceID != null && !creditorReferenceID.isEmpty()) {
 			zpp.setCreditorReferenceID(creditorReferenceID);
 		}
 
-		xpr = xpath.compile("//*[local-name()=\"ApplicableHeaderTradeDelivery\"]|//*[local-name()=\"Delivery\"]");
-		NodeList headerTradeDeliveryNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList headerTradeDeliveryNodes = documentIndex.getElements("ApplicableHeaderTradeDelivery", "Delivery");
 
 		for (int i = 0; i < headerTradeDeliveryNodes.getLength(); i++) {
 			Node headerTradeDeliveryNode = headerTradeDeliveryNodes.item(i);
@@ -770,8 +831,7 @@ public class ZUGFeRDInvoiceImporter {
 		}
 
 
-		xpr = xpath.compile("//*[local-name()=\"ApplicableHeaderTradeAgreement\"]");
-		NodeList headerTradeAgreementNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList headerTradeAgreementNodes = documentIndex.getElements("ApplicableHeaderTradeAgreement");
 
 		for (int i = 0; i < headerTradeAgreementNodes.getLength(); i++) {
 			// XMLTools.trimOrNull(nodes.item(i)))) {
@@ -801,14 +861,14 @@ public class ZUGFeRDInvoiceImporter {
 
 
 		// Backward-compatible: keep the first Description as the plain-text paymentTermDescription
-		String paymentTermsDescription = extractString("//*[local-name()=\"SpecifiedTradePaymentTerms\"]/*[local-name()=\"Description\"]|//*[local-name()=\"PaymentTerms\"]/*[local-name()=\"Note\"]");
+		String paymentTermsDescription = DocumentIndex.getText(documentIndex.union(documentIndex.getChildren("SpecifiedTradePaymentTerms", "Description"),
+			documentIndex.getChildren("PaymentTerms", "Note")));
 		if (!paymentTermsDescription.isEmpty()) {
 			zpp.setPaymentTermDescription(paymentTermsDescription);
 		}
 
 
-		xpr = xpath.compile("//*[local-name()=\"ApplicableHeaderTradeSettlement\"]|//*[local-name()=\"ApplicableSupplyChainTradeSettlement\"]");
-		NodeList headerTradeSettlementNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList headerTradeSettlementNodes = documentIndex.getElements("ApplicableHeaderTradeSettlement", "ApplicableSupplyChainTradeSettlement");
 		List<BankDetails> bankDetails = new ArrayList<>();
 		String directDebitMandateID = null;
 		String IBAN = null, BIC = null, paymentMeansCode = null, paymentMeansInformation = null;
@@ -928,18 +988,19 @@ public class ZUGFeRDInvoiceImporter {
 			}
 		}
 
-		xpr = xpath.compile("/*[local-name()=\"Invoice\"]/*[local-name()=\"InvoicePeriod\"]/*"); //UBL only
-		NodeList periodNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		if (rootNode.equals("Invoice")) { //UBL only
+			NodeList periodNodes = documentIndex.getChildren(documentIndex.getRootChildren("InvoicePeriod"));
 
-		for (int periodChildIndex = 0; periodChildIndex < periodNodes.getLength(); periodChildIndex++) {
-			String localName = periodNodes.item(periodChildIndex).getLocalName();
-			if (localName != null && periodNodes.item(periodChildIndex).getLocalName().equals("StartDate")) {
-				deliveryPeriodStart = XMLTools.trimOrNull(periodNodes.item(periodChildIndex));
-			}
-			if (localName != null && periodNodes.item(periodChildIndex).getLocalName().equals("EndDate")) {
-				deliveryPeriodEnd = XMLTools.trimOrNull(periodNodes.item(periodChildIndex));
-			}
+			for (int periodChildIndex = 0; periodChildIndex < periodNodes.getLength(); periodChildIndex++) {
+				String localName = periodNodes.item(periodChildIndex).getLocalName();
+				if (localName != null && periodNodes.item(periodChildIndex).getLocalName().equals("StartDate")) {
+					deliveryPeriodStart = XMLTools.trimOrNull(periodNodes.item(periodChildIndex));
+				}
+				if (localName != null && periodNodes.item(periodChildIndex).getLocalName().equals("EndDate")) {
+					deliveryPeriodEnd = XMLTools.trimOrNull(periodNodes.item(periodChildIndex));
+				}
 
+			}
 		}
 
 
@@ -949,8 +1010,7 @@ public class ZUGFeRDInvoiceImporter {
 			zpp.setDeliveryDate(XMLTools.tryDate(deliveryPeriodStart));
 		}
 
-		xpr = xpath.compile("//*[local-name()=\"PaymentMeans\"]"); //UBL only
-		NodeList paymentMeansNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList paymentMeansNodes = documentIndex.getElements("PaymentMeans"); //UBL only
 
 		for (int i = 0; i < paymentMeansNodes.getLength(); i++) {
 			// XMLTools.trimOrNull(nodes.item(i)))) {
@@ -1035,22 +1095,21 @@ public class ZUGFeRDInvoiceImporter {
 		}
 
 		if (zpp.getBuyerOrderReferencedDocument() == null) {
-			String s = extractString("//*[local-name()=\"OrderReference\"]/*[local-name()=\"ID\"]");
+			String s = DocumentIndex.getText(documentIndex.getChildren("OrderReference", "ID"));
 			if (!s.isEmpty()) {
 				zpp.setBuyerOrderReferencedDocument(new ReferencedDocument(s));
 			}
 		}
 
 		if (zpp.getSellerOrderReferencedDocument() == null) {
-			String s = extractString("//*[local-name()=\"OrderReference\"]/*[local-name()=\"SalesOrderID\"]");
+			String s = DocumentIndex.getText(documentIndex.getChildren("OrderReference", "SalesOrderID"));
 			if (!s.isEmpty()) {
 				zpp.setSellerOrderReferencedDocument(new ReferencedDocument(s));
 			}
 		}
 
 		if (zpp.getDespatchAdviceReferencedDocument() == null) {
-			xpr = xpath.compile("//*[local-name()=\"DespatchDocumentReference\"]");
-			NodeList nodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+			NodeList nodes = documentIndex.getElements("DespatchDocumentReference");
 			if (nodes != null && nodes.getLength() > 0) {
 				ReferencedDocument doc = ReferencedDocument.fromNode(nodes.item(0));
 				zpp.setDespatchAdviceReferencedDocument(doc);
@@ -1058,8 +1117,7 @@ public class ZUGFeRDInvoiceImporter {
 		}
 
 		// UBL
-		xpr = xpath.compile("//*[local-name()=\"BillingReference\"]/*[local-name()=\"InvoiceDocumentReference\"]|//*[local-name()=\"BillingReference\"]/*[local-name()=\"CreditNoteDocumentReference\"]");
-		NodeList nodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList nodes = documentIndex.getChildren("BillingReference", "InvoiceDocumentReference", "CreditNoteDocumentReference");
 		if (nodes.getLength() != 0) {
 			for (int i = 0; i < nodes.getLength(); i++) {
 				Node currentItemNode = nodes.item(i);
@@ -1069,8 +1127,7 @@ public class ZUGFeRDInvoiceImporter {
 		}
 
 		// CII
-		xpr = xpath.compile("//*[local-name()=\"InvoiceReferencedDocument\"]");
-		nodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		nodes = documentIndex.getElements("InvoiceReferencedDocument");
 		if (nodes.getLength() != 0) {
 			for (int i = 0; i < nodes.getLength(); i++) {
 				Node currentItemNode = nodes.item(i);
@@ -1079,14 +1136,14 @@ public class ZUGFeRDInvoiceImporter {
 			}
 		}
 
-		String rounding = extractString("//*[local-name()=\"SpecifiedTradeSettlementHeaderMonetarySummation\"]/*[local-name()=\"RoundingAmount\"]|//*[local-name()=\"LegalMonetaryTotal\"]/*[local-name()=\"PayableRoundingAmount\"]");
+		String rounding = DocumentIndex.getText(documentIndex.union(documentIndex.getChildren("SpecifiedTradeSettlementHeaderMonetarySummation", "RoundingAmount"),
+			documentIndex.getChildren("LegalMonetaryTotal", "PayableRoundingAmount")));
 		if (!rounding.isEmpty()) {
 			zpp.setRoundingAmount(new BigDecimal(rounding.trim()));
 		}
 
-		xpr = xpath.compile("//*[local-name()=\"BuyerReference\"]");
 		String buyerReference = null;
-		lineTotalNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		lineTotalNodes = documentIndex.getElements("BuyerReference");
 		if (lineTotalNodes.getLength() > 0) {
 			buyerReference = XMLTools.trimOrNull(lineTotalNodes.item(0));
 		}
@@ -1094,25 +1151,22 @@ public class ZUGFeRDInvoiceImporter {
 			zpp.setReferenceNumber(buyerReference);
 		}
 
-		xpr = xpath.compile("//*[local-name()=\"IncludedSupplyChainTradeLineItem\"]|//*[local-name()=\"InvoiceLine\"]|//*[local-name()=\"CreditNoteLine\"]");
-		nodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		List<Item> items = new ArrayList<>();
+		if (!ignoreLineItems) {
+			itemIterator(documentIndex).forEachRemaining(items::add);
+		}
+		boolean hasItems = ignoreLineItems ? hasLines(documentIndex) : !items.isEmpty();
 
-		xpr = xpath.compile("//*[local-name()=\"ApplicableHeaderTradeSettlement\"]/*[local-name()=\"ApplicableTradeTax\"]");
-		NodeList docTaxNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+		NodeList docTaxNodes = documentIndex.getChildren("ApplicableHeaderTradeSettlement", "ApplicableTradeTax");
 
-		if (nodes.getLength() != 0) {
-			for (int i = 0; i < nodes.getLength(); i++) {
-
-				Node currentItemNode = nodes.item(i);
-				Item it = new Item(currentItemNode.getChildNodes(), recalcPrice);
+		if (hasItems) {
+			for (Item it : items) {
 				it.enrichProductFromVATBreakdown(docTaxNodes);
 				zpp.addItem(it);
-
 			}
 
 			// now handling base64 encoded attachments AttachmentBinaryObject=CII, EmbeddedDocumentBinaryObject=UBL
-			xpr = xpath.compile("//*[local-name()=\"AttachmentBinaryObject\"]|//*[local-name()=\"EmbeddedDocumentBinaryObject\"]");
-			NodeList attachmentNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+			NodeList attachmentNodes = documentIndex.getElements("AttachmentBinaryObject", "EmbeddedDocumentBinaryObject");
 			for (int i = 0; i < attachmentNodes.getLength(); i++) {
 				FileAttachment fa = new FileAttachment(attachmentNodes.item(i).getAttributes().getNamedItem("filename").getNodeValue(), attachmentNodes.item(i).getAttributes().getNamedItem("mimeCode").getNodeValue(), "Data", Base64.getMimeDecoder().decode(XMLTools.trimOrNull(attachmentNodes.item(i))));
 				NodeList nl = attachmentNodes.item(i).getParentNode().getChildNodes();
@@ -1130,8 +1184,10 @@ public class ZUGFeRDInvoiceImporter {
 			// be read,
 			// so the invoice remains arithmetically correct
 			// -> parse document level charges+allowances
-			xpr = xpath.compile("//*[local-name()=\"ApplicableHeaderTradeSettlement\"]/*[local-name()=\"SpecifiedTradeAllowanceCharge\"]|/*[local-name()=\"Invoice\" or local-name()=\"CreditNote\"]/*[local-name()=\"AllowanceCharge\"]"); //CII and UBL
-			NodeList chargeNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+			NodeList chargeNodes = documentIndex.getChildren("ApplicableHeaderTradeSettlement", "SpecifiedTradeAllowanceCharge"); //CII
+			if (isUBL) {
+				chargeNodes = documentIndex.union(chargeNodes, documentIndex.getRootChildren("AllowanceCharge"));
+			}
 			for (int i = 0; i < chargeNodes.getLength(); i++) {
 				NodeList chargeNodeChilds = chargeNodes.item(i).getChildNodes();
 				boolean isCharge = true;
@@ -1260,8 +1316,7 @@ public class ZUGFeRDInvoiceImporter {
 				}
 
 			}
-			xpr = xpath.compile("//*[local-name()=\"ApplicableHeaderTradeSettlement\"]/*[local-name()=\"SpecifiedLogisticsServiceCharge\"]"); // UBL unknown
-			chargeNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+			chargeNodes = documentIndex.getChildren("ApplicableHeaderTradeSettlement", "SpecifiedLogisticsServiceCharge"); // UBL unknown
 			for (int i = 0; i < chargeNodes.getLength(); i++) {
 				NodeList chargeNodeChilds = chargeNodes.item(i).getChildNodes();
 				String chargeAmount = null;
@@ -1293,8 +1348,7 @@ public class ZUGFeRDInvoiceImporter {
 				}
 			}
 
-			xpr = xpath.compile("//*[local-name()=\"SpecifiedTradePaymentTerms\"]/*[local-name()=\"ApplicableTradePaymentDiscountTerms\"]"); // cash discounts, UBL unknown
-			NodeList cashdiscountNodes = (NodeList) xpr.evaluate(getDocument(), XPathConstants.NODESET);
+			NodeList cashdiscountNodes = documentIndex.getChildren("SpecifiedTradePaymentTerms", "ApplicableTradePaymentDiscountTerms"); // cash discounts, UBL unknown
 			for (int i = 0; i < cashdiscountNodes.getLength(); i++) {
 				NodeList cashDiscountNodeChilds = cashdiscountNodes.item(i).getChildNodes();
 				CashDiscount cd = new CashDiscount();
@@ -1378,7 +1432,7 @@ public class ZUGFeRDInvoiceImporter {
 				throw new StructureException("Could not find out if it's an invoice, order, or delivery advice", 0);
 			}
 
-			if (whichType != EStandard.DELIVER_X && !ignoreCalculationErrors) {
+			if (whichType != EStandard.DELIVER_X && !ignoreCalculationErrors && !ignoreLineItems) {
 				// Check calculation if document type allows it and calculation errors should not be ignored
 
 				String payableTotalFromXml = XMLTools.nDigitFormat(duePayableAmount != null ? duePayableAmount : expectedGrandTotal, 2);
@@ -1402,6 +1456,75 @@ public class ZUGFeRDInvoiceImporter {
 		return zpp;
 	}
 
+	/***
+	 * the line items of the invoice, decoded one at a time while iterating, so that very large invoices can be processed
+	 * line by line (with constant memory together with ZUGFeRDStreamingInvoiceImporter and doIgnoreLineItems()).
+	 * Every call starts with the first line again and returns new items
+	 * @return the items in document order, with the product details from the VAT breakdown like in extractInto
+	 */
+	public Iterator<Item> getItemIterator() {
+		if (!containsMeta || getDocument() == null) {
+			throw new ZUGFeRDExportException("No suitable data/ZUGFeRD file could be found.");
+		}
+		final DocumentIndex documentIndex = new DocumentIndex(getDocument());
+		final NodeList docTaxNodes = documentIndex.getChildren("ApplicableHeaderTradeSettlement", "ApplicableTradeTax");
+		final Iterator<Item> items = itemIterator(documentIndex);
+		return new Iterator<Item>() {
+			@Override
+			public boolean hasNext() {
+				return items.hasNext();
+			}
+
+			@Override
+			public Item next() {
+				final Item it = items.next();
+				it.enrichProductFromVATBreakdown(docTaxNodes);
+				return it;
+			}
+		};
+	}
+
+	/***
+	 * @return the line items like getItemIterator(), as sequential stream
+	 */
+	public Stream<Item> getItemStream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(getItemIterator(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/***
+	 * @param documentIndex the index of getDocument()
+	 * @return true if the invoice has at least one line item, without reading it
+	 */
+	protected boolean hasLines(DocumentIndex documentIndex) {
+		return documentIndex.getElements("IncludedSupplyChainTradeLineItem", "InvoiceLine", "CreditNoteLine").getLength() > 0;
+	}
+
+	/***
+	 * reads the line items (IncludedSupplyChainTradeLineItem, InvoiceLine or CreditNoteLine) in document order, each
+	 * when it is requested from the iterator. The product details from the VAT breakdown are added by the callers
+	 * @param documentIndex the index of getDocument()
+	 * @return an iterator of new items, one per line
+	 */
+	protected Iterator<Item> itemIterator(DocumentIndex documentIndex) {
+		final NodeList nodes = documentIndex.getElements("IncludedSupplyChainTradeLineItem", "InvoiceLine", "CreditNoteLine");
+		return new Iterator<Item>() {
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < nodes.getLength();
+			}
+
+			@Override
+			public Item next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return new Item(nodes.item(index++).getChildNodes(), recalcPrice);
+			}
+		};
+	}
+
 	private Date parseDate(String issueDateString, String datePattern) throws ParseException {
 		Date parsedDate = null;
 		if (issueDateString != null) {
@@ -1418,16 +1541,24 @@ public class ZUGFeRDInvoiceImporter {
 		return document;
 	}
 
+	/***
+	 * @return the compiled expressions and remembered results of extractString for the current document, a new cache
+	 * whenever the document has been replaced
+	 */
+	protected XPathCache getXPathCache() {
+		if (xpathCache == null || xpathCache.getDocument() != getDocument()) {
+			xpathCache = new XPathCache(getDocument());
+		}
+		return xpathCache;
+	}
+
 	protected String extractString(String xpathStr) {
 		if (!containsMeta) {
 			throw new ZUGFeRDExportException("No suitable data/ZUGFeRD file could be found.");
 		}
 		final String result;
 		try {
-			final Document doc = getDocument();
-			final XPathFactory xpathFact = XPathFactory.newInstance();
-			final XPath xpath = xpathFact.newXPath();
-			result = xpath.evaluate(xpathStr, doc);
+			result = getXPathCache().getString(xpathStr);
 		} catch (final XPathExpressionException e) {
 			LOGGER.error("Failed to evaluate XPath", e);
 			throw new ZUGFeRDExportException(e);
@@ -1439,7 +1570,6 @@ public class ZUGFeRDInvoiceImporter {
 		if (!containsMeta) {
 			throw new Exception("Not yet parsed");
 		}
-		final String head = getUTF8();
 		String rootNode = extractString("local-name(/*)");
 		if (rootNode.equals("CrossIndustryDocument")) {
 			return EStandard.ZUGFERD;
@@ -1451,7 +1581,8 @@ public class ZUGFeRDInvoiceImporter {
 			return EStandard.FACTUR_X;
 		} else if (rootNode.equals("SCRDMCCBDACIDAMessageStructure")) {
 			return EStandard.DELIVER_X;
-		} else if (head.contains("<rsm:SCRDMCCBDACIOMessageStructure")) {
+		} else if (getUTF8().contains("<rsm:SCRDMCCBDACIOMessageStructure")) {
+			// only decoded if needed, it is a copy of the whole XML
 			return EStandard.ORDER_X;
 		}
 
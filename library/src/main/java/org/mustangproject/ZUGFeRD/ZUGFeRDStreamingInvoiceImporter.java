@@ -0,0 +1,339 @@
+package org.mustangproject.ZUGFeRD;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.mustangproject.Item;
+import org.mustangproject.XMLTools;
+import org.mustangproject.util.DocumentIndex;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/***
+ * imports very large CII or UBL invoices, e.g. freight or utility bills with tens of thousands of lines, by reading the
+ * XML as a stream instead of parsing it into a DOM of the whole document. Each line is read into a small DOM fragment,
+ * converted to an Item and dropped. Only the header, i.e. everything but the lines, is kept as a DOM, which extractInto
+ * parses like ZUGFeRDInvoiceImporter does, so the imported invoice is the same:
+ * <pre>
+ * ZUGFeRDStreamingInvoiceImporter importer = new ZUGFeRDStreamingInvoiceImporter();
+ * importer.setRawXML(xml, false);
+ * Invoice invoice = importer.extractInvoice();
+ * </pre>
+ * The XML is read twice, for the header when it is set and for the lines by extractInto. getDocument() returns the
+ * header document, lines only remain in it as far as they contain elements extractInto looks up document wide.
+ * With doIgnoreLineItems() the invoice is imported without the lines, which getItemIterator() then reads one at a
+ * time, with constant memory.
+ */
+public class ZUGFeRDStreamingInvoiceImporter extends ZUGFeRDInvoiceImporter {
+
+	/*** configured once, creating readers is thread-safe */
+	private static final XMLInputFactory FACTORY = newFactory();
+
+	private static final Set<String> LINES = new HashSet<>(Arrays.asList("IncludedSupplyChainTradeLineItem", "InvoiceLine", "CreditNoteLine"));
+
+	/***
+	 * the elements extractInto looks up wherever they are, and therefore also finds inside of lines, they are kept in the
+	 * header document with everything they contain. Has to be extended when extractInto looks up further elements.
+	 */
+	private static final Set<String> DOCUMENT_WIDE = new HashSet<>(Arrays.asList("AccountingCustomerParty",
+		"AccountingSupplierParty", "ApplicableHeaderTradeAgreement", "ApplicableHeaderTradeDelivery",
+		"ApplicableHeaderTradeSettlement", "ApplicableSupplyChainTradeSettlement", "BillingReference", "BuyerReference",
+		"BuyerTradeParty", "Delivery", "DespatchDocumentReference", "DocumentCurrencyCode", "ExchangedDocument",
+		"HeaderExchangedDocument", "InvoiceReferencedDocument", "InvoiceeTradeParty", "InvoicerTradeParty",
+		"LegalMonetaryTotal", "OrderReference", "PayeeParty", "PayeeTradeParty", "PaymentMeans", "PaymentTerms",
+		"PrepaidAmount", "SellerTradeParty", "ShipToTradeParty", "SpecifiedTradePaymentTerms",
+		"SpecifiedTradeSettlementHeaderMonetarySummation", "SpecifiedTradeSettlementMonetarySummation", "TaxTotal",
+		"TotalPrepaidAmount", "UltimateShipToTradeParty"));
+
+	/*** embedded files, their parent elements are kept in the header document as well */
+	private static final Set<String> ATTACHMENTS = new HashSet<>(Arrays.asList("AttachmentBinaryObject", "EmbeddedDocumentBinaryObject"));
+
+	private Document headerDocument;
+	/*** whether readHeader() came across a line */
+	private boolean headerHasLines;
+
+	public ZUGFeRDStreamingInvoiceImporter() {
+		super();
+	}
+
+	public ZUGFeRDStreamingInvoiceImporter(String pdfFilename) {
+		super(pdfFilename);
+	}
+
+	public ZUGFeRDStreamingInvoiceImporter(InputStream pdfStream) {
+		super(pdfStream);
+	}
+
+	/**
+	 * will return true if the metadata (just extract-ed or set with setMeta) contains ZUGFeRD XML, reads the header
+	 * document
+	 *
+	 * @return true if the invoice contains ZUGFeRD XML
+	 */
+	@Override
+	public boolean canParse() {
+		if (rawXML == null || rawXML.length == 0) {
+			return false;
+		}
+		try {
+			document = headerDocument = readHeader();
+		} catch (Exception e) {
+			return false;
+		}
+		// like getMeta().contains(), without a copy of the XML as string: part of SpecifiedExchangedDocumentContext (ZF1)
+		// and ExchangedDocumentContext (ZF2)
+		return contains(rawXML, "ExchangedDocumentContext".getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/***
+	 * @param documentIndex the index of getDocument()
+	 * @return true if the XML has at least one line, as seen when the header was read
+	 */
+	@Override
+	protected boolean hasLines(DocumentIndex documentIndex) {
+		if (headerDocument == null || getDocument() != headerDocument) {
+			return super.hasLines(documentIndex);
+		}
+		return headerHasLines;
+	}
+
+	/***
+	 * reads the lines from the XML once more, one by one when they are requested from the iterator
+	 * @param documentIndex the index of getDocument()
+	 * @return an iterator of new items, one per line
+	 */
+	@Override
+	protected Iterator<Item> itemIterator(DocumentIndex documentIndex) {
+		if (headerDocument == null || getDocument() != headerDocument) {
+			// a complete document, e.g. set by fromDocument
+			return super.itemIterator(documentIndex);
+		}
+		try {
+			return new LineIterator(FACTORY.createXMLStreamReader(new ByteArrayInputStream(rawXML)));
+		} catch (XMLStreamException e) {
+			throw new ZUGFeRDExportException(e);
+		}
+	}
+
+	/***
+	 * reads one line ahead, only as far as hasNext() needs to know if there is one
+	 */
+	private final class LineIterator implements Iterator<Item> {
+		private final XMLStreamReader reader;
+		/*** the items of the line read last, more than one if it contains lines itself */
+		private final Deque<Item> items = new ArrayDeque<>();
+		private boolean endOfDocument;
+
+		LineIterator(XMLStreamReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (items.isEmpty() && !endOfDocument) {
+				readLine();
+			}
+			return !items.isEmpty();
+		}
+
+		@Override
+		public Item next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return items.poll();
+		}
+
+		private void readLine() {
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT && LINES.contains(reader.getLocalName())) {
+						final Element line = readElement(reader, headerDocument);
+						items.add(new Item(line.getChildNodes(), recalcPrice));
+						// lines within lines follow the line they are part of, like in document order
+						final NodeList descendants = line.getElementsByTagNameNS("*", "*");
+						for (int i = 0; i < descendants.getLength(); i++) {
+							if (LINES.contains(descendants.item(i).getLocalName())) {
+								items.add(new Item(descendants.item(i).getChildNodes(), recalcPrice));
+							}
+						}
+						return;
+					}
+				}
+				endOfDocument = true;
+				reader.close();
+			} catch (XMLStreamException e) {
+				throw new ZUGFeRDExportException(e);
+			}
+		}
+	}
+
+	private Document readHeader() throws ParserConfigurationException, XMLStreamException {
+		final Document header = XMLTools.getDocumentBuilder(true).newDocument();
+		final XMLStreamReader reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(rawXML));
+		headerHasLines = false;
+		try {
+			Node parent = header;
+			while (reader.hasNext()) {
+				final int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT && LINES.contains(reader.getLocalName())) {
+					headerHasLines = true;
+					final Element line = readElement(reader, header);
+					if (pruneLine(line)) {
+						parent.appendChild(line);
+					}
+				} else if (event == XMLStreamConstants.START_ELEMENT) {
+					parent = parent.appendChild(createElement(reader, header));
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					parent = parent.getParentNode();
+				} else {
+					appendContent(reader, event, header, parent);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return header;
+	}
+
+	/***
+	 * removes everything from a line which extractInto does not look up
+	 * @param element the line or one of its descendants
+	 * @return false if nothing is left
+	 */
+	private static boolean pruneLine(Element element) {
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (ATTACHMENTS.contains(child.getLocalName())) {
+				// the description of the attachment is a sibling
+				return true;
+			}
+		}
+		boolean kept = false;
+		Node child = element.getFirstChild();
+		while (child != null) {
+			final Node next = child.getNextSibling();
+			if (child.getNodeType() == Node.ELEMENT_NODE
+				&& (DOCUMENT_WIDE.contains(child.getLocalName()) || pruneLine((Element) child))) {
+				kept = true;
+			} else {
+				element.removeChild(child);
+			}
+			child = next;
+		}
+		return kept;
+	}
+
+	/***
+	 * reads the element the reader is at, up to its end element
+	 * @param reader at a start element
+	 * @param owner the document to create the nodes with, the element is not appended to it
+	 * @return the element with all its content
+	 */
+	private static Element readElement(XMLStreamReader reader, Document owner) throws XMLStreamException {
+		final Element element = createElement(reader, owner);
+		Node parent = element;
+		while (parent != null) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				parent = parent.appendChild(createElement(reader, owner));
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				parent = parent == element ? null : parent.getParentNode();
+			} else {
+				appendContent(reader, event, owner, parent);
+			}
+		}
+		return element;
+	}
+
+	private static Element createElement(XMLStreamReader reader, Document owner) {
+		final Element element = owner.createElementNS(emptyToNull(reader.getNamespaceURI()),
+			qualifiedName(reader.getPrefix(), reader.getLocalName()));
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			final String prefix = reader.getNamespacePrefix(i);
+			element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+				prefix == null || prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix,
+				reader.getNamespaceURI(i) == null ? "" : reader.getNamespaceURI(i));
+		}
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)),
+				qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+		}
+		return element;
+	}
+
+	private static void appendContent(XMLStreamReader reader, int event, Document owner, Node parent) throws XMLStreamException {
+		switch (event) {
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				// the DOM has no text outside of the root element either
+				if (parent.getNodeType() != Node.DOCUMENT_NODE) {
+					parent.appendChild(owner.createTextNode(reader.getText()));
+				}
+				break;
+			case XMLStreamConstants.CDATA:
+				parent.appendChild(owner.createCDATASection(reader.getText()));
+				break;
+			case XMLStreamConstants.COMMENT:
+				parent.appendChild(owner.createComment(reader.getText()));
+				break;
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				parent.appendChild(owner.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+				break;
+			case XMLStreamConstants.DTD:
+				// like XMLTools.getDocumentBuilder
+				throw new XMLStreamException("DOCTYPE is disallowed", reader.getLocation());
+			default:
+				// start and end of the document
+		}
+	}
+
+	private static boolean contains(byte[] data, byte[] ascii) {
+		for (int i = 0; i <= data.length - ascii.length; i++) {
+			int j = 0;
+			while (j < ascii.length && data[i + j] == ascii[j]) {
+				j++;
+			}
+			if (j == ascii.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String qualifiedName(String prefix, String localName) {
+		return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+	}
+
+	private static String emptyToNull(String namespaceURI) {
+		return namespaceURI == null || namespaceURI.isEmpty() ? null : namespaceURI;
+	}
+
+	private static XMLInputFactory newFactory() {
+		final XMLInputFactory factory = XMLInputFactory.newFactory();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		// one text node per text, like the DOM
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		// no DTDs and therefore no (external) entities, like XMLTools.getDocumentBuilder
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+}
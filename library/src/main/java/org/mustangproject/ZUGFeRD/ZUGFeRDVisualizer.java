@@ -35,14 +35,11 @@ import org.apache.fop.configuration.DefaultConfigurationBuilder;
 import org.apache.xmlgraphics.util.MimeConstants;
 import org.mustangproject.ClasspathResolverURIAdapter;
 import org.mustangproject.EStandard;
+import org.mustangproject.XMLSniffer;
 import org.mustangproject.XMLTools;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.xml.sax.InputSource;
 
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
@@ -116,28 +113,9 @@ public class ZUGFeRDVisualizer {
 	 */
 	private EStandard findOutStandardFromRootNode(InputStream fis)
 		throws ParserConfigurationException {
-
-		String zf1Signature = "CrossIndustryDocument";
-		String zf2Signature = "CrossIndustryInvoice";
-		String ublSignature = "Invoice";
-		String ublCreditNoteSignature = "CreditNote";
-		String cioSignature = "SCRDMCCBDACIOMessageStructure";
-
 		try {
-			DocumentBuilder db = XMLTools.getDocumentBuilder(true);
-			Document doc = db.parse(new InputSource(fis));
-			Element root = doc.getDocumentElement();
-			if (root.getLocalName().equals(zf1Signature)) {
-				return EStandard.ZUGFERD;
-			} else if (root.getLocalName().equals(zf2Signature)) {
-				return EStandard.FACTUR_X;
-			} else if (root.getLocalName().equals(ublSignature)) {
-				return EStandard.UBL;
-			} else if (root.getLocalName().equals(ublCreditNoteSignature)) {
-				return EStandard.UBL_CREDITNOTE;
-			} else if (root.getLocalName().equals(cioSignature)) {
-				return EStandard.ORDER_X;
-			}
+			// only reads up to the root element instead of parsing the whole document
+			return XMLSniffer.sniffRoot(fis).getStandard();
 		} catch (Exception e) {
 			LOGGER.error("Failed to recognize standard", e);
 		}
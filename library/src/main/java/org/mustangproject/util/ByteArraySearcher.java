@@ -1,37 +1,54 @@
 package org.mustangproject.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
 /**
  * Find string in large files, text, binary or binary (PDF)
+ *
+ * Needles of up to SHORT_NEEDLE bytes are searched by scanning eight bytes at a time for their first byte (SWAR),
+ * longer ones with the Boyer-Moore-Horspool skip table. Needles searched repeatedly should be compiled once, see
+ * compile(). Besides byte arrays, ByteBuffers (also direct and memory mapped ones) and InputStreams can be searched.
  */
 public final class ByteArraySearcher {
 
+	/** up to the length of a word the SWAR scan for the first byte beats skipping */
+	private static final int SHORT_NEEDLE = Long.BYTES;
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final int STREAM_CHUNK = 64 * 1024;
+
 	private ByteArraySearcher() {
 	}
 
+	/***
+	 * the first occurrence of needle in haystack
+	 * @param haystack where to search
+	 * @param needle what to search
+	 * @return the index of the first occurrence or -1 if there is none or needle is empty
+	 */
 	public static int indexOf(byte[] haystack, byte[] needle) {
-		if (needle.length > haystack.length) {
-			return -1;
-		}
-
-		// Any needle to search?
-		if (needle.length == 0) {
-			return -1;
-		}
+		return indexOf(haystack, needle, 0);
+	}
 
-		for (int i = 0; i <= haystack.length - needle.length; i++) {
-			boolean found = true;
-			for (int j = 0; j < needle.length; j++) {
-				if (haystack[i + j] != needle[j]) {
-					found = false;
-					break;
-				}
-			}
-			if (found) {
-				return i;
-			}
+	/***
+	 * the first occurrence of needle in haystack at or after fromIndex
+	 * @param haystack where to search
+	 * @param needle what to search
+	 * @param fromIndex where to start
+	 * @return the index of the first occurrence or -1 if there is none or needle is empty
+	 */
+	public static int indexOf(byte[] haystack, byte[] needle, int fromIndex) {
+		if (needle.length > SHORT_NEEDLE) {
+			return compile(needle).indexOf(haystack, fromIndex);
 		}
-
-		return -1;
+		return indexOfShort(haystack, Math.max(fromIndex, 0), haystack.length, needle);
 	}
 
 	/***
@@ -60,12 +77,246 @@ public final class ByteArraySearcher {
 			return false;
 		}
 
-		for (int j = 0; j < needle.length; j++) {
-			if (haystack[j] != needle[j]) {
-				return false;
+		return Arrays.equals(haystack, 0, needle.length, needle, 0, needle.length);
+	}
+
+	/***
+	 * prepares a needle for repeated searches
+	 * @param needle what to search, is copied
+	 * @return the compiled needle, immutable and usable from several threads
+	 */
+	public static Needle compile(byte[] needle) {
+		return new Needle(needle);
+	}
+
+	/***
+	 * a needle with its precomputed skip table
+	 */
+	public static final class Needle {
+		private final byte[] needle;
+		/** how far the window may move if its last byte is the index, null for short needles */
+		private final int[] skip;
+
+		private Needle(byte[] needle) {
+			this.needle = needle.clone();
+			if (needle.length > SHORT_NEEDLE) {
+				skip = new int[256];
+				Arrays.fill(skip, needle.length);
+				for (int i = 0; i < needle.length - 1; i++) {
+					skip[needle[i] & 0xff] = needle.length - 1 - i;
+				}
+			} else {
+				skip = null;
 			}
 		}
 
-		return true;
+		public int length() {
+			return needle.length;
+		}
+
+		/***
+		 * @param haystack where to search
+		 * @return the index of the first occurrence or -1 if there is none or the needle is empty
+		 */
+		public int indexOf(byte[] haystack) {
+			return indexOf(haystack, 0);
+		}
+
+		/***
+		 * @param haystack where to search
+		 * @param fromIndex where to start
+		 * @return the index of the first occurrence or -1 if there is none or the needle is empty
+		 */
+		public int indexOf(byte[] haystack, int fromIndex) {
+			return indexOf(haystack, Math.max(fromIndex, 0), haystack.length);
+		}
+
+		/***
+		 * @param haystack where to search
+		 * @return true if haystack contains the needle
+		 */
+		public boolean isContainedIn(byte[] haystack) {
+			return indexOf(haystack) >= 0;
+		}
+
+		/***
+		 * searches the remaining bytes of a buffer, e.g. a MappedByteBuffer of a file. The position of the buffer is
+		 * not changed
+		 * @param haystack where to search
+		 * @return the absolute index in the buffer of the first occurrence or -1 if there is none or the needle is empty
+		 */
+		public int indexOf(ByteBuffer haystack) {
+			if (haystack.hasArray()) {
+				final int offset = haystack.arrayOffset();
+				final int found = indexOf(haystack.array(), offset + haystack.position(), offset + haystack.limit());
+				return found < 0 ? -1 : found - offset;
+			}
+			if (skip == null) {
+				return indexOfShort(haystack, haystack.position(), haystack.limit(), needle);
+			}
+			final int last = needle.length - 1;
+			final byte lastByte = needle[last];
+			final int end = haystack.limit() - needle.length;
+			int i = haystack.position();
+			while (i <= end) {
+				final byte b = haystack.get(i + last);
+				if (b == lastByte && regionMatches(haystack, i, last)) {
+					return i;
+				}
+				i += skip[b & 0xff];
+			}
+			return -1;
+		}
+
+		/***
+		 * reads the stream until the first occurrence of the needle (and possibly a little beyond) or its end. The
+		 * stream is not closed
+		 * @param haystack where to search
+		 * @return the offset of the first occurrence from the current position of the stream or -1 if there is none
+		 * or the needle is empty
+		 * @throws IOException if the stream can not be read
+		 */
+		public long indexOf(InputStream haystack) throws IOException {
+			if (needle.length == 0) {
+				return -1;
+			}
+			// the last needle.length-1 bytes of a chunk are kept for occurrences spanning two chunks
+			final byte[] buffer = new byte[Math.max(STREAM_CHUNK, needle.length * 2)];
+			final int keep = needle.length - 1;
+			long bufferStart = 0;
+			int filled = 0;
+			int read;
+			while ((read = haystack.read(buffer, filled, buffer.length - filled)) != -1) {
+				filled += read;
+				if (filled < buffer.length) {
+					continue;
+				}
+				final int found = indexOf(buffer, 0, filled);
+				if (found >= 0) {
+					return bufferStart + found;
+				}
+				System.arraycopy(buffer, filled - keep, buffer, 0, keep);
+				bufferStart += filled - keep;
+				filled = keep;
+			}
+			final int found = indexOf(buffer, 0, filled);
+			return found < 0 ? -1 : bufferStart + found;
+		}
+
+		private int indexOf(byte[] haystack, int from, int to) {
+			if (skip == null) {
+				return indexOfShort(haystack, from, to, needle);
+			}
+			final int last = needle.length - 1;
+			final byte lastByte = needle[last];
+			final int end = to - needle.length;
+			int i = from;
+			while (i <= end) {
+				final byte b = haystack[i + last];
+				if (b == lastByte && Arrays.equals(haystack, i, i + last, needle, 0, last)) {
+					return i;
+				}
+				i += skip[b & 0xff];
+			}
+			return -1;
+		}
+
+		private boolean regionMatches(ByteBuffer haystack, int start, int length) {
+			for (int j = 0; j < length; j++) {
+				if (haystack.get(start + j) != needle[j]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/***
+	 * finds a needle of a few bytes by looking for its first byte eight bytes at a time
+	 */
+	private static int indexOfShort(byte[] haystack, int from, int to, byte[] needle) {
+		if (needle.length == 0) {
+			return -1;
+		}
+		final byte first = needle[0];
+		final int end = to - needle.length;
+		int i = from;
+		while (i <= end) {
+			i = indexOfByte(haystack, i, end + 1, first);
+			if (i < 0) {
+				return -1;
+			}
+			if (Arrays.equals(haystack, i + 1, i + needle.length, needle, 1, needle.length)) {
+				return i;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	private static int indexOfShort(ByteBuffer haystack, int from, int to, byte[] needle) {
+		if (needle.length == 0) {
+			return -1;
+		}
+		final ByteBuffer littleEndian = haystack.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		final byte first = needle[0];
+		final long pattern = (first & 0xffL) * ONES;
+		final int end = to - needle.length;
+		int i = from;
+		while (i <= end) {
+			if (i + Long.BYTES <= to) {
+				final int hit = firstZeroByte(littleEndian.getLong(i) ^ pattern);
+				if (hit < 0) {
+					i += Long.BYTES;
+					continue;
+				}
+				i += hit;
+				if (i > end) {
+					return -1;
+				}
+			} else if (haystack.get(i) != first) {
+				i++;
+				continue;
+			}
+			int j = 1;
+			while (j < needle.length && haystack.get(i + j) == needle[j]) {
+				j++;
+			}
+			if (j == needle.length) {
+				return i;
+			}
+			i++;
+		}
+		return -1;
 	}
+
+	/***
+	 * @return the first index in [from, to) containing b, or -1
+	 */
+	private static int indexOfByte(byte[] haystack, int from, int to, byte b) {
+		final long pattern = (b & 0xffL) * ONES;
+		int i = from;
+		for (; i + Long.BYTES <= haystack.length && i < to; i += Long.BYTES) {
+			final int hit = firstZeroByte((long) LONGS.get(haystack, i) ^ pattern);
+			if (hit >= 0) {
+				return i + hit < to ? i + hit : -1;
+			}
+		}
+		for (; i < to; i++) {
+			if (haystack[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/***
+	 * @param word eight bytes in little endian order
+	 * @return the index of the lowest zero byte or -1 if there is none
+	 */
+	private static int firstZeroByte(long word) {
+		final long found = (word - ONES) & ~word & HIGHS;
+		return found == 0 ? -1 : Long.numberOfTrailingZeros(found) >>> 3;
+	}
+
 }
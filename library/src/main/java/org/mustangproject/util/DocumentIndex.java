@@ -0,0 +1,206 @@
+package org.mustangproject.util;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link DocumentIndex} is the document wide counterpart of {@link NodeMap}: it walks the whole tree once and
+ * records every element by its {@code LocalName}, together with its position in document order.
+ * The lookups which otherwise need a {@code //*[local-name()="..."]} XPath expression, i.e. a scan of the whole
+ * document each, are then answered from the index:
+ * <pre>
+ * //*[local-name()="A"]|//*[local-name()="B"]     getElements("A", "B")
+ * //*[local-name()="A"]/*[local-name()="B"]       getChildren("A", "B")
+ * //*[local-name()="A"]/*                         getChildren("A")
+ * /*[local-name()="Invoice"]/*[local-name()="B"]  getRootChildren("B"), if getRootName() is Invoice
+ * </pre>
+ * All lookups return the matching elements in document order, like the XPath expressions would.
+ * The index does not notice later modifications of the document.
+ */
+public class DocumentIndex {
+	private final Map<String, List<Node>> elements = new HashMap<>();
+	private final Map<Node, Integer> positions = new IdentityHashMap<>();
+	private final Comparator<Node> documentOrder = Comparator.comparingInt(positions::get);
+	private final Element root;
+
+	/**
+	 * Create a new {@link DocumentIndex}
+	 *
+	 * @param document the document to be indexed, must not be null
+	 * @throws IllegalArgumentException when argument is null
+	 */
+	public DocumentIndex(Document document) {
+		if (document == null) {
+			throw new IllegalArgumentException("document cannot be null");
+		}
+		root = document.getDocumentElement();
+		if (root != null) {
+			index(root);
+		}
+	}
+
+	private void index(Element rootElement) {
+		// depth first without recursion, line items may be nested deeply
+		Node node = rootElement;
+		while (node != null) {
+			if (node.getNodeType() == Node.ELEMENT_NODE && node.getLocalName() != null) {
+				positions.put(node, positions.size());
+				elements.computeIfAbsent(node.getLocalName(), k -> new ArrayList<>()).add(node);
+			}
+			if (node.getNodeType() == Node.ELEMENT_NODE && node.getFirstChild() != null) {
+				node = node.getFirstChild();
+				continue;
+			}
+			while (node != rootElement && node.getNextSibling() == null) {
+				node = node.getParentNode();
+			}
+			node = node == rootElement ? null : node.getNextSibling();
+		}
+	}
+
+	/**
+	 * @return the {@code LocalName} of the root element, an empty string for an empty document
+	 */
+	public String getRootName() {
+		return root == null || root.getLocalName() == null ? "" : root.getLocalName();
+	}
+
+	/**
+	 * Get all elements by {@code LocalName}, wherever they are
+	 *
+	 * @param localNames one or more {@code LocalName}s
+	 * @return the matching elements in document order (can be empty if nothing matches)
+	 */
+	public NodeList getElements(String... localNames) {
+		if (localNames.length == 1) {
+			return new IndexedNodeList(elements.getOrDefault(localNames[0], Collections.emptyList()));
+		}
+		List<Node> result = new ArrayList<>();
+		for (String localName : new HashSet<>(Arrays.asList(localNames))) {
+			result.addAll(elements.getOrDefault(localName, Collections.emptyList()));
+		}
+		result.sort(documentOrder);
+		return new IndexedNodeList(result);
+	}
+
+	/**
+	 * Get the child elements of all elements with a {@code LocalName}
+	 *
+	 * @param parentLocalName the {@code LocalName} of the parents
+	 * @param localNames      the {@code LocalName}s of the children, none to get all child elements
+	 * @return the matching elements in document order (can be empty if nothing matches)
+	 */
+	public NodeList getChildren(String parentLocalName, String... localNames) {
+		if (localNames.length == 0) {
+			return getChildren(getElements(parentLocalName));
+		}
+		List<Node> result = new ArrayList<>();
+		NodeList candidates = getElements(localNames);
+		for (int i = 0; i < candidates.getLength(); i++) {
+			Node parent = candidates.item(i).getParentNode();
+			if (parent != null && parentLocalName.equals(parent.getLocalName())) {
+				result.add(candidates.item(i));
+			}
+		}
+		return new IndexedNodeList(result);
+	}
+
+	/**
+	 * Get the child elements of some elements
+	 *
+	 * @param parents    elements of the indexed document
+	 * @param localNames the {@code LocalName}s of the children, none to get all child elements
+	 * @return the matching elements in document order (can be empty if nothing matches)
+	 */
+	public NodeList getChildren(NodeList parents, String... localNames) {
+		List<String> localNamesList = Arrays.asList(localNames);
+		List<Node> result = new ArrayList<>();
+		for (int i = 0; i < parents.getLength(); i++) {
+			for (Node child = parents.item(i).getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (positions.containsKey(child) && (localNamesList.isEmpty() || localNamesList.contains(child.getLocalName()))) {
+					result.add(child);
+				}
+			}
+		}
+		if (parents.getLength() > 1) {
+			// parents may be nested in each other
+			result.sort(documentOrder);
+		}
+		return new IndexedNodeList(result);
+	}
+
+	/**
+	 * Get the child elements of the root element
+	 *
+	 * @param localNames the {@code LocalName}s of the children, none to get all child elements
+	 * @return the matching elements in document order (can be empty if nothing matches)
+	 */
+	public NodeList getRootChildren(String... localNames) {
+		return getChildren(new IndexedNodeList(root == null ? Collections.emptyList() : Collections.singletonList(root)), localNames);
+	}
+
+	/**
+	 * Combine the results of several lookups, like the XPath union operator {@code |}
+	 *
+	 * @param nodeLists results of lookups of this index
+	 * @return the elements of all lists in document order, without duplicates
+	 */
+	public NodeList union(NodeList... nodeLists) {
+		Map<Node, Boolean> distinct = new IdentityHashMap<>();
+		List<Node> result = new ArrayList<>();
+		for (NodeList nodeList : nodeLists) {
+			for (int i = 0; i < nodeList.getLength(); i++) {
+				if (distinct.put(nodeList.item(i), Boolean.TRUE) == null) {
+					result.add(nodeList.item(i));
+				}
+			}
+		}
+		result.sort(documentOrder);
+		return new IndexedNodeList(result);
+	}
+
+	/**
+	 * Get the text content of the first element, like the XPath string value of a node set
+	 *
+	 * @param nodeList the result of a lookup
+	 * @return the text content of the first element, an empty string if there is none
+	 */
+	public static String getText(NodeList nodeList) {
+		return nodeList.getLength() == 0 ? "" : nodeList.item(0).getTextContent();
+	}
+
+	private static class IndexedNodeList implements NodeList {
+		private final List<Node> nodes;
+
+		IndexedNodeList(List<Node> nodes) {
+			this.nodes = nodes;
+		}
+
+		@Override
+		public Node item(int index) {
+			return index >= 0 && index < nodes.size() ? nodes.get(index) : null;
+		}
+
+		@Override
+		public int getLength() {
+			return nodes.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getRootName() + " " + elements.keySet();
+	}
+}
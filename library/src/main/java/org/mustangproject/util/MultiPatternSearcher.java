@@ -0,0 +1,269 @@
+package org.mustangproject.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Find any of a set of byte patterns in one pass over large files, text or binary (PDF).
+ * The patterns are compiled once into an Aho-Corasick automaton, so the cost of a search does not depend on the
+ * number of patterns. An instance is immutable and can be shared between threads.
+ */
+public final class MultiPatternSearcher {
+
+	private static final int ALPHABET = 256;
+
+	private final int patternCount;
+	/** transition table, next state is delta[state * 256 + unsigned byte] */
+	private final int[] delta;
+	/** indices of the patterns ending in a state (including those of its suffix states), null if none */
+	private final int[][] outputs;
+
+	/***
+	 * compiles the patterns
+	 * @param patterns the needles, their index in this list identifies them in the results. Empty patterns never match
+	 */
+	public MultiPatternSearcher(List<byte[]> patterns) {
+		patternCount = patterns.size();
+		// build the trie
+		List<int[]> gotos = new ArrayList<>();
+		List<int[]> outs = new ArrayList<>();
+		gotos.add(newRow());
+		outs.add(null);
+		for (int patternIndex = 0; patternIndex < patterns.size(); patternIndex++) {
+			byte[] pattern = patterns.get(patternIndex);
+			if (pattern.length == 0) {
+				continue;
+			}
+			int state = 0;
+			for (byte b : pattern) {
+				int next = gotos.get(state)[b & 0xff];
+				if (next < 0) {
+					next = gotos.size();
+					gotos.get(state)[b & 0xff] = next;
+					gotos.add(newRow());
+					outs.add(null);
+				}
+				state = next;
+			}
+			outs.set(state, append(outs.get(state), patternIndex));
+		}
+		// breadth first: failure links, merged outputs and the complete transition table
+		int states = gotos.size();
+		delta = new int[states * ALPHABET];
+		outputs = new int[states][];
+		int[] fail = new int[states];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		int[] root = gotos.get(0);
+		for (int c = 0; c < ALPHABET; c++) {
+			if (root[c] < 0) {
+				delta[c] = 0;
+			} else {
+				delta[c] = root[c];
+				fail[root[c]] = 0;
+				queue.add(root[c]);
+			}
+		}
+		outputs[0] = outs.get(0);
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			outputs[state] = merge(outs.get(state), outputs[fail[state]]);
+			int[] row = gotos.get(state);
+			for (int c = 0; c < ALPHABET; c++) {
+				int next = row[c];
+				if (next < 0) {
+					delta[state * ALPHABET + c] = delta[fail[state] * ALPHABET + c];
+				} else {
+					delta[state * ALPHABET + c] = next;
+					fail[next] = delta[fail[state] * ALPHABET + c];
+					queue.add(next);
+				}
+			}
+		}
+	}
+
+	/***
+	 * convenience constructor for textual patterns
+	 * @param patterns the needles, encoded as UTF-8
+	 * @return the compiled searcher
+	 */
+	public static MultiPatternSearcher of(String... patterns) {
+		List<byte[]> bytes = new ArrayList<>();
+		for (String pattern : patterns) {
+			bytes.add(pattern.getBytes(StandardCharsets.UTF_8));
+		}
+		return new MultiPatternSearcher(bytes);
+	}
+
+	public int getPatternCount() {
+		return patternCount;
+	}
+
+	/***
+	 * which of the patterns occur in haystack
+	 * @param haystack the bytes to search
+	 * @return the indices of the patterns found
+	 */
+	public BitSet findAll(byte[] haystack) {
+		Scan scan = new Scan(-1);
+		scan.feed(haystack, 0, haystack.length);
+		return scan.found;
+	}
+
+	/***
+	 * which of the patterns occur in the remaining bytes of the buffers, e.g. MappedByteBuffers of a file, which are
+	 * searched as if they were concatenated. The positions of the buffers are not changed
+	 * @param haystack the bytes to search
+	 * @return the indices of the patterns found
+	 */
+	public BitSet findAll(ByteBuffer... haystack) {
+		Scan scan = new Scan(-1);
+		for (ByteBuffer buffer : haystack) {
+			scan.feed(buffer);
+		}
+		return scan.found;
+	}
+
+	/***
+	 * which of the patterns occur in the stream, which is read until its end but not closed
+	 * @param haystack the bytes to search
+	 * @return the indices of the patterns found
+	 * @throws IOException if the stream can not be read
+	 */
+	public BitSet findAll(InputStream haystack) throws IOException {
+		Scan scan = new Scan(-1);
+		scan.feed(haystack);
+		return scan.found;
+	}
+
+	/***
+	 * the pattern with the lowest index which occurs in haystack, i.e. the patterns are in order of priority.
+	 * The search stops as soon as the first pattern has been found
+	 * @param haystack the bytes to search
+	 * @return the index of the pattern or -1 if none occurs
+	 */
+	public int findFirstPattern(byte[] haystack) {
+		Scan scan = new Scan(0);
+		scan.feed(haystack, 0, haystack.length);
+		return scan.found.nextSetBit(0);
+	}
+
+	/***
+	 * see findFirstPattern(byte[]), for the remaining bytes of buffers, e.g. MappedByteBuffers of a file, which are
+	 * searched as if they were concatenated
+	 * @param haystack the bytes to search
+	 * @return the index of the pattern or -1 if none occurs
+	 */
+	public int findFirstPattern(ByteBuffer... haystack) {
+		Scan scan = new Scan(0);
+		for (ByteBuffer buffer : haystack) {
+			scan.feed(buffer);
+		}
+		return scan.found.nextSetBit(0);
+	}
+
+	/***
+	 * see findFirstPattern(byte[]), for a stream which is read until its end (or the first pattern) but not closed
+	 * @param haystack the bytes to search
+	 * @return the index of the pattern or -1 if none occurs
+	 * @throws IOException if the stream can not be read
+	 */
+	public int findFirstPattern(InputStream haystack) throws IOException {
+		Scan scan = new Scan(0);
+		scan.feed(haystack);
+		return scan.found.nextSetBit(0);
+	}
+
+	/***
+	 * the state of a search, the haystack can be fed in chunks
+	 */
+	private final class Scan {
+		private final BitSet found = new BitSet(patternCount);
+		private final int stopAt;
+		private int state = 0;
+		private boolean done;
+
+		/***
+		 * @param stopAt the search is complete once this pattern has been found, -1 to search until all are found
+		 */
+		Scan(int stopAt) {
+			this.stopAt = stopAt;
+			done = patternCount == 0;
+		}
+
+		void feed(byte[] haystack, int offset, int length) {
+			int s = state;
+			for (int i = offset, end = offset + length; i < end && !done; i++) {
+				s = delta[s * ALPHABET + (haystack[i] & 0xff)];
+				if (outputs[s] != null) {
+					match(outputs[s]);
+				}
+			}
+			state = s;
+		}
+
+		void feed(ByteBuffer haystack) {
+			int s = state;
+			for (int i = haystack.position(), end = haystack.limit(); i < end && !done; i++) {
+				s = delta[s * ALPHABET + (haystack.get(i) & 0xff)];
+				if (outputs[s] != null) {
+					match(outputs[s]);
+				}
+			}
+			state = s;
+		}
+
+		void feed(InputStream haystack) throws IOException {
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while (!done && (read = haystack.read(buffer)) != -1) {
+				feed(buffer, 0, read);
+			}
+		}
+
+		private void match(int[] patternIndices) {
+			for (int patternIndex : patternIndices) {
+				found.set(patternIndex);
+			}
+			if (stopAt >= 0) {
+				done = found.get(stopAt);
+			} else {
+				done = found.cardinality() == patternCount;
+			}
+		}
+	}
+
+	private static int[] newRow() {
+		int[] row = new int[ALPHABET];
+		Arrays.fill(row, -1);
+		return row;
+	}
+
+	private static int[] append(int[] list, int value) {
+		if (list == null) {
+			return new int[]{value};
+		}
+		int[] result = Arrays.copyOf(list, list.length + 1);
+		result[list.length] = value;
+		return result;
+	}
+
+	private static int[] merge(int[] own, int[] inherited) {
+		if (inherited == null) {
+			return own;
+		}
+		if (own == null) {
+			return inherited;
+		}
+		int[] result = Arrays.copyOf(own, own.length + inherited.length);
+		System.arraycopy(inherited, 0, result, own.length, inherited.length);
+		return result;
+	}
+
+}
@@ -0,0 +1,112 @@
+package org.mustangproject.util;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link XPathCache} evaluates XPath expressions on one document and remembers the results, so that asking for the
+ * same value again is a map lookup instead of another scan of the whole tree.
+ * The expressions themselves are compiled once per thread and shared by all instances: JAXP neither guarantees
+ * {@link XPath} nor {@link XPathExpression} to be thread-safe. Per thread only the {@link #MAX_EXPRESSIONS} most
+ * recently used expressions are kept, callers may pass arbitrary paths and pooled threads live long.
+ * Like the DOM it reads, an instance must not be used by several threads at once, and it does not notice later
+ * modifications of the document.
+ */
+public class XPathCache {
+	/** the number of compiled expressions kept per thread, more than the importer's getters use */
+	public static final int MAX_EXPRESSIONS = 64;
+
+	private static final ThreadLocal<XPath> XPATH = ThreadLocal.withInitial(() -> XPathFactory.newInstance().newXPath());
+	/** least recently used first */
+	private static final ThreadLocal<LinkedHashMap<String, XPathExpression>> EXPRESSIONS =
+		ThreadLocal.withInitial(() -> new LinkedHashMap<>(16, 0.75f, true));
+
+	private final Node document;
+	private final Map<String, String> strings = new HashMap<>();
+	private final Map<String, NodeList> nodeLists = new HashMap<>();
+
+	/**
+	 * Create a new {@link XPathCache}
+	 *
+	 * @param document the document (or other context node) the expressions are evaluated on
+	 */
+	public XPathCache(Node document) {
+		this.document = document;
+	}
+
+	/**
+	 * Get an expression compiled by the current thread
+	 *
+	 * @param expression an XPath expression
+	 * @return the compiled expression, to be used by the current thread only
+	 * @throws XPathExpressionException if the expression cannot be compiled
+	 */
+	public static XPathExpression compile(String expression) throws XPathExpressionException {
+		LinkedHashMap<String, XPathExpression> expressions = EXPRESSIONS.get();
+		XPathExpression compiled = expressions.get(expression);
+		if (compiled == null) {
+			compiled = XPATH.get().compile(expression);
+			expressions.put(expression, compiled);
+			Iterator<XPathExpression> it = expressions.values().iterator();
+			while (expressions.size() > MAX_EXPRESSIONS) {
+				it.next();
+				it.remove();
+			}
+		}
+		return compiled;
+	}
+
+	/**
+	 * @return the node the expressions are evaluated on
+	 */
+	public Node getDocument() {
+		return document;
+	}
+
+	/**
+	 * Evaluate an expression as string
+	 *
+	 * @param expression an XPath expression
+	 * @return the string value, e.g. the text of the first matching element or an empty string
+	 * @throws XPathExpressionException if the expression cannot be compiled or evaluated
+	 */
+	public String getString(String expression) throws XPathExpressionException {
+		String result = strings.get(expression);
+		if (result == null) {
+			result = compile(expression).evaluate(document);
+			strings.put(expression, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Evaluate an expression as node set
+	 *
+	 * @param expression an XPath expression
+	 * @return the matching nodes in document order
+	 * @throws XPathExpressionException if the expression cannot be compiled or evaluated
+	 */
+	public NodeList getNodeList(String expression) throws XPathExpressionException {
+		NodeList result = nodeLists.get(expression);
+		if (result == null) {
+			result = (NodeList) compile(expression).evaluate(document, XPathConstants.NODESET);
+			nodeLists.put(expression, result);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "XPathCache " + strings.keySet() + " " + nodeLists.keySet();
+	}
+}
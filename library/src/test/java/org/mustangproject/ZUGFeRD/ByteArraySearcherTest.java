@@ -4,7 +4,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Random;
 
 import org.junit.Test;
 import org.mustangproject.util.ByteArraySearcher;
@@ -40,4 +45,55 @@ public class ByteArraySearcherTest
     assertFalse (ByteArraySearcher.startsWith (haystack, new byte [] { 'h' }));
     assertFalse (ByteArraySearcher.startsWith (haystack, new byte [] { 'r', 'o' }));
   }
+
+  @Test
+  public void testAgainstNaiveSearch () {
+    Random random = new Random (4711);
+    for (int round = 0; round < 2000; round++) {
+      // a small alphabet provokes partial matches
+      byte [] haystack = new byte [random.nextInt (100)];
+      for (int i = 0; i < haystack.length; i++)
+        haystack[i] = (byte) ('a' + random.nextInt (3));
+      byte [] needle = new byte [1 + random.nextInt (12)];
+      for (int i = 0; i < needle.length; i++)
+        needle[i] = (byte) ('a' + random.nextInt (3));
+      int expected = naiveIndexOf (haystack, needle);
+      assertEquals (expected, ByteArraySearcher.indexOf (haystack, needle));
+      assertEquals (expected, ByteArraySearcher.compile (needle).indexOf (ByteBuffer.wrap (haystack)));
+      ByteBuffer direct = ByteBuffer.allocateDirect (haystack.length);
+      direct.put (haystack).flip ();
+      assertEquals (expected, ByteArraySearcher.compile (needle).indexOf (direct));
+    }
+  }
+
+  @Test
+  public void testSources () throws IOException {
+    byte [] haystack = new byte [300000];
+    byte [] needle = "s2industries.ZUGFeRD.PDF".getBytes (StandardCharsets.ISO_8859_1);
+    // spans the boundary of the first stream chunk
+    System.arraycopy (needle, 0, haystack, 65536 - 7, needle.length);
+    ByteArraySearcher.Needle compiled = ByteArraySearcher.compile (needle);
+    assertEquals (65536 - 7, compiled.indexOf (haystack));
+    assertEquals (-1, compiled.indexOf (haystack, 65536));
+    try (InputStream in = new ByteArrayInputStream (haystack)) {
+      assertEquals (65536 - 7, compiled.indexOf (in));
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect (haystack.length);
+    buffer.put (haystack).flip ();
+    assertEquals (65536 - 7, compiled.indexOf (buffer));
+    buffer.position (70000);
+    assertEquals (-1, compiled.indexOf (buffer));
+    assertEquals (70000, buffer.position ());
+    assertEquals (-1, ByteArraySearcher.compile (new byte [0]).indexOf (buffer));
+  }
+
+  private static int naiveIndexOf (byte [] haystack, byte [] needle) {
+    outer: for (int i = 0; i <= haystack.length - needle.length; i++) {
+      for (int j = 0; j < needle.length; j++)
+        if (haystack[i + j] != needle[j])
+          continue outer;
+      return i;
+    }
+    return -1;
+  }
 }
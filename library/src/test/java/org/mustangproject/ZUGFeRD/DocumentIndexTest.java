@@ -0,0 +1,62 @@
+package org.mustangproject.ZUGFeRD;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.InputStream;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Test;
+import org.mustangproject.XMLTools;
+import org.mustangproject.util.DocumentIndex;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+public class DocumentIndexTest
+{
+  private static Document parse (String resource) throws Exception {
+    try (InputStream is = DocumentIndexTest.class.getResourceAsStream (resource)) {
+      return XMLTools.getDocumentBuilder (true).parse (is);
+    }
+  }
+
+  /**
+   * the lookup has to return the same nodes in the same order as the XPath expression it replaces
+   */
+  private static void assertLookup (Document document, String xpath, NodeList lookup) throws Exception {
+    NodeList expected = (NodeList) XPathFactory.newInstance ().newXPath ().evaluate (xpath, document, XPathConstants.NODESET);
+    assertEquals (xpath, expected.getLength (), lookup.getLength ());
+    for (int i = 0; i < expected.getLength (); i++) {
+      assertSame (xpath, expected.item (i), lookup.item (i));
+    }
+  }
+
+  @Test
+  public void testCII () throws Exception {
+    Document document = parse ("/factur-x.xml");
+    DocumentIndex index = new DocumentIndex (document);
+    assertEquals ("CrossIndustryInvoice", index.getRootName ());
+    assertLookup (document, "//*[local-name()=\"IncludedSupplyChainTradeLineItem\"]|//*[local-name()=\"InvoiceLine\"]",
+      index.getElements ("IncludedSupplyChainTradeLineItem", "InvoiceLine"));
+    assertLookup (document, "//*[local-name()=\"ApplicableHeaderTradeSettlement\"]/*[local-name()=\"ApplicableTradeTax\"]",
+      index.getChildren ("ApplicableHeaderTradeSettlement", "ApplicableTradeTax"));
+    assertLookup (document, "//*[local-name()=\"SellerTradeParty\"]|//*[local-name()=\"PostalTradeAddress\"]/*",
+      index.union (index.getElements ("SellerTradeParty"), index.getChildren ("PostalTradeAddress")));
+    assertEquals ("EUR", DocumentIndex.getText (index.getChildren ("ApplicableHeaderTradeSettlement", "InvoiceCurrencyCode")));
+    assertEquals ("", DocumentIndex.getText (index.getElements ("DocumentCurrencyCode")));
+  }
+
+  @Test
+  public void testUBL () throws Exception {
+    Document document = parse ("/XRECHNUNG_Einfach.ubl.xml");
+    DocumentIndex index = new DocumentIndex (document);
+    assertEquals ("Invoice", index.getRootName ());
+    assertLookup (document, "/*[local-name()=\"Invoice\"]/*[local-name()=\"Note\"]", index.getRootChildren ("Note"));
+    assertLookup (document, "//*[local-name()=\"AccountingSupplierParty\"]/*[local-name()=\"Party\"]/*",
+      index.getChildren (index.getChildren ("AccountingSupplierParty", "Party")));
+    assertLookup (document, "//*[local-name()=\"LegalMonetaryTotal\"]/*[local-name()=\"TaxInclusiveAmount\"]|//*[local-name()=\"TaxTotal\"]/*[local-name()=\"TaxAmount\"]",
+      index.union (index.getChildren ("LegalMonetaryTotal", "TaxInclusiveAmount"), index.getChildren ("TaxTotal", "TaxAmount")));
+  }
+}
@@ -0,0 +1,57 @@
+package org.mustangproject.ZUGFeRD;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+import org.junit.Test;
+import org.mustangproject.util.MultiPatternSearcher;
+
+public class MultiPatternSearcherTest
+{
+  @Test
+  public void testFindAll () {
+    MultiPatternSearcher searcher = MultiPatternSearcher.of ("he", "she", "his", "hers", "");
+    BitSet found = searcher.findAll ("ushers".getBytes (StandardCharsets.ISO_8859_1));
+    assertTrue (found.get (0));
+    assertTrue (found.get (1));
+    assertTrue (!found.get (2));
+    assertTrue (found.get (3));
+    assertTrue (!found.get (4));
+    assertEquals (3, found.cardinality ());
+    assertTrue (searcher.findAll (new byte [0]).isEmpty ());
+  }
+
+  @Test
+  public void testFindFirstPattern () {
+    MultiPatternSearcher searcher = MultiPatternSearcher.of ("Symtrax", "Konik", "ik");
+    byte [] haystack = "Producer Konik, not Symtrax".getBytes (StandardCharsets.ISO_8859_1);
+    assertEquals (0, searcher.findFirstPattern (haystack));
+    assertEquals (1, searcher.findFirstPattern ("Producer Konik".getBytes (StandardCharsets.ISO_8859_1)));
+    assertEquals (2, searcher.findFirstPattern ("Ikik".getBytes (StandardCharsets.ISO_8859_1)));
+    assertEquals (-1, searcher.findFirstPattern ("Konig".getBytes (StandardCharsets.ISO_8859_1)));
+    assertEquals (0, searcher.findFirstPattern (ByteBuffer.wrap (haystack)));
+  }
+
+  @Test
+  public void testStreamAcrossChunks () throws IOException {
+    MultiPatternSearcher searcher = MultiPatternSearcher.of ("%%Invocation:", "sevdesk");
+    byte [] haystack = new byte [200000];
+    byte [] pattern = "%%Invocation:".getBytes (StandardCharsets.ISO_8859_1);
+    // spans the boundary of the 64k read buffer
+    System.arraycopy (pattern, 0, haystack, 65536 - 5, pattern.length);
+    try (InputStream in = new ByteArrayInputStream (haystack)) {
+      assertEquals (0, searcher.findFirstPattern (in));
+    }
+    ByteBuffer buffer = ByteBuffer.wrap (haystack);
+    buffer.position (65536);
+    assertEquals (-1, searcher.findFirstPattern (buffer));
+    assertEquals (65536, buffer.position ());
+  }
+}
@@ -0,0 +1,81 @@
+package org.mustangproject.ZUGFeRD;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.mustangproject.CalculatedInvoice;
+import org.mustangproject.Invoice;
+import org.mustangproject.Item;
+import org.mustangproject.XMLTools;
+import org.mustangproject.util.DocumentIndex;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class StreamingInvoiceImporterTest
+{
+  private static final String [] CORPUS = { "/factur-x.xml", "/cii/01.01a-INVOICE.cii.xml", "/multiple-payment-means.cii.xml",
+    "/subinvoicelines/Extended_SubInvoiceLines_Hardware_Bsp2.xml", "/migration/input/ZUGFeRD1-invoice.xml",
+    "/XRECHNUNG_Einfach.ubl.xml", "/XRECHNUNG_Elektron.ubl.xml", "/XRECHNUNG_Betriebskostenabrechnung.ubl.xml",
+    "/ubl/UBL-CreditNote-2.1-Example.ubl.xml", "/ubl/periods.ubl.xml", "/testout-ZF2PushItemChargesAllowances.ubl.xml" };
+
+  private static Invoice importInvoice (ZUGFeRDInvoiceImporter importer, byte [] xml) throws Exception {
+    importer.setRawXML (xml, false);
+    return importer.extractInto (new CalculatedInvoice ());
+  }
+
+  /**
+   * the streaming importer has to import the same invoices as the DOM based one
+   */
+  @Test
+  public void testCorpus () throws Exception {
+    ObjectMapper mapper = new ObjectMapper ();
+    for (String resource : CORPUS) {
+      byte [] xml;
+      try (InputStream is = StreamingInvoiceImporterTest.class.getResourceAsStream (resource)) {
+        xml = XMLTools.getBytesFromStream (is);
+      }
+      Invoice expected = importInvoice (new ZUGFeRDInvoiceImporter (), xml);
+      Invoice actual = importInvoice (new ZUGFeRDStreamingInvoiceImporter (), xml);
+
+      assertEquals (resource, expected.getZFItems ().length, actual.getZFItems ().length);
+      for (int i = 0; i < expected.getZFItems ().length; i++) {
+        IZUGFeRDExportableItem item = actual.getZFItems ()[i];
+        assertEquals (resource, expected.getZFItems ()[i].getId (), item.getId ());
+      }
+      // the tax details are a set, so arrays are compared regardless of their order
+      JSONAssert.assertEquals (resource, mapper.writeValueAsString (expected), mapper.writeValueAsString (actual),
+        JSONCompareMode.NON_EXTENSIBLE);
+    }
+  }
+
+  @Test
+  public void testItemIterator () throws Exception {
+    ObjectMapper mapper = new ObjectMapper ();
+    byte [] xml;
+    try (InputStream is = StreamingInvoiceImporterTest.class.getResourceAsStream ("/XRECHNUNG_Elektron.ubl.xml")) {
+      xml = XMLTools.getBytesFromStream (is);
+    }
+    Invoice expected = importInvoice (new ZUGFeRDInvoiceImporter (), xml);
+    for (ZUGFeRDInvoiceImporter importer : new ZUGFeRDInvoiceImporter [] { new ZUGFeRDInvoiceImporter (), new ZUGFeRDStreamingInvoiceImporter () }) {
+      importer.doIgnoreLineItems ();
+      Invoice header = importInvoice (importer, xml);
+      assertEquals (0, header.getZFItems ().length);
+      assertEquals (expected.getNumber (), header.getNumber ());
+      assertTrue (importer.hasLines (new DocumentIndex (importer.getDocument ())));
+
+      Iterator<Item> items = importer.getItemIterator ();
+      for (IZUGFeRDExportableItem item : expected.getZFItems ()) {
+        assertEquals (mapper.writeValueAsString (item), mapper.writeValueAsString (items.next ()));
+      }
+      assertFalse (items.hasNext ());
+      assertEquals (expected.getZFItems ().length, importer.getItemStream ().count ());
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.mustangproject.ZUGFeRD;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.mustangproject.EStandard;
+import org.mustangproject.XMLSniffer;
+
+public class XMLSnifferTest
+{
+  @Test
+  public void testCII () throws Exception {
+    XMLSniffer sniffed;
+    try (InputStream is = getClass ().getResourceAsStream ("/factur-x.xml")) {
+      sniffed = XMLSniffer.sniff (is);
+    }
+    assertEquals ("CrossIndustryInvoice", sniffed.getRootElement ());
+    assertEquals ("urn:un:unece:uncefact:data:standard:CrossIndustryInvoice:100", sniffed.getNamespace ());
+    assertEquals (EStandard.FACTUR_X, sniffed.getStandard ());
+    assertEquals ("urn:cen.eu:en16931:2017", sniffed.getGuidelineID ());
+    assertEquals ("380", sniffed.getTypeCode ());
+    assertEquals ("DE", sniffed.getSellerCountry ());
+    assertEquals ("DE", sniffed.getBuyerCountry ());
+  }
+
+  @Test
+  public void testUBL () throws Exception {
+    XMLSniffer sniffed;
+    try (InputStream is = getClass ().getResourceAsStream ("/XRECHNUNG_Einfach.ubl.xml")) {
+      sniffed = XMLSniffer.sniff (is);
+    }
+    assertEquals (EStandard.UBL, sniffed.getStandard ());
+    assertEquals ("urn:cen.eu:en16931:2017#compliant#urn:fdc:peppol.eu:2017:poacc:billing:3.0", sniffed.getGuidelineID ());
+    assertEquals ("380", sniffed.getTypeCode ());
+    assertEquals ("DE", sniffed.getSellerCountry ());
+    assertEquals ("DE", sniffed.getBuyerCountry ());
+  }
+
+  @Test
+  public void testSeveralGuidelines () throws Exception {
+    byte [] xml = ("<?xml version=\"1.0\"?><rsm:CrossIndustryInvoice xmlns:rsm=\"urn:un:unece:uncefact:data:standard:CrossIndustryInvoice:100\""
+      + " xmlns:ram=\"urn:un:unece:uncefact:data:standard:ReusableAggregateBusinessInformationEntity:100\"><rsm:ExchangedDocumentContext>"
+      + "<ram:GuidelineSpecifiedDocumentContextParameter><ram:ID>\n  urn:cen.eu:en16931:2017\n</ram:ID></ram:GuidelineSpecifiedDocumentContextParameter>"
+      + "<ram:GuidelineSpecifiedDocumentContextParameter><ram:ID>urn:factur-x.eu:1p0:minimum</ram:ID></ram:GuidelineSpecifiedDocumentContextParameter>"
+      + "</rsm:ExchangedDocumentContext></rsm:CrossIndustryInvoice>").getBytes (StandardCharsets.UTF_8);
+    // the first one, trimmed
+    assertEquals ("urn:cen.eu:en16931:2017", XMLSniffer.sniff (xml).getGuidelineID ());
+  }
+
+  @Test
+  public void testRootOnly () throws Exception {
+    // the document is not even well-formed after the root element
+    byte [] xml = "<?xml version=\"1.0\"?><CreditNote xmlns=\"urn:oasis:names:specification:ubl:schema:xsd:CreditNote-2\"><a></b>"
+      .getBytes (StandardCharsets.UTF_8);
+    XMLSniffer sniffed = XMLSniffer.sniffRoot (new ByteArrayInputStream (xml));
+    assertEquals (EStandard.UBL_CREDITNOTE, sniffed.getStandard ());
+    assertNull (sniffed.getGuidelineID ());
+    assertNull (XMLSniffer.sniff ("<foo/>".getBytes (StandardCharsets.UTF_8)).getStandard ());
+  }
+}
@@ -0,0 +1,52 @@
+package org.mustangproject.ZUGFeRD;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+import javax.xml.xpath.XPathExpression;
+
+import org.junit.Test;
+import org.mustangproject.XMLTools;
+import org.mustangproject.util.XPathCache;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+public class XPathCacheTest
+{
+  private static final String LINES = "//*[local-name() = 'IncludedSupplyChainTradeLineItem']";
+
+  @Test
+  public void testCache () throws Exception {
+    Document document;
+    try (InputStream is = XPathCacheTest.class.getResourceAsStream ("/factur-x.xml")) {
+      document = XMLTools.getDocumentBuilder (true).parse (is);
+    }
+    XPathCache cache = new XPathCache (document);
+    assertEquals ("EUR", cache.getString ("//*[local-name() = 'InvoiceCurrencyCode']"));
+    NodeList lines = cache.getNodeList (LINES);
+    assertEquals (3, lines.getLength ());
+    assertSame (lines, cache.getNodeList (LINES));
+    assertEquals ("", new XPathCache (document).getString ("//*[local-name() = 'DocumentCurrencyCode']"));
+
+    // compiled once per thread
+    XPathExpression compiled = XPathCache.compile (LINES);
+    assertSame (compiled, XPathCache.compile (LINES));
+    assertNotSame (compiled, CompletableFuture.supplyAsync (() -> {
+      try {
+        return XPathCache.compile (LINES);
+      } catch (Exception e) {
+        throw new IllegalStateException (e);
+      }
+    }).get ());
+
+    // only the most recently used expressions are kept
+    for (int i = 0; i < XPathCache.MAX_EXPRESSIONS; i++) {
+      XPathCache.compile ("//*[local-name() = 'Line" + i + "']");
+    }
+    assertNotSame (compiled, XPathCache.compile (LINES));
+  }
+}
@@ -480,6 +480,21 @@ public class ZF2ZInvoiceImporterTest extends ResourceCase {
 		assertEquals(fileB.length, 2);
 	}
 
+	/**
+	 * testing if only the invoice is decoded when the other embedded files are ignored
+	 */
+	public void testDetachInvoiceOnly() {
+		ZUGFeRDInvoiceImporter all = new ZUGFeRDInvoiceImporter("./target/testout-ZF2PushAttachments.pdf");
+		ZUGFeRDInvoiceImporter zii = new ZUGFeRDInvoiceImporter();
+		zii.doIgnoreOtherAttachments();
+		zii.setPDFFilename("./target/testout-ZF2PushAttachments.pdf");
+
+		assertEquals(1, zii.getFileAttachmentsPDF().size());
+		assertEquals("factur-x.xml", zii.getFileAttachmentsPDF().get(0).getFilename());
+		assertTrue(zii.hasXMLFileAttachment());
+		assertEquals(all.getUTF8(), zii.getUTF8());
+	}
+
 	public void testImportDebit() {
 		File CIIinputFile = getResourceAsFile("cii/minimalDebit.xml");
 		try {
@@ -0,0 +1,108 @@
+package org.mustangproject.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/***
+ * compares ByteArraySearcher with the nested loop it replaced, on a PDF-like haystack which does not contain the
+ * needle (the common case for the producer signatures). Not run by the tests, start it with
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.mustangproject.util.ByteArraySearcherBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteArraySearcherBenchmark {
+
+	@Param({"%PDF", "lexoffice", "pdfMachine from Broadgun Software"})
+	public String needleText;
+
+	@Param({"1048576"})
+	public int haystackSize;
+
+	private byte[] haystack;
+	private byte[] needle;
+	private ByteArraySearcher.Needle compiled;
+	private ByteBuffer direct;
+
+	@Setup
+	public void setUp() {
+		// mostly printable bytes with many partial matches of the needles' first letters, like a PDF content stream
+		final Random random = new Random(42);
+		final byte[] alphabet = "%PDFlexpdfMachine ob/<>0123456789\n".getBytes(StandardCharsets.ISO_8859_1);
+		haystack = new byte[haystackSize];
+		for (int i = 0; i < haystack.length; i++) {
+			haystack[i] = alphabet[random.nextInt(alphabet.length)];
+		}
+		needle = needleText.getBytes(StandardCharsets.ISO_8859_1);
+		compiled = ByteArraySearcher.compile(needle);
+		direct = ByteBuffer.allocateDirect(haystack.length);
+		direct.put(haystack).flip();
+	}
+
+	@Benchmark
+	public int naive() {
+		return naiveIndexOf(haystack, needle);
+	}
+
+	@Benchmark
+	public int indexOf() {
+		return ByteArraySearcher.indexOf(haystack, needle);
+	}
+
+	@Benchmark
+	public int compiledNeedle() {
+		return compiled.indexOf(haystack);
+	}
+
+	@Benchmark
+	public int directBuffer() {
+		return compiled.indexOf(direct);
+	}
+
+	/***
+	 * the implementation of ByteArraySearcher.indexOf up to 2.25.0
+	 */
+	static int naiveIndexOf(byte[] haystack, byte[] needle) {
+		if (needle.length > haystack.length || needle.length == 0) {
+			return -1;
+		}
+		for (int i = 0; i <= haystack.length - needle.length; i++) {
+			boolean found = true;
+			for (int j = 0; j < needle.length; j++) {
+				if (haystack[i + j] != needle[j]) {
+					found = false;
+					break;
+				}
+			}
+			if (found) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ByteArraySearcherBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
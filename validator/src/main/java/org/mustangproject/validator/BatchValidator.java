@@ -0,0 +1,368 @@
+package org.mustangproject.validator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * validates many files on a pool of worker threads, e.g. a nightly inbound batch. The number of files and the
+ * amount of file content in flight is bounded: the inputs are only pulled (and read) when a worker and enough of the
+ * memory budget is available, so also a lazy stream over a huge directory can be passed.
+ * Each result is handed to a listener as soon as it is available, a file which could not be validated is reported
+ * as failed result and does not abort the batch.
+ * <pre>
+ * try (BatchValidator batch = new BatchValidator(new ValidationEngine(), 4, 256L * 1024 * 1024)) {
+ *     batch.validate(Files.walk(dir).filter(Files::isRegularFile), result -&gt; ...);
+ * }
+ * </pre>
+ */
+public class BatchValidator implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchValidator.class.getCanonicalName()); // log output
+
+	/***
+	 * the memory budget is accounted in units of this many bytes, so that budgets above 2GB can be expressed as permits
+	 */
+	private static final int BUDGET_UNIT = 1024;
+
+	private final ValidationEngine engine;
+	private final ExecutorService workers;
+	private final int threads;
+	private final int budgetUnits;
+
+	/***
+	 * a file to be validated
+	 */
+	public interface Input {
+		/***
+		 * @return the name to be mentioned in the report
+		 */
+		String getName();
+
+		/***
+		 * @return the (expected) size of the content in bytes, accounted against the memory budget
+		 * @throws IOException if the size could not be determined
+		 */
+		long getSize() throws IOException;
+
+		/***
+		 * @return the content, read only when a worker picks up the input
+		 * @throws IOException if the content could not be read
+		 */
+		byte[] read() throws IOException;
+
+		/***
+		 * validates the input, by default the content returned by read()
+		 * @param engine the engine of the batch
+		 * @return the report
+		 * @throws IOException if the content could not be read
+		 */
+		default ValidationReport validate(ValidationEngine engine) throws IOException {
+			return engine.validate(read(), getName());
+		}
+
+		static Input of(Path file) {
+			return new Input() {
+				@Override
+				public String getName() {
+					return Objects.toString(file.getFileName(), file.toString());
+				}
+
+				@Override
+				public long getSize() throws IOException {
+					return Files.size(file);
+				}
+
+				@Override
+				public byte[] read() throws IOException {
+					return Files.readAllBytes(file);
+				}
+
+				@Override
+				public ValidationReport validate(ValidationEngine engine) {
+					// large files are mapped instead of read into the heap
+					return engine.validate(file);
+				}
+
+				@Override
+				public String toString() {
+					return file.toString();
+				}
+			};
+		}
+
+		static Input of(String name, byte[] content) {
+			return new Input() {
+				@Override
+				public String getName() {
+					return name;
+				}
+
+				@Override
+				public long getSize() {
+					return content.length;
+				}
+
+				@Override
+				public byte[] read() {
+					return content;
+				}
+
+				@Override
+				public String toString() {
+					return name;
+				}
+			};
+		}
+	}
+
+	/***
+	 * the outcome for one input, either a report or the reason why it could not be validated
+	 */
+	public static class Result {
+		private final Input input;
+		private final ValidationReport report;
+		private final Throwable failure;
+
+		Result(Input input, ValidationReport report, Throwable failure) {
+			this.input = input;
+			this.report = report;
+			this.failure = failure;
+		}
+
+		public Input getInput() {
+			return input;
+		}
+
+		/***
+		 * @return the report, null if the validation failed
+		 */
+		public ValidationReport getReport() {
+			return report;
+		}
+
+		/***
+		 * @return why the file could not be validated (e.g. it could not be read or did not fit into memory), null if
+		 * there is a report
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		public boolean isFailed() {
+			return failure != null;
+		}
+	}
+
+	/***
+	 * receives the results in the order they complete, is called from the worker threads (one at a time per thread,
+	 * but different threads concurrently)
+	 */
+	public interface ResultListener {
+		void validated(Result result);
+	}
+
+	/***
+	 * constructor
+	 * @param engine the engine performing the validations
+	 * @param threads number of worker threads
+	 * @param memoryBudget upper bound of the summed up sizes of the files being validated at the same time, in bytes.
+	 *                     A file bigger than the budget is validated on its own.
+	 */
+	public BatchValidator(ValidationEngine engine, int threads, long memoryBudget) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one thread required");
+		}
+		this.engine = engine;
+		this.threads = threads;
+		this.budgetUnits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / BUDGET_UNIT));
+		this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "mustang-batch-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/***
+	 * validates all inputs, blocks until the last result has been passed to the listener. This also holds if the
+	 * method ends with an exception, e.g. because the iterator failed (Files.walk on an unreadable directory): the
+	 * listener is not called anymore once it returned
+	 * @param inputs the files to be validated, only pulled when there is capacity
+	 * @param listener receives the results
+	 * @return the number of inputs processed
+	 * @throws InterruptedException if interrupted while waiting for capacity
+	 */
+	public int validate(Iterator<? extends Input> inputs, ResultListener listener) throws InterruptedException {
+		final Semaphore slots = new Semaphore(threads * 2);
+		final Semaphore budget = new Semaphore(budgetUnits);
+		int count = 0;
+		try {
+			while (inputs.hasNext()) {
+				final Input input = inputs.next();
+				long size;
+				try {
+					size = input.getSize();
+				} catch (IOException e) {
+					deliver(listener, new Result(input, null, e));
+					count++;
+					continue;
+				}
+				final int units = (int) Math.min(budgetUnits, Math.max(1, (size + BUDGET_UNIT - 1) / BUDGET_UNIT));
+				slots.acquire();
+				try {
+					budget.acquire(units);
+				} catch (InterruptedException e) {
+					slots.release();
+					throw e;
+				}
+				try {
+					workers.execute(() -> {
+						try {
+							deliver(listener, validateOne(input));
+						} finally {
+							budget.release(units);
+							slots.release();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// e.g. closed
+					budget.release(units);
+					slots.release();
+					throw e;
+				}
+				count++;
+			}
+		} finally {
+			// wait for the ones still running
+			slots.acquireUninterruptibly(threads * 2);
+			slots.release(threads * 2);
+		}
+		return count;
+	}
+
+	/***
+	 * validates all files of the stream, see validate(Iterator, ResultListener)
+	 * @param files the files
+	 * @param listener receives the results
+	 * @return the number of files processed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public int validate(Stream<Path> files, ResultListener listener) throws InterruptedException {
+		return validate(files.map(Input::of).iterator(), listener);
+	}
+
+	/***
+	 * validates all inputs in the background, the results can be consumed in the order they complete.
+	 * As long as the results are not consumed no more inputs are pulled.
+	 * @param inputs the files to be validated
+	 * @return the results, blocks in hasNext() until the next one is available
+	 */
+	public Iterator<Result> iterate(Iterator<? extends Input> inputs) {
+		final Result end = new Result(null, null, null);
+		final BlockingQueue<Result> queue = new ArrayBlockingQueue<>(threads * 2);
+		Thread feeder = new Thread(() -> {
+			try {
+				validate(inputs, result -> {
+					try {
+						queue.put(result);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (RuntimeException e) {
+				LOGGER.error("Batch aborted", e);
+			} finally {
+				try {
+					queue.put(end);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "mustang-batch-feeder");
+		feeder.setDaemon(true);
+		feeder.start();
+		return new Iterator<Result>() {
+			private Result next;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = queue.take();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException("Interrupted while waiting for the next result", e);
+					}
+				}
+				return next != end;
+			}
+
+			@Override
+			public Result next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Result result = next;
+				next = null;
+				return result;
+			}
+		};
+	}
+
+	/***
+	 * stops the worker threads after the running validations
+	 */
+	@Override
+	public void close() {
+		workers.shutdown();
+		try {
+			if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+				workers.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Result validateOne(Input input) {
+		try {
+			return new Result(input, input.validate(engine), null);
+		} catch (Throwable e) {
+			// also e.g. an OutOfMemoryError: every input gets its result, the batch goes on
+			LOGGER.warn("Could not validate {}: {}", input, e.toString());
+			return new Result(input, null, e);
+		}
+	}
+
+	private static void deliver(ResultListener listener, Result result) {
+		try {
+			listener.validated(result);
+		} catch (RuntimeException e) {
+			LOGGER.error("Result listener failed for " + result.getInput(), e);
+		}
+	}
+
+}
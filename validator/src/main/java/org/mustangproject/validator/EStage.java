@@ -0,0 +1,17 @@
+package org.mustangproject.validator;
+
+/***
+ * the stages of a validation which are timed, see StageTiming
+ * read=reading or mapping the file
+ * pdfa=PDF/A check by veraPDF
+ * extraction=loading the PDF and extracting the XML, XMP and additional data
+ * xmp=checks of the XMP metadata
+ * signature=recognizing the authoring tool
+ * parse=parsing the XML
+ * xsd=a schema validation, of the invoice or of additional data
+ * schematron=a schematron pass
+ * arithmetic=the recalculation of the invoice
+ */
+public enum EStage {
+	read, pdfa, extraction, xmp, signature, parse, xsd, schematron, arithmetic
+}
@@ -0,0 +1,22 @@
+package org.mustangproject.validator;
+
+/***
+ * how deep a file is validated, each level includes the checks of the levels before it
+ * wellformed=the XML is parsed and its standard and profile are recognized, for PDFs the XML is extracted and the
+ * XMP metadata, producer signature and additional data are checked
+ * xsd=additionally the schema validation
+ * schematron=additionally the main schematron of the profile, for XRechnungen the XRechnung schematron
+ * full=additionally the PDF/A check by veraPDF, the secondary schematron passes (EN16931 for XRechnungen, XRechnung
+ * for CII basic and EN16931, French CII) and the arithmetic check, the default
+ */
+public enum EValidationLevel {
+	wellformed, xsd, schematron, full;
+
+	/***
+	 * @param level a level
+	 * @return true if the checks of level are performed on this level
+	 */
+	public boolean includes(EValidationLevel level) {
+		return compareTo(level) >= 0;
+	}
+}
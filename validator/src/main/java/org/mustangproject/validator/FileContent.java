@@ -0,0 +1,262 @@
+package org.mustangproject.validator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import jakarta.xml.bind.DatatypeConverter;
+
+/***
+ * the read-only bytes of a validated file, either a byte array or a memory mapped file. All steps of a validation (PDF
+ * sniffing, veraPDF, the producer signatures, the checksum and the XML) read the same buffers, so a mapped file is
+ * neither copied to the heap nor limited to the 2 GB of a byte array: files larger than one mapping are mapped in
+ * several segments.
+ */
+final class FileContent {
+
+	/** the largest segment a file is mapped in, a MappedByteBuffer can not exceed Integer.MAX_VALUE bytes */
+	static final long SEGMENT_SIZE = 1L << 30;
+	/**
+	 * files up to this size are read into the heap by read(). A mapping is only released when it is garbage collected,
+	 * until then the file can not be moved or deleted on Windows and the address space stays in use
+	 */
+	static final long MAP_THRESHOLD = 64L << 20;
+	/** the UTF-8 byte order mark, XMLTools.removeBOM strips it */
+	private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+	private final ByteBuffer[] segments;
+	private final long length;
+	/*** computed on first use, the result cache and the report need it */
+	private volatile String sha1;
+
+	private FileContent(ByteBuffer[] segments) {
+		this.segments = segments;
+		long sum = 0;
+		for (ByteBuffer segment : segments) {
+			sum += segment.remaining();
+		}
+		length = sum;
+	}
+
+	/***
+	 * @param content the bytes, not copied, must not be modified afterwards
+	 * @return the content
+	 */
+	static FileContent of(byte[] content) {
+		return new FileContent(new ByteBuffer[]{ByteBuffer.wrap(content).asReadOnlyBuffer()});
+	}
+
+	/***
+	 * reads a small file into the heap and maps a large one, see MAP_THRESHOLD
+	 * @param file the file
+	 * @return the content
+	 * @throws IOException if the file can not be read
+	 */
+	static FileContent read(Path file) throws IOException {
+		if (Files.size(file) <= MAP_THRESHOLD) {
+			return of(Files.readAllBytes(file));
+		}
+		return map(file);
+	}
+
+	/***
+	 * maps a file read-only. The mapping remains valid after this method returned, it is released when the content is
+	 * garbage collected
+	 * @param file the file
+	 * @return the content
+	 * @throws IOException if the file can not be mapped
+	 */
+	static FileContent map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			final int count = (int) Math.max(1, (size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			final ByteBuffer[] segments = new ByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				final long start = i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+			return new FileContent(segments);
+		}
+	}
+
+	long length() {
+		return length;
+	}
+
+	/***
+	 * @return the content for reading, each call returns independent buffers
+	 */
+	ByteBuffer[] getSegments() {
+		final ByteBuffer[] result = new ByteBuffer[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			result[i] = segments[i].duplicate();
+		}
+		return result;
+	}
+
+	/***
+	 * @param prefix the bytes to look for, e.g. %PDF
+	 * @return true if the content starts with prefix, false for an empty prefix
+	 */
+	boolean startsWith(byte[] prefix) {
+		if (prefix.length == 0 || prefix.length > length) {
+			return false;
+		}
+		// the first segment is at least SEGMENT_SIZE long if there are more
+		final ByteBuffer first = segments[0];
+		for (int i = 0; i < prefix.length; i++) {
+			if (first.get(first.position() + i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/***
+	 * @return the content without a leading UTF-8 byte order mark, this content if there is none
+	 */
+	FileContent withoutBOM() {
+		if (!startsWith(UTF8_BOM)) {
+			return this;
+		}
+		final ByteBuffer[] rest = getSegments();
+		rest[0].position(rest[0].position() + UTF8_BOM.length);
+		return new FileContent(rest);
+	}
+
+	/***
+	 * @return the hex representation of the SHA-1 using uppercase chars, as ZUGFeRDValidator.calcSHA1
+	 */
+	String sha1() {
+		if (sha1 == null) {
+			try {
+				final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+				for (ByteBuffer segment : getSegments()) {
+					digest.update(segment);
+				}
+				sha1 = DatatypeConverter.printHexBinary(digest.digest());
+			} catch (NoSuchAlgorithmException e) {
+				return "";
+			}
+		}
+		return sha1;
+	}
+
+	/***
+	 * decodes the content as UTF-8, without a leading byte order mark
+	 * @return the text
+	 * @throws IOException if the content is too large for a String
+	 */
+	String toUTF8String() throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("File too big");
+		}
+		final ByteBuffer[] text = withoutBOM().getSegments();
+		final ByteBuffer bytes;
+		if (text.length == 1) {
+			bytes = text[0];
+		} else {
+			// the String will need even more memory than this copy
+			bytes = ByteBuffer.allocate((int) length);
+			for (ByteBuffer segment : text) {
+				bytes.put(segment);
+			}
+			bytes.flip();
+		}
+		return StandardCharsets.UTF_8.decode(bytes).toString();
+	}
+
+	/***
+	 * @return a stream over the content supporting mark() and reset()
+	 */
+	InputStream newInputStream() {
+		return new SegmentsInputStream(getSegments());
+	}
+
+	private static final class SegmentsInputStream extends InputStream {
+		private final ByteBuffer[] segments;
+		private int current;
+		private int markedSegment;
+
+		SegmentsInputStream(ByteBuffer[] segments) {
+			this.segments = segments;
+			for (ByteBuffer segment : segments) {
+				segment.mark();
+			}
+		}
+
+		@Override
+		public int read() {
+			final ByteBuffer segment = nextReadable();
+			return segment == null ? -1 : segment.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			final ByteBuffer segment = nextReadable();
+			if (segment == null) {
+				return -1;
+			}
+			final int count = Math.min(len, segment.remaining());
+			segment.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			long skipped = 0;
+			ByteBuffer segment;
+			while (skipped < n && (segment = nextReadable()) != null) {
+				final int count = (int) Math.min(n - skipped, segment.remaining());
+				segment.position(segment.position() + count);
+				skipped += count;
+			}
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			final ByteBuffer segment = nextReadable();
+			return segment == null ? 0 : segment.remaining();
+		}
+
+		@Override
+		public boolean markSupported() {
+			return true;
+		}
+
+		@Override
+		public void mark(int readlimit) {
+			markedSegment = current;
+			for (int i = current; i < segments.length; i++) {
+				segments[i].mark();
+			}
+		}
+
+		@Override
+		public void reset() {
+			for (int i = markedSegment; i < segments.length; i++) {
+				segments[i].reset();
+			}
+			current = markedSegment;
+		}
+
+		private ByteBuffer nextReadable() {
+			while (current < segments.length && !segments[current].hasRemaining()) {
+				current++;
+			}
+			return current < segments.length ? segments[current] : null;
+		}
+	}
+
+}
@@ -1,17 +1,14 @@
 package org.mustangproject.validator;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map.Entry;
+import java.util.concurrent.FutureTask;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
@@ -23,23 +20,10 @@ import javax.xml.xpath.XPathFactory;
 
 import org.mustangproject.XMLTools;
 import org.mustangproject.ZUGFeRD.ZUGFeRDImporter;
-import org.mustangproject.util.ByteArraySearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.verapdf.features.FeatureExtractorConfig;
-import org.verapdf.features.FeatureFactory;
-import org.verapdf.gf.foundry.VeraGreenfieldFoundryProvider;
-import org.verapdf.metadata.fixer.FixerFactory;
-import org.verapdf.metadata.fixer.MetadataFixerConfig;
 import org.verapdf.pdfa.flavours.PDFAFlavour;
-import org.verapdf.pdfa.validation.validators.ValidatorConfig;
-import org.verapdf.pdfa.validation.validators.ValidatorFactory;
-import org.verapdf.processor.ItemProcessor;
-import org.verapdf.processor.ProcessorConfig;
-import org.verapdf.processor.ProcessorFactory;
 import org.verapdf.processor.ProcessorResult;
-import org.verapdf.processor.TaskType;
-import org.verapdf.processor.plugins.PluginsCollectionConfig;
 import org.verapdf.processor.reports.ItemDetails;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -57,7 +41,7 @@ public class PDFValidator extends Validator {
 
 	private String pdfFilename;
 
-	private byte[] fileContents;
+	private FileContent fileContents;
 
 	private String pdfReport;
 
@@ -67,6 +51,10 @@ public class PDFValidator extends Validator {
 
 	private String zfXML;
 
+	private VeraPDFProcessorPool processorPool;
+
+	private ProducerSignatures producerSignatures;
+
 	/***
 	 * constructor
 	 * @param ctx the error list (=context) to adhere to
@@ -95,7 +83,7 @@ public class PDFValidator extends Validator {
 	public void validate() throws IrrecoverableValidationError {
 		zfXML = null;
 		// file existence must have been checked before
-		if (!ByteArraySearcher.startsWith(fileContents, new byte[]{'%', 'P', 'D', 'F'})) {
+		if (!fileContents.startsWith(new byte[]{'%', 'P', 'D', 'F'})) {
 			context.addResultItem(
 				new ValidationResultItem(ESeverity.fatal, "Not a PDF file " + pdfFilename).setSection(20).setPart(EPart.pdf));
 
@@ -103,48 +91,100 @@ public class PDFValidator extends Validator {
 
 		final long startPDFTime = Calendar.getInstance().getTimeInMillis();
 
-		// Step 1 Validate PDF
-
-		VeraGreenfieldFoundryProvider.initialise();
-		// Default validator config
-		final ValidatorConfig validatorConfig = ValidatorFactory.defaultConfig();
-		// Default features config
-		final FeatureExtractorConfig featureConfig = FeatureFactory.defaultConfig();
-		// Default plugins config
-		final PluginsCollectionConfig pluginsConfig = PluginsCollectionConfig.defaultConfig();
-		// Default fixer config
-		final MetadataFixerConfig fixerConfig = FixerFactory.defaultConfig();
-		// Tasks configuring
-		final EnumSet<TaskType> tasks = EnumSet.noneOf(TaskType.class);
-		tasks.add(TaskType.VALIDATE);
-		// tasks.add(TaskType.EXTRACT_FEATURES);
-		// tasks.add(TaskType.FIX_METADATA);
-		// Creating processor config
-		final ProcessorConfig processorConfig = ProcessorFactory.fromValues(validatorConfig, featureConfig, pluginsConfig,
-			fixerConfig, tasks
-		);
-		// Creating processor and output stream.
-		final InputStream inputStream = new ByteArrayInputStream(fileContents);
-		try (ItemProcessor processor = ProcessorFactory.createProcessor(processorConfig)) {
-			// Generating list of files for processing
-			// starting the processor
+		processorResult = null;
+		pdfReport = "";
+		// veraPDF is the most expensive check, it is only part of a full validation
+		final boolean checkPDFA = validationLevel.includes(EValidationLevel.full);
+		if (!checkPDFA) {
+			validateContents(context, fileContents.newInputStream());
+		} else if (executor == null) {
+			final InputStream inputStream = fileContents.newInputStream();
+			validatePDFA(inputStream);
+			validateContents(context, inputStream);
+		} else {
+			// the PDF/A check and the checks of the contents are independent, the latter run on this thread meanwhile
+			final FutureTask<Void> pdfa = fork(() -> {
+				validatePDFA(fileContents.newInputStream());
+				return null;
+			});
+			final ValidationContext stage = new ValidationContext(null);
+			stage.setAggregation(context.getAggregation());
+			try {
+				validateContents(stage, fileContents.newInputStream());
+			} finally {
+				await(pdfa);
+			}
+			context.addResultItems(stage);
+		}
+		context.setSignature(signature);
+
+		//end
+
+		final long endTime = Calendar.getInstance().getTimeInMillis();
+		if (checkPDFA) {
+			if (!processorResult.getValidationResults().get(0).isCompliant()) {
+				context.setInvalid();
+			}
+
+			PDFAFlavour pdfaFlavourFromValidationResult = processorResult.getValidationResults().get(0).getPDFAFlavour();
+			if (Arrays.stream(PDF_A_3_FLAVOURS)
+				.noneMatch(pdfaFlavourFromValidationResult::equals)) {
+				context.addResultItem(
+					new ValidationResultItem(ESeverity.error, "Not a PDF/A-3").setSection(23).setPart(EPart.pdf));
+
+			}
+		}
+		context.addCustomXML(pdfReport + "<info><signature>"
+			+ ((context.getSignature() != null) ? context.getSignature() : "unknown")
+			+ "</signature><duration unit=\"ms\">" + (endTime - startPDFTime) + "</duration></info>");
+
+	}
+
+
+	/***
+	 * step 1: the PDF/A validation by veraPDF
+	 * @param inputStream the PDF, will be reset to its start afterwards
+	 * @throws IrrecoverableValidationError if veraPDF failed
+	 */
+	private void validatePDFA(InputStream inputStream) throws IrrecoverableValidationError {
+		final long start = System.nanoTime();
+		try {
+			final VeraPDFProcessorPool pool = processorPool != null ? processorPool : VeraPDFProcessorPool.getInstance();
 			ItemDetails itemDetails = ItemDetails.fromValues(pdfFilename);
 			inputStream.mark(Integer.MAX_VALUE);
-			processorResult = processor.process(itemDetails, inputStream);
+			processorResult = pool.process(itemDetails, inputStream);
 			pdfReport = escapeXmlSpecialChars(processorResult.getValidationResults().get(0).toString().replace(
 				"<\\?xml version=\"1\\.0\" encoding=\"utf-8\"\\?>",
 				""
 			));
 			inputStream.reset();
+		} catch (final InterruptedException excep) {
+			Thread.currentThread().interrupt();
+			context.addResultItem(new ValidationResultItem(ESeverity.exception, "Interrupted: " + excep.getMessage()).setSection(7)
+				.setPart(EPart.pdf));
 		} catch (final Exception excep) {
 			context.addResultItem(new ValidationResultItem(ESeverity.exception, excep.getMessage()).setSection(7)
 				.setPart(EPart.pdf).setStacktrace(Arrays.toString(excep.getStackTrace())));
+		} finally {
+			context.addTiming(EStage.pdfa, null, start);
 		}
+	}
 
+	/***
+	 * steps 2 to 4: XMP metadata, extraction of the XML, producer signature and additional data
+	 * @param ctx where to add the results
+	 * @param inputStream the PDF
+	 * @throws IrrecoverableValidationError if anything happened that prevents further checks
+	 */
+	private void validateContents(ValidationContext ctx, InputStream inputStream) throws IrrecoverableValidationError {
 		// step 2 validate XMP
+		long start = System.nanoTime();
 		final ZUGFeRDImporter zi = new ZUGFeRDImporter();
 		zi.doIgnoreCalculationErrors(); //of course the calculation will still be schematron checked
+		zi.doIgnoreOtherAttachments(); // only the invoice and additional data are checked, no need to decode the rest
 		zi.setInputStream(inputStream);
+		context.addTiming(EStage.extraction, null, start);
+		start = System.nanoTime();
 
 		String xmp;
 		if (zi.getXMP() == null) {
@@ -158,7 +198,7 @@ public class PDFValidator extends Validator {
 		final Document docXMP;
 
 		if (xmp == null || xmp.isEmpty()) {
-			context.addResultItem(new ValidationResultItem(ESeverity.error, "Invalid XMP Metadata not found")
+			ctx.addResultItem(new ValidationResultItem(ESeverity.error, "Invalid XMP Metadata not found")
 				.setSection(17).setPart(EPart.pdf));
 		} else {
 			/*
@@ -186,7 +226,7 @@ public class PDFValidator extends Validator {
 				NodeList nodes = (NodeList) xpr.evaluate(docXMP, XPathConstants.NODESET);
 
 				if (nodes.getLength() == 0) {
-					context.addResultItem(
+					ctx.addResultItem(
 						new ValidationResultItem(ESeverity.error, "XMP Metadata: ConformanceLevel not found")
 							.setSection(11).setPart(EPart.pdf));
 				}
@@ -200,7 +240,7 @@ public class PDFValidator extends Validator {
 					}
 				}
 				if (!conformanceLevelValid) {
-					context.addResultItem(new ValidationResultItem(
+					ctx.addResultItem(new ValidationResultItem(
 						ESeverity.error,
 						"XMP Metadata: ConformanceLevel contains invalid value"
 					).setSection(12).setPart(EPart.pdf));
@@ -210,7 +250,7 @@ public class PDFValidator extends Validator {
 				nodes = (NodeList) xpr.evaluate(docXMP, XPathConstants.NODESET);
 
 				if (nodes.getLength() == 0) {
-					context.addResultItem(new ValidationResultItem(ESeverity.error, "XMP Metadata: DocumentType not found")
+					ctx.addResultItem(new ValidationResultItem(ESeverity.error, "XMP Metadata: DocumentType not found")
 						.setSection(13).setPart(EPart.pdf));
 				}
 
@@ -223,7 +263,7 @@ public class PDFValidator extends Validator {
 					}
 				}
 				if (!documentTypeValid) {
-					context.addResultItem(
+					ctx.addResultItem(
 						new ValidationResultItem(ESeverity.error, "XMP Metadata: DocumentType invalid")
 							.setSection(14).setPart(EPart.pdf));
 
@@ -233,7 +273,7 @@ public class PDFValidator extends Validator {
 				nodes = (NodeList) xpr.evaluate(docXMP, XPathConstants.NODESET);
 
 				if (nodes.getLength() == 0) {
-					context.addResultItem(
+					ctx.addResultItem(
 						new ValidationResultItem(ESeverity.error, "XMP Metadata: DocumentFileName not found")
 							.setSection(21).setPart(EPart.pdf));
 				}
@@ -249,13 +289,13 @@ public class PDFValidator extends Validator {
 				if (!documentFilenameValid) {
 
 					if (zi.hasXMLFileAttachment()) {
-						context.addResultItem(new ValidationResultItem(
+						ctx.addResultItem(new ValidationResultItem(
 							ESeverity.notice,
 							"Potentially incorrectly named XML file attachments detected"
 						).setSection(17).setPart(EPart.pdf));
 					}
 
-					context.addResultItem(new ValidationResultItem(
+					ctx.addResultItem(new ValidationResultItem(
 						ESeverity.error,
 						"XMP Metadata: DocumentFileName contains invalid value"
 					).setSection(19).setPart(EPart.pdf));
@@ -268,7 +308,7 @@ public class PDFValidator extends Validator {
 				// expr.evaluate(docXMP, XPathConstants.NODESET);
 				// print the text content of each child
 				if (nodes.getLength() == 0) {
-					context.addResultItem(new ValidationResultItem(ESeverity.error, "XMP Metadata: Version not found")
+					ctx.addResultItem(new ValidationResultItem(ESeverity.error, "XMP Metadata: Version not found")
 						.setSection(15).setPart(EPart.pdf));
 				}
 
@@ -281,13 +321,13 @@ public class PDFValidator extends Validator {
 					} // e.g. 1.0
 				}
 				if (!versionValid) {
-					context.addResultItem(
+					ctx.addResultItem(
 						new ValidationResultItem(ESeverity.error, "XMP Metadata: Version contains invalid value")
 							.setSection(16).setPart(EPart.pdf));
 
 				}
 			} catch (final SAXException e) {
-				context.addResultItem(
+				ctx.addResultItem(
 					new ValidationResultItem(ESeverity.error, "XMP Metadata: Could not parse XMP metadata (XML invalid)")
 						.setSection(28).setPart(EPart.pdf));
 			} catch (IOException | ParserConfigurationException | XPathExpressionException e) {
@@ -295,96 +335,59 @@ public class PDFValidator extends Validator {
 			}
 		}
 		zfXML = zi.getUTF8();
+		context.addTiming(EStage.xmp, null, start);
 
 		// step 3 find signatures
-		final byte[] symtraxSignature = "Symtrax".getBytes(StandardCharsets.UTF_8);
-		final byte[] mustangSignature = "via mustangproject".getBytes(StandardCharsets.UTF_8);
-		final byte[] facturxpythonSignature = "by Alexis de Lattre".getBytes(StandardCharsets.UTF_8);
-		final byte[] intarsysSignature = "intarsys ".getBytes(StandardCharsets.UTF_8);
-		final byte[] konikSignature = "Konik".getBytes(StandardCharsets.UTF_8);
-		final byte[] pdfMachineSignature = "pdfMachine from Broadgun Software".getBytes(StandardCharsets.UTF_8);
-		final byte[] ghostscriptSignature = "%%Invocation:".getBytes(StandardCharsets.UTF_8);
-		final byte[] cibpdfbrewerSignature = "CIB pdf brewer".getBytes(StandardCharsets.UTF_8);
-		final byte[] lexofficeSignature = "lexoffice".getBytes(StandardCharsets.UTF_8);
-		final byte[] s2IndustriesSignature = "s2industries.ZUGFeRD.PDF".getBytes(StandardCharsets.UTF_8); // https://github.com/stephanstapel/ZUGFeRD-csharp
-		final byte[] factoorSharpSignature = "FactoorSharp".getBytes(StandardCharsets.UTF_8); // https://github.com/S2-Industries/FactoorSharp
-		final byte[] sevdeskSignature = "sevdesk".getBytes(StandardCharsets.UTF_8);
-
-		if (ByteArraySearcher.contains(fileContents, symtraxSignature)) {
-			signature = "Symtrax";
-		} else if (ByteArraySearcher.contains(fileContents, mustangSignature)) {
-			signature = "Mustang";
-		} else if (ByteArraySearcher.contains(fileContents, facturxpythonSignature)) {
-			signature = "Factur/X Python";
-		} else if (ByteArraySearcher.contains(fileContents, intarsysSignature)) {
-			signature = "Intarsys";
-		} else if (ByteArraySearcher.contains(fileContents, konikSignature)) {
-			signature = "Konik";
-		} else if (ByteArraySearcher.contains(fileContents, pdfMachineSignature)) {
-			signature = "pdfMachine";
-		} else if (ByteArraySearcher.contains(fileContents, ghostscriptSignature)) {
-			signature = "Ghostscript";
-		} else if (ByteArraySearcher.contains(fileContents, cibpdfbrewerSignature)) {
-			signature = "CIB pdf brewer";
-		} else if (ByteArraySearcher.contains(fileContents, lexofficeSignature)) {
-			signature = "Lexware office";
-		} else if (ByteArraySearcher.contains(fileContents, s2IndustriesSignature)) {
-			signature = "ZUGFeRD.PDF-csharp";
-		} else if (ByteArraySearcher.contains(fileContents, factoorSharpSignature)) {
-			signature = "FactoorSharp";
-		} else if (ByteArraySearcher.contains(fileContents, sevdeskSignature)) {
-			signature = "sevdesk";
-		}
-
-		context.setSignature(signature);
+		start = System.nanoTime();
+		signature = (producerSignatures != null ? producerSignatures : ProducerSignatures.getDefault()).identify(fileContents.getSegments());
+		context.addTiming(EStage.signature, null, start);
 
 		// step 4:validate additional data
 		final HashMap<String, byte[]> additionalData = zi.getAdditionalData();
 		for (final Entry<String, byte[]> entry : additionalData.entrySet()) {
 			// validating xml in byte[]	additionalData.get(filename)
 			LOGGER.info("validating additionalData {}", entry.getKey());
-			validateSchema(additionalData.get(entry.getKey()), "ad/basic/additional_data_base_schema.xsd", 2, EPart.pdf);
+			validateSchema(ctx, additionalData.get(entry.getKey()), "ad/basic/additional_data_base_schema.xsd", 2, EPart.pdf);
 		}
-
-
-		//end
-
-		final long endTime = Calendar.getInstance().getTimeInMillis();
-		if (!processorResult.getValidationResults().get(0).isCompliant()) {
-			context.setInvalid();
-		}
-
-		PDFAFlavour pdfaFlavourFromValidationResult = processorResult.getValidationResults().get(0).getPDFAFlavour();
-		if (Arrays.stream(PDF_A_3_FLAVOURS)
-			.noneMatch(pdfaFlavourFromValidationResult::equals)) {
-			context.addResultItem(
-				new ValidationResultItem(ESeverity.error, "Not a PDF/A-3").setSection(23).setPart(EPart.pdf));
-
-		}
-		context.addCustomXML(pdfReport + "<info><signature>"
-			+ ((context.getSignature() != null) ? context.getSignature() : "unknown")
-			+ "</signature><duration unit=\"ms\">" + (endTime - startPDFTime) + "</duration></info>");
-
 	}
 
-
 	@Override
 	public void setFilename(String filename) throws IrrecoverableValidationError {
 		this.pdfFilename = filename;
 		if (autoload) {
 			try {
-				fileContents = Files.readAllBytes(Paths.get(pdfFilename));
+				fileContents = FileContent.read(Paths.get(pdfFilename));
 			} catch (IOException ex) {
 				throw new IrrecoverableValidationError("Could not read file");
 			}
 		}
 	}
 
+	/***
+	 * use a dedicated pool of veraPDF processors instead of the shared VeraPDFProcessorPool.getInstance()
+	 * @param processorPool the pool, null for the shared one
+	 */
+	public void setProcessorPool(VeraPDFProcessorPool processorPool) {
+		this.processorPool = processorPool;
+	}
+
+	/***
+	 * recognize the authoring tools by other signatures than ProducerSignatures.getDefault()
+	 * @param producerSignatures the signatures, null for the default ones
+	 */
+	public void setProducerSignatures(ProducerSignatures producerSignatures) {
+		this.producerSignatures = producerSignatures;
+	}
+
 	public void setFileContents(byte[] fileContents) {
-		this.fileContents = fileContents;
+		this.fileContents = FileContent.of(fileContents);
 	}
 
 	public void setFilenameAndContents(String filename, byte[] fileContents) {
+		setFilenameAndContents(filename, FileContent.of(fileContents));
+	}
+
+	void setFilenameAndContents(String filename, FileContent fileContents) {
 		this.pdfFilename = filename;
 		this.fileContents = fileContents;
 	}
@@ -0,0 +1,94 @@
+package org.mustangproject.validator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mustangproject.util.MultiPatternSearcher;
+
+/***
+ * recognizes the authoring tool of a PDF by byte sequences it leaves in the file. All signatures are searched in one
+ * pass, if several occur the one listed first wins. Instances are immutable and can be shared between threads.
+ */
+public final class ProducerSignatures {
+
+	private static final ProducerSignatures DEFAULT = new ProducerSignatures(defaultTable());
+
+	private final Map<String, String> table;
+	private final String[] names;
+	private final MultiPatternSearcher searcher;
+
+	/***
+	 * @param table byte sequence (as UTF-8) to the name of the tool, in order of priority
+	 */
+	public ProducerSignatures(Map<String, String> table) {
+		this.table = Collections.unmodifiableMap(new LinkedHashMap<>(table));
+		names = new String[table.size()];
+		final List<byte[]> patterns = new ArrayList<>();
+		for (Map.Entry<String, String> entry : table.entrySet()) {
+			names[patterns.size()] = entry.getValue();
+			patterns.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+		}
+		searcher = new MultiPatternSearcher(patterns);
+	}
+
+	/***
+	 * @return the signatures of the tools known to Mustang
+	 */
+	public static ProducerSignatures getDefault() {
+		return DEFAULT;
+	}
+
+	/***
+	 * the signatures of the tools known to Mustang, in order of priority, to be extended for setProducerSignatures
+	 * @return a modifiable copy of the table
+	 */
+	public static LinkedHashMap<String, String> defaultTable() {
+		final LinkedHashMap<String, String> table = new LinkedHashMap<>();
+		table.put("Symtrax", "Symtrax");
+		table.put("via mustangproject", "Mustang");
+		table.put("by Alexis de Lattre", "Factur/X Python");
+		table.put("intarsys ", "Intarsys");
+		table.put("Konik", "Konik");
+		table.put("pdfMachine from Broadgun Software", "pdfMachine");
+		table.put("%%Invocation:", "Ghostscript");
+		table.put("CIB pdf brewer", "CIB pdf brewer");
+		table.put("lexoffice", "Lexware office");
+		table.put("s2industries.ZUGFeRD.PDF", "ZUGFeRD.PDF-csharp"); // https://github.com/stephanstapel/ZUGFeRD-csharp
+		table.put("FactoorSharp", "FactoorSharp"); // https://github.com/S2-Industries/FactoorSharp
+		table.put("sevdesk", "sevdesk");
+		return table;
+	}
+
+	/***
+	 * @return byte sequence to the name of the tool, in order of priority, unmodifiable
+	 */
+	public Map<String, String> getTable() {
+		return table;
+	}
+
+	/***
+	 * @param fileContents the PDF
+	 * @return the name of the tool or null if none of the signatures occurs
+	 */
+	public String identify(byte[] fileContents) {
+		return nameOf(searcher.findFirstPattern(fileContents));
+	}
+
+	/***
+	 * @param fileContents the PDF, e.g. the memory mapped segments of a file, their positions are not changed
+	 * @return the name of the tool or null if none of the signatures occurs
+	 */
+	public String identify(ByteBuffer... fileContents) {
+		return nameOf(searcher.findFirstPattern(fileContents));
+	}
+
+	private String nameOf(int patternIndex) {
+		return patternIndex < 0 ? null : names[patternIndex];
+	}
+
+}
@@ -0,0 +1,165 @@
+package org.mustangproject.validator;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/***
+ * consumes the SVRL (schematron validation report language) output of a schematron stylesheet as a stream of SAX
+ * events, i.e. without building a tree of the report. Each failed assertion is handed to a FailedAssertHandler
+ * as soon as it is complete, fired rules are only counted.
+ */
+class SVRLCollector extends DefaultHandler {
+
+	/***
+	 * receives the failed assertions in document order
+	 */
+	interface FailedAssertHandler {
+		void failedAssert(FailedAssert failedAssert) throws SAXException;
+	}
+
+	/***
+	 * a svrl:failed-assert, the attributes are null if not present
+	 */
+	static final class FailedAssert {
+		private final String id, test, location, flag;
+		private final String text;
+
+		FailedAssert(String id, String test, String location, String flag, String text) {
+			this.id = id;
+			this.test = test;
+			this.location = location;
+			this.flag = flag;
+			this.text = text;
+		}
+
+		public String getID() {
+			return id;
+		}
+
+		public String getTest() {
+			return test;
+		}
+
+		public String getLocation() {
+			return location;
+		}
+
+		/***
+		 * @return e.g. "warning" or "information", usually null or "fatal" for errors
+		 */
+		public String getFlag() {
+			return flag;
+		}
+
+		/***
+		 * @return the content of the svrl:text child, i.e. the human readable message
+		 */
+		public String getText() {
+			return text;
+		}
+	}
+
+	private final FailedAssertHandler handler;
+	private int firedRules = 0;
+	private int failedAsserts = 0;
+
+	/*** depth of the element currently open, the document element being 1 */
+	private int depth = 0;
+	/*** depth of the failed-assert currently open, or 0 if none */
+	private int failedAssertDepth = 0;
+	/*** depth of the text child of the failed-assert currently open, or 0 if none */
+	private int textDepth = 0;
+	private String id, test, location, flag;
+	private String text;
+	private final StringBuilder textBuffer = new StringBuilder();
+	/*** records the patterns and rules of the pass, or null if it is not profiled */
+	private SchematronProfiler.Run profile;
+
+	SVRLCollector(FailedAssertHandler handler) {
+		this.handler = handler;
+	}
+
+	/***
+	 * @param profile to be told about each pattern, fired rule and failed assert as soon as it is written
+	 */
+	void setProfile(SchematronProfiler.Run profile) {
+		this.profile = profile;
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) {
+		depth++;
+		String name = localName(localName, qName);
+		if (failedAssertDepth == 0) {
+			if ("failed-assert".equals(name)) {
+				failedAssertDepth = depth;
+				id = attributes.getValue("id");
+				test = attributes.getValue("test");
+				location = attributes.getValue("location");
+				flag = attributes.getValue("flag");
+				text = "";
+				if (profile != null) {
+					profile.failedAssert();
+				}
+			} else if ("fired-rule".equals(name)) {
+				firedRules++;
+				if (profile != null) {
+					profile.firedRule(attributes.getValue("context"), attributes.getValue("id"));
+				}
+			} else if (profile != null && "active-pattern".equals(name)) {
+				final String patternID = attributes.getValue("id");
+				profile.activePattern(patternID != null ? patternID : attributes.getValue("name"));
+			}
+		} else if (depth == failedAssertDepth + 1 && "text".equals(name)) {
+			textDepth = depth;
+			textBuffer.setLength(0);
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) {
+		if (textDepth != 0) {
+			textBuffer.append(ch, start, length);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		if (depth == textDepth) {
+			text = textBuffer.toString();
+			textDepth = 0;
+		} else if (depth == failedAssertDepth) {
+			failedAssertDepth = 0;
+			failedAsserts++;
+			handler.failedAssert(new FailedAssert(id, test, location, flag, text));
+		}
+		depth--;
+	}
+
+	@Override
+	public void endDocument() {
+		if (profile != null) {
+			profile.finish();
+		}
+	}
+
+	/***
+	 * @return the number of svrl:fired-rule elements, i.e. the rules whose context matched
+	 */
+	public int getFiredRuleCount() {
+		return firedRules;
+	}
+
+	public int getFailedAssertCount() {
+		return failedAsserts;
+	}
+
+	private static String localName(String localName, String qName) {
+		if (localName != null && !localName.isEmpty()) {
+			return localName;
+		}
+		return qName.substring(qName.indexOf(':') + 1);
+	}
+
+}
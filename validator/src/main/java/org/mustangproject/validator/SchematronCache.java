@@ -0,0 +1,400 @@
+package org.mustangproject.validator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.mustangproject.XMLTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.saxon.Configuration;
+
+/***
+ * process-wide registry of the compiled Schematron stylesheets (the XSLT files generated from the schematron
+ * sources), keyed by their classpath path. All validators in the JVM share one compiled copy per rule set.
+ * The compiled templates are immutable and thread-safe, only the transformers created from them are per run.
+ */
+public final class SchematronCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SchematronCache.class.getCanonicalName()); // log output
+
+	/***
+	 * default upper bound for the summed up size of the cached stylesheet sources, in bytes.
+	 * All stylesheets shipped with the validator fit in here, so usually nothing will be evicted
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+	/***
+	 * logs compile and runtime messages of the stylesheets instead of printing them to stderr
+	 */
+	static final ErrorListener LOGGING_ERROR_LISTENER = new ErrorListener() {
+		@Override
+		public void warning(TransformerException exception) {
+			LOGGER.debug(exception.getMessageAndLocation());
+		}
+
+		@Override
+		public void error(TransformerException exception) {
+			LOGGER.warn(exception.getMessageAndLocation());
+		}
+
+		@Override
+		public void fatalError(TransformerException exception) throws TransformerException {
+			throw exception;
+		}
+	};
+
+	/***
+	 * the schematron stylesheets shipped with the validator, i.e. everything XMLValidator may request
+	 */
+	public static final List<String> KNOWN_STYLESHEETS = Collections.unmodifiableList(Arrays.asList(
+			"/xslt/ZF_250/FACTUR-X_MINIMUM.xslt",
+			"/xslt/ZF_250/FACTUR-X_BASIC-WL.xslt",
+			"/xslt/ZF_250/FACTUR-X_BASIC.xslt",
+			"/xslt/ZF_250/FACTUR-X_EN16931.xslt",
+			"/xslt/ZF_250/FACTUR-X_EXTENDED.xslt",
+			"/xslt/en16931schematron/EN16931-CII-validation.xslt",
+			"/xslt/en16931schematron/EN16931-UBL-validation.xslt",
+			"/xslt/XR_30/XRechnung-CII-validation.xslt",
+			"/xslt/XR_30/XRechnung-UBL-validation.xslt",
+			"/xslt/XR_23/XRechnung-CII-validation.xslt",
+			"/xslt/XR_23/XRechnung-UBL-validation.xslt",
+			"/xslt/XR_22/XRechnung-CII-validation.xslt",
+			"/xslt/XR_22/XRechnung-UBL-validation.xslt",
+			"/xslt/XR_21/XRechnung-CII-validation.xslt",
+			"/xslt/XR_21/XRechnung-UBL-validation.xslt",
+			"/xslt/XR_20/XRechnung-CII-validation.xslt",
+			"/xslt/XR_20/XRechnung-UBL-validation.xslt",
+			"/xslt/XR_12/XRechnung-CII-validation.xslt",
+			"/xslt/XR_12/XRechnung-UBL-validation.xslt",
+			"/xslt/XP_Z12_012/20260216_BR-FR-Flux2-Schematron-CII_V1.3.0.xsl",
+			"/xslt/OX_10/comfort/SCRDMCCBDACIOMessageStructure_100pD20B_COMFORT.xslt"));
+
+	private static final SchematronCache INSTANCE = new SchematronCache(DEFAULT_MAX_WEIGHT);
+
+	/***
+	 * the Saxon configuration all stylesheets are compiled with, source trees built with it can be shared by all of them
+	 */
+	private final Configuration configuration = new Configuration();
+	/***
+	 * least recently used first
+	 */
+	private final LinkedHashMap<String, CompiledStylesheet> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final ConcurrentHashMap<String, FutureTask<CompiledStylesheet>> compilations = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder compileNanos = new LongAdder();
+	private long maxWeight;
+	private long weight;
+
+	/***
+	 * a compiled stylesheet along with the size of its source, which serves as approximation for its memory footprint
+	 */
+	private static class CompiledStylesheet {
+		private final Templates templates;
+		private final long weight;
+
+		CompiledStylesheet(Templates templates, long weight) {
+			this.templates = templates;
+			this.weight = weight;
+		}
+	}
+
+	/***
+	 * constructor, usually the shared instance from getInstance() should be used
+	 * @param maxWeight upper bound of the summed up stylesheet source sizes in bytes before the least recently used ones are evicted
+	 */
+	public SchematronCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	/***
+	 * the cache shared by all validators of this JVM
+	 * @return the process-wide instance
+	 */
+	public static SchematronCache getInstance() {
+		return INSTANCE;
+	}
+
+	/***
+	 * get the compiled stylesheet, compiling it if it has not been requested before (or has been evicted since).
+	 * Concurrent requests for the same stylesheet wait for one single compilation.
+	 * @param xsltPath the classpath path of the XSLT file, e.g. /xslt/ZF_250/FACTUR-X_EXTENDED.xslt
+	 * @return the compiled, thread-safe templates
+	 * @throws IllegalArgumentException if the stylesheet can not be found or does not compile
+	 */
+	public Templates get(String xsltPath) {
+		CompiledStylesheet entry;
+		synchronized (entries) {
+			entry = entries.get(xsltPath);
+		}
+		if (entry != null) {
+			hits.increment();
+			return entry.templates;
+		}
+		FutureTask<CompiledStylesheet> task = new FutureTask<>(() -> compile(xsltPath));
+		FutureTask<CompiledStylesheet> running = compilations.putIfAbsent(xsltPath, task);
+		if (running == null) {
+			running = task;
+			try {
+				synchronized (entries) {
+					// may have been completed by another thread in the meantime
+					entry = entries.get(xsltPath);
+				}
+				if (entry != null) {
+					hits.increment();
+					return entry.templates;
+				}
+				misses.increment();
+				task.run();
+				entry = getCompiled(xsltPath, task);
+				put(xsltPath, entry);
+				return entry.templates;
+			} finally {
+				compilations.remove(xsltPath, task);
+			}
+		}
+		// someone else is compiling it right now, wait for the result
+		hits.increment();
+		return getCompiled(xsltPath, running).templates;
+	}
+
+	/***
+	 * creates a new transformer for a single validation run
+	 * @param xsltPath the classpath path of the XSLT file
+	 * @return a transformer which must not be shared between threads
+	 * @throws TransformerConfigurationException if no transformer could be created
+	 */
+	public Transformer newTransformer(String xsltPath) throws TransformerConfigurationException {
+		Transformer transformer = get(xsltPath).newTransformer();
+		transformer.setErrorListener(LOGGING_ERROR_LISTENER);
+		return transformer;
+	}
+
+	/***
+	 * builds an immutable tree of the document to be validated. The tree can be passed as source to any number of
+	 * (also concurrent) transformations of stylesheets of this cache, so that the document has to be parsed only once
+	 * @param source the document, e.g. a DOMSource of an already parsed document
+	 * @return the root of the tree, to be used as source for the transformations
+	 * @throws TransformerException if the tree could not be built, e.g. because the XML is not well-formed
+	 */
+	public Source buildTree(Source source) throws TransformerException {
+		return configuration.buildDocumentTree(source).getRootNode();
+	}
+
+	/***
+	 * warm up, i.e. compile the given stylesheets ahead of the first validation
+	 * @param xsltPaths classpath paths of the XSLT files
+	 * @throws IllegalArgumentException if one of the stylesheets can not be found or does not compile
+	 */
+	public void preload(String... xsltPaths) {
+		for (String xsltPath : xsltPaths) {
+			get(xsltPath);
+		}
+	}
+
+	/***
+	 * compiles the given stylesheets on a background (daemon) thread, so that the compilation overlaps with
+	 * e.g. reading the input files. Validations requesting a stylesheet which is being compiled at that moment
+	 * simply wait for that compilation instead of starting another one.
+	 * Stylesheets which fail to compile are logged and skipped, they will fail again on first use.
+	 * @param xsltPaths classpath paths of the XSLT files, most urgent first
+	 * @return completes when all stylesheets have been processed
+	 */
+	public CompletableFuture<Void> preloadInBackground(List<String> xsltPaths) {
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		Thread thread = new Thread(() -> {
+			final long start = System.nanoTime();
+			for (String xsltPath : xsltPaths) {
+				try {
+					get(xsltPath);
+				} catch (RuntimeException e) {
+					LOGGER.warn("could not preload {}: {}", xsltPath, e.getMessage());
+				}
+			}
+			LOGGER.debug("preloaded {} stylesheets in {}ms", xsltPaths.size(), (System.nanoTime() - start) / 1_000_000);
+			done.complete(null);
+		}, "schematron-preload");
+		thread.setDaemon(true);
+		thread.start();
+		return done;
+	}
+
+	/***
+	 * compiles all stylesheets shipped with the validator in the background, see KNOWN_STYLESHEETS.
+	 * Worthwhile for long running processes or batches, a single validation only needs two or three of them
+	 * @return completes when all stylesheets have been processed
+	 */
+	public CompletableFuture<Void> preloadAllInBackground() {
+		return preloadInBackground(KNOWN_STYLESHEETS);
+	}
+
+	/***
+	 * whether the stylesheet is currently compiled and held in the cache
+	 * @param xsltPath the classpath path of the XSLT file
+	 * @return true if the next get() will be a hit
+	 */
+	public boolean contains(String xsltPath) {
+		synchronized (entries) {
+			return entries.containsKey(xsltPath);
+		}
+	}
+
+	/***
+	 * drops all compiled stylesheets, the counters are kept
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			weight = 0;
+		}
+	}
+
+	/***
+	 * changes the memory bound, evicting least recently used stylesheets if required
+	 * @param maxWeight upper bound of the summed up stylesheet source sizes in bytes
+	 */
+	public void setMaxWeight(long maxWeight) {
+		synchronized (entries) {
+			this.maxWeight = maxWeight;
+			evict(null);
+		}
+	}
+
+	public long getMaxWeight() {
+		synchronized (entries) {
+			return maxWeight;
+		}
+	}
+
+	/***
+	 * @return the summed up source sizes of the currently cached stylesheets in bytes
+	 */
+	public long getWeight() {
+		synchronized (entries) {
+			return weight;
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/***
+	 * @return the time spent compiling stylesheets, summed up over all misses
+	 */
+	public long getTotalCompileTimeMillis() {
+		return compileNanos.sum() / 1_000_000;
+	}
+
+	private void put(String xsltPath, CompiledStylesheet entry) {
+		synchronized (entries) {
+			CompiledStylesheet previous = entries.put(xsltPath, entry);
+			if (previous != null) {
+				weight -= previous.weight;
+			}
+			weight += entry.weight;
+			evict(xsltPath);
+		}
+	}
+
+	/***
+	 * removes least recently used entries until the cache fits into maxWeight again.
+	 * Has to be called while holding the lock on entries.
+	 * @param keep the path of an entry which must never be evicted (the one just added), or null
+	 */
+	private void evict(String keep) {
+		Iterator<Map.Entry<String, CompiledStylesheet>> it = entries.entrySet().iterator();
+		while (weight > maxWeight && it.hasNext()) {
+			Map.Entry<String, CompiledStylesheet> eldest = it.next();
+			if (eldest.getKey().equals(keep)) {
+				continue;
+			}
+			LOGGER.debug("evicting compiled stylesheet {}", eldest.getKey());
+			weight -= eldest.getValue().weight;
+			it.remove();
+			evictions.increment();
+		}
+	}
+
+	private static CompiledStylesheet getCompiled(String xsltPath, FutureTask<CompiledStylesheet> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while compiling " + xsltPath, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalArgumentException(xsltPath + " is invalid Schematron!", e.getCause());
+		}
+	}
+
+	private CompiledStylesheet compile(String xsltPath) {
+		String resourceName = xsltPath.startsWith("/") ? xsltPath.substring(1) : xsltPath;
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		URL url = loader == null ? null : loader.getResource(resourceName);
+		if (url == null) {
+			url = SchematronCache.class.getClassLoader().getResource(resourceName);
+		}
+		if (url == null) {
+			throw new IllegalArgumentException(xsltPath + " is invalid Schematron!");
+		}
+		final long start = System.nanoTime();
+		try {
+			URLConnection connection = url.openConnection();
+			long size = connection.getContentLengthLong();
+			Templates templates;
+			try (InputStream is = connection.getInputStream()) {
+				TransformerFactory factory = XMLTools.getTransformerFactory(configuration);
+				factory.setErrorListener(LOGGING_ERROR_LISTENER);
+				templates = factory.newTemplates(new StreamSource(is, url.toExternalForm()));
+			}
+			long duration = System.nanoTime() - start;
+			compileNanos.add(duration);
+			LOGGER.debug("compiled {} in {}ms", xsltPath, duration / 1_000_000);
+			return new CompiledStylesheet(templates, Math.max(size, 0));
+		} catch (IOException | TransformerConfigurationException e) {
+			compileNanos.add(System.nanoTime() - start);
+			throw new IllegalArgumentException(xsltPath + " is invalid Schematron!", e);
+		}
+	}
+
+}
@@ -0,0 +1,345 @@
+package org.mustangproject.validator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/***
+ * opt-in profiler of the schematron passes, to find the rules which are expensive on real invoices. It aggregates
+ * over all validations it is passed to (see ZUGFeRDValidator.setSchematronProfiler and
+ * ValidationEngine.withSchematronProfiler), per stylesheet, pattern and rule: how often a rule fired, how many of its
+ * asserts failed and the time spent.
+ *
+ * The time is measured on the SVRL output while it is being written: a rule is charged with the time from its
+ * svrl:fired-rule to the next fired rule, i.e. the evaluation of its asserts and the matching of the templates until
+ * the next rule fires. A pattern is charged with the time from its svrl:active-pattern to the next one. This needs
+ * neither a recompilation of the stylesheets with tracing nor a trace listener, so the overhead is one clock read
+ * per SVRL element, but the time of the context matching is only approximately attributed.
+ *
+ * The profiler is thread-safe, one instance can be shared by concurrent validations.
+ */
+public final class SchematronProfiler {
+
+	/***
+	 * the aggregated numbers of a rule, immutable
+	 */
+	public static final class RuleProfile {
+		private final String stylesheet, pattern, context, id;
+		private final long fired, failedAsserts, nanos;
+
+		RuleProfile(String stylesheet, String pattern, String context, String id, long fired, long failedAsserts, long nanos) {
+			this.stylesheet = stylesheet;
+			this.pattern = pattern;
+			this.context = context;
+			this.id = id;
+			this.fired = fired;
+			this.failedAsserts = failedAsserts;
+			this.nanos = nanos;
+		}
+
+		public String getStylesheet() {
+			return stylesheet;
+		}
+
+		/***
+		 * @return the id (or name) of the active pattern the rule belongs to
+		 */
+		public String getPattern() {
+			return pattern;
+		}
+
+		/***
+		 * @return the context XPath of the rule
+		 */
+		public String getContext() {
+			return context;
+		}
+
+		/***
+		 * @return the id of the rule, empty if it has none
+		 */
+		public String getID() {
+			return id;
+		}
+
+		/***
+		 * @return how often the context of the rule matched
+		 */
+		public long getFiredCount() {
+			return fired;
+		}
+
+		public long getFailedAssertCount() {
+			return failedAsserts;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+	}
+
+	/***
+	 * the aggregated numbers of a pattern, immutable
+	 */
+	public static final class PatternProfile {
+		private final String stylesheet, pattern;
+		private final long runs, nanos;
+
+		PatternProfile(String stylesheet, String pattern, long runs, long nanos) {
+			this.stylesheet = stylesheet;
+			this.pattern = pattern;
+			this.runs = runs;
+			this.nanos = nanos;
+		}
+
+		public String getStylesheet() {
+			return stylesheet;
+		}
+
+		public String getPattern() {
+			return pattern;
+		}
+
+		/***
+		 * @return how often the pattern has been evaluated, i.e. the number of validations using the stylesheet
+		 */
+		public long getRunCount() {
+			return runs;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+	}
+
+	/***
+	 * mutable numbers of a rule or pattern, with its labels
+	 */
+	private static final class Counter {
+		private final String[] labels;
+		private long count, failed, nanos;
+
+		Counter(String... labels) {
+			this.labels = labels;
+		}
+
+		void add(Counter other) {
+			count += other.count;
+			failed += other.failed;
+			nanos += other.nanos;
+		}
+	}
+
+	/***
+	 * collects the numbers of one schematron pass, without synchronization, and adds them to the profiler when the
+	 * pass is complete. Driven by the SVRLCollector of the pass
+	 */
+	final class Run {
+		private final String stylesheet;
+		private final Map<String, Counter> runRules = new HashMap<>();
+		private final Map<String, Counter> runPatterns = new HashMap<>();
+		private Counter pattern;
+		private Counter rule;
+		private long last;
+
+		private Run(String stylesheet) {
+			this.stylesheet = stylesheet;
+		}
+
+		/***
+		 * a svrl:active-pattern started
+		 * @param id its id or name, null if it has neither
+		 */
+		void activePattern(String id) {
+			charge();
+			final String name = id != null ? id : "#" + (runPatterns.size() + 1);
+			pattern = runPatterns.computeIfAbsent(name, key -> new Counter(stylesheet, key));
+			pattern.count++;
+			rule = null;
+		}
+
+		/***
+		 * a svrl:fired-rule started
+		 * @param context the context attribute
+		 * @param id the id attribute, null if absent
+		 */
+		void firedRule(String context, String id) {
+			charge();
+			final String patternName = pattern == null ? "" : pattern.labels[1];
+			final String ruleContext = context == null ? "" : context;
+			final String ruleID = id == null ? "" : id;
+			rule = runRules.computeIfAbsent(patternName + '\u0000' + ruleContext + '\u0000' + ruleID,
+				key -> new Counter(stylesheet, patternName, ruleContext, ruleID));
+			rule.count++;
+		}
+
+		/***
+		 * a svrl:failed-assert started, it belongs to the rule fired last
+		 */
+		void failedAssert() {
+			if (rule != null) {
+				rule.failed++;
+			}
+		}
+
+		/***
+		 * the SVRL output is complete
+		 */
+		void finish() {
+			charge();
+			merge(runRules, runPatterns);
+		}
+
+		private void charge() {
+			final long now = System.nanoTime();
+			if (pattern != null) {
+				final long elapsed = now - last;
+				pattern.nanos += elapsed;
+				if (rule != null) {
+					rule.nanos += elapsed;
+				}
+			}
+			last = now;
+		}
+	}
+
+	private final Map<String, Counter> rules = new HashMap<>();
+	private final Map<String, Counter> patterns = new HashMap<>();
+
+	/***
+	 * @param stylesheet the filename of the intermediate XSLT file
+	 * @return the recorder of a schematron pass
+	 */
+	Run newRun(String stylesheet) {
+		return new Run(stylesheet);
+	}
+
+	private synchronized void merge(Map<String, Counter> runRules, Map<String, Counter> runPatterns) {
+		for (Counter counter : runRules.values()) {
+			rules.computeIfAbsent(String.join("\u0000", counter.labels), key -> new Counter(counter.labels)).add(counter);
+		}
+		for (Counter counter : runPatterns.values()) {
+			patterns.computeIfAbsent(String.join("\u0000", counter.labels), key -> new Counter(counter.labels)).add(counter);
+		}
+	}
+
+	/***
+	 * @return the rules which fired so far, the most expensive first
+	 */
+	public synchronized List<RuleProfile> getRules() {
+		final List<RuleProfile> result = new ArrayList<>(rules.size());
+		for (Counter c : rules.values()) {
+			result.add(new RuleProfile(c.labels[0], c.labels[1], c.labels[2], c.labels[3], c.count, c.failed, c.nanos));
+		}
+		result.sort(Comparator.comparingLong(RuleProfile::getNanos).reversed());
+		return result;
+	}
+
+	/***
+	 * @return the patterns evaluated so far, the most expensive first
+	 */
+	public synchronized List<PatternProfile> getPatterns() {
+		final List<PatternProfile> result = new ArrayList<>(patterns.size());
+		for (Counter c : patterns.values()) {
+			result.add(new PatternProfile(c.labels[0], c.labels[1], c.count, c.nanos));
+		}
+		result.sort(Comparator.comparingLong(PatternProfile::getNanos).reversed());
+		return result;
+	}
+
+	/***
+	 * forgets everything recorded so far
+	 */
+	public synchronized void reset() {
+		rules.clear();
+		patterns.clear();
+	}
+
+	/***
+	 * writes the rules as CSV with a header line, the most expensive first
+	 * @param out where to write to, not closed
+	 * @throws IOException if writing fails
+	 */
+	public void writeCSV(Writer out) throws IOException {
+		out.write("stylesheet,pattern,context,id,fired,failedAsserts,ms\n");
+		for (RuleProfile rule : getRules()) {
+			out.write(csv(rule.getStylesheet()) + ',' + csv(rule.getPattern()) + ',' + csv(rule.getContext()) + ','
+				+ csv(rule.getID()) + ',' + rule.getFiredCount() + ',' + rule.getFailedAssertCount() + ','
+				+ millis(rule.getNanos()) + '\n');
+		}
+	}
+
+	/***
+	 * writes the patterns and rules as JSON object, each the most expensive first
+	 * @param out where to write to, not closed
+	 * @throws IOException if writing fails
+	 */
+	public void writeJSON(Writer out) throws IOException {
+		out.write("{\"patterns\":[");
+		String separator = "\n";
+		for (PatternProfile pattern : getPatterns()) {
+			out.write(separator + "{\"stylesheet\":" + json(pattern.getStylesheet()) + ",\"pattern\":" + json(pattern.getPattern())
+				+ ",\"runs\":" + pattern.getRunCount() + ",\"ms\":" + millis(pattern.getNanos()) + "}");
+			separator = ",\n";
+		}
+		out.write("],\n\"rules\":[");
+		separator = "\n";
+		for (RuleProfile rule : getRules()) {
+			out.write(separator + "{\"stylesheet\":" + json(rule.getStylesheet()) + ",\"pattern\":" + json(rule.getPattern())
+				+ ",\"context\":" + json(rule.getContext()) + ",\"id\":" + json(rule.getID())
+				+ ",\"fired\":" + rule.getFiredCount() + ",\"failedAsserts\":" + rule.getFailedAssertCount()
+				+ ",\"ms\":" + millis(rule.getNanos()) + "}");
+			separator = ",\n";
+		}
+		out.write("]}\n");
+	}
+
+	/***
+	 * writes the profile to a file, as JSON if its name ends with .json and as CSV otherwise
+	 * @param file the file to be written, it is overwritten if it exists
+	 * @throws IOException if writing fails
+	 */
+	public void write(Path file) throws IOException {
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")) {
+				writeJSON(out);
+			} else {
+				writeCSV(out);
+			}
+		}
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+	}
+
+	private static String csv(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	private static String json(String value) {
+		final StringBuilder sb = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+}
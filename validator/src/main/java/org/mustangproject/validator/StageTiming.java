@@ -0,0 +1,61 @@
+package org.mustangproject.validator;
+
+import java.util.Locale;
+
+import org.mustangproject.XMLTools;
+
+/***
+ * how long a stage of a validation took, immutable
+ */
+public final class StageTiming {
+	private final EStage stage;
+	private final String name;
+	private final long nanos;
+
+	/***
+	 * @param stage what has been done
+	 * @param name the schema or stylesheet used, null if the stage does not have one
+	 * @param nanos the wall clock time the stage took
+	 */
+	public StageTiming(EStage stage, String name, long nanos) {
+		this.stage = stage;
+		this.name = name;
+		this.nanos = nanos;
+	}
+
+	public EStage getStage() {
+		return stage;
+	}
+
+	/***
+	 * @return the schema (for xsd) or stylesheet (for schematron) file, null for the other stages
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	public double getMillis() {
+		return nanos / 1_000_000.0;
+	}
+
+	/***
+	 * @return the timing as stage element of the timings section of the report
+	 */
+	public String getXML() {
+		final StringBuilder xml = new StringBuilder("<stage name=\"").append(stage).append('"');
+		if (name != null) {
+			xml.append(" file=\"").append(new XMLTools().escapeAttributeEntities(name)).append('"');
+		}
+		return xml.append(" ms=\"").append(String.format(Locale.ROOT, "%.3f", getMillis())).append("\"/>").toString();
+	}
+
+	@Override
+	public String toString() {
+		return name == null ? stage + ":" + nanos + "ns" : stage + "(" + name + "):" + nanos + "ns";
+	}
+
+}
@@ -1,7 +1,13 @@
 package org.mustangproject.validator;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import org.slf4j.Logger;
@@ -27,6 +33,16 @@ public class ValidationContext {
 	private boolean isValid = true;
 	private boolean hasPDF;
 	private String filename;
+	/***
+	 * the timings of the current validation, appended to by concurrently running stages as well
+	 */
+	private final List<StageTiming> timings = Collections.synchronizedList(new ArrayList<>());
+	private ValidationListener listener;
+	private int maxAggregatedLocations; // 0 if every finding is an item of its own
+	/***
+	 * the first item of each rule ID, severity and section, if repeated findings are aggregated
+	 */
+	private final Map<String, ValidationResultItem> aggregates = new HashMap<>();
 
 	public ValidationContext(Logger log) {
 		logger = log;
@@ -42,6 +58,18 @@ public class ValidationContext {
 	}
 
 	public void addResultItem(ValidationResultItem vr) throws IrrecoverableValidationError {
+		final String aggregateKey = aggregateKey(vr);
+		if (aggregateKey != null) {
+			final ValidationResultItem first = aggregates.putIfAbsent(aggregateKey, vr);
+			if (first != null) {
+				// neither stored nor logged again
+				first.aggregate(vr, maxAggregatedLocations);
+				if (vr.getSeverity() == ESeverity.error) {
+					isValid = false;
+				}
+				return;
+			}
+		}
 		results.add(vr);
 
 		if (vr.getSeverity() == ESeverity.fatal || vr.getSeverity() == ESeverity.exception || vr.getSeverity() == ESeverity.error) {
@@ -65,6 +93,111 @@ public class ValidationContext {
 
 	}
 
+	/***
+	 * @return the key of the findings the item is to be aggregated with, null if it is to be an item of its own
+	 */
+	private String aggregateKey(ValidationResultItem vr) {
+		if (maxAggregatedLocations == 0 || vr.getID().isEmpty() || vr.getSeverity() == ESeverity.fatal
+			|| vr.getSeverity() == ESeverity.exception) {
+			return null;
+		}
+		return vr.getID() + '\t' + vr.getSeverity() + '\t' + vr.getSection();
+	}
+
+	/***
+	 * @param vr an item which has not been added yet
+	 * @return true if it would be counted by an item added before, i.e. it is not worth logging
+	 */
+	boolean isRepetition(ValidationResultItem vr) {
+		final String aggregateKey = aggregateKey(vr);
+		return aggregateKey != null && aggregates.containsKey(aggregateKey);
+	}
+
+	/***
+	 * aggregate repeated findings, e.g. a rule failing on each of 10000 lines, to one item per rule ID, severity and
+	 * section which counts the occurrences and lists their first locations. Memory, log and report then grow with the
+	 * number of distinct problems instead of the number of lines. Findings without an ID are never aggregated.
+	 * @param maxLocations how many locations each aggregated item lists at most, 0 (the default) to report every
+	 *                     finding as an item of its own
+	 */
+	public void setAggregation(int maxLocations) {
+		if (maxLocations < 0) {
+			throw new IllegalArgumentException("maxLocations must not be negative");
+		}
+		maxAggregatedLocations = maxLocations;
+	}
+
+	/***
+	 * @return how many locations each aggregated item lists at most, 0 if findings are not aggregated
+	 */
+	public int getAggregation() {
+		return maxAggregatedLocations;
+	}
+
+	/***
+	 * appends the results of a validation stage which reported to a context of its own, e.g. because it ran
+	 * concurrently. The stage context should not have a logger, the items are logged when they are added here.
+	 * @param stage the context the stage reported to
+	 * @throws IrrecoverableValidationError if one of the items is fatal
+	 */
+	void addResultItems(ValidationContext stage) throws IrrecoverableValidationError {
+		for (final ValidationResultItem validationResultItem : stage.getResults()) {
+			addResultItem(validationResultItem);
+		}
+	}
+
+	/***
+	 * records that a stage has been completed, may be called from any thread
+	 * @param stage what has been done
+	 * @param name the schema or stylesheet used, null if the stage does not have one
+	 * @param startNanos System.nanoTime() when the stage started
+	 */
+	void addTiming(EStage stage, String name, long startNanos) {
+		final StageTiming timing = new StageTiming(stage, name, System.nanoTime() - startNanos);
+		timings.add(timing);
+		if (listener != null) {
+			listener.stageCompleted(getFilename(), timing);
+		}
+	}
+
+	/***
+	 * @return the stages completed since the last clearTimings(), in the order they have been completed
+	 */
+	public List<StageTiming> getTimings() {
+		synchronized (timings) {
+			return new ArrayList<>(timings);
+		}
+	}
+
+	/***
+	 * forgets the timings, unlike the results they are kept by clear() because they span the PDF and XML parts
+	 */
+	public void clearTimings() {
+		timings.clear();
+	}
+
+	/***
+	 * @return the timings section of the report
+	 */
+	public String getTimingsXML() {
+		final StringBuilder res = new StringBuilder("<timings>");
+		for (StageTiming timing : getTimings()) {
+			res.append(timing.getXML());
+		}
+		return res.append("</timings>").toString();
+	}
+
+	/***
+	 * @param listener to be notified about each completed stage, null for none
+	 */
+	public void setListener(ValidationListener listener) {
+		this.listener = listener;
+	}
+
+	public ValidationListener getListener() {
+		return listener;
+	}
+
 	public void clearCustomXML() {
 		customXML = "";
 	}
@@ -118,6 +251,7 @@ public class ValidationContext {
 
 	public void clear() {
 		results.clear();
+		aggregates.clear();
 		isValid = true;
 		clearCustomXML();
 	}
@@ -127,17 +261,32 @@ public class ValidationContext {
 	 * @return the XML of the result
 	 */
 	public String getXMLResult() {
-		StringBuilder res = new StringBuilder(getCustomXML());
+		final StringWriter res = new StringWriter();
+		try {
+			writeResult(ValidationReportWriter.xml(res));
+		} catch (IOException e) {
+			// not thrown by a StringWriter
+			throw new UncheckedIOException(e);
+		}
+		return res.toString();
+	}
+
+	/***
+	 * writes the custom XML, the items which have not been written yet and the summary
+	 * @param report where to write to
+	 * @throws IOException if writing fails
+	 */
+	void writeResult(ValidationReportWriter report) throws IOException {
+		report.details(getCustomXML());
 		if (results != null && !results.isEmpty()) {
-			res.append("<messages>");
+			report.startMessages();
 			for (final ValidationResultItem validationResultItem : results) {
 				// xml and pdf are handled in their respective sections
-				res.append(validationResultItem.getXMLOnce()).append("\n");
+				report.item(validationResultItem);
 			}
-			res.append("</messages>");
+			report.endMessages();
 		}
-		res.append("<summary status=\"").append(isValid ? "valid" : "invalid").append("\"/>");
-		return res.toString();
+		report.summary(isValid);
 	}
 
 	/***
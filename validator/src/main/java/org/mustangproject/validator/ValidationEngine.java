@@ -0,0 +1,289 @@
+package org.mustangproject.validator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.io.IOUtils;
+
+/***
+ * a thread-safe entry point to the validation, e.g. for services: one instance can be shared by all request threads.
+ * The engine itself is immutable, it only holds the options, every validate() call works on state of its own and
+ * returns an immutable ValidationReport. The expensive resources (compiled schematron stylesheets and XSD schemas)
+ * are cached process-wide anyway, preload() compiles them ahead of the first request.
+ *
+ * Options are changed by the with...() methods which return a modified copy:
+ * <pre>
+ * ValidationEngine engine = new ValidationEngine().withoutNotices().preload();
+ * ValidationReport report = engine.validate(Paths.get("invoice.pdf"));
+ * </pre>
+ */
+public final class ValidationEngine {
+	private final boolean notices;
+	private final boolean arithmeticCheck;
+	private final Executor executor;
+	private final ValidationResultCache resultCache;
+	private final boolean timings;
+	private final ValidationListener listener;
+	private final SchematronProfiler schematronProfiler;
+	private final EValidationLevel validationLevel;
+	private final boolean failFast;
+	private final int aggregation;
+
+	/***
+	 * an engine with the same defaults as ZUGFeRDValidator: notices are reported, the arithmetic check is performed and
+	 * the stages are run sequentially
+	 */
+	public ValidationEngine() {
+		this(true, true, null, null, false, null, null, EValidationLevel.full, false, 0);
+	}
+
+	private ValidationEngine(boolean notices, boolean arithmeticCheck, Executor executor, ValidationResultCache resultCache,
+							 boolean timings, ValidationListener listener, SchematronProfiler schematronProfiler,
+							 EValidationLevel validationLevel, boolean failFast, int aggregation) {
+		this.notices = notices;
+		this.arithmeticCheck = arithmeticCheck;
+		this.executor = executor;
+		this.resultCache = resultCache;
+		this.timings = timings;
+		this.listener = listener;
+		this.schematronProfiler = schematronProfiler;
+		this.validationLevel = validationLevel;
+		this.failFast = failFast;
+		this.aggregation = aggregation;
+	}
+
+	/***
+	 * @return a copy of this engine which does not report notices
+	 */
+	public ValidationEngine withoutNotices() {
+		return new ValidationEngine(false, arithmeticCheck, executor, resultCache, timings, listener, schematronProfiler, validationLevel, failFast, aggregation);
+	}
+
+	/***
+	 * @return a copy of this engine which does not perform the arithmetic recalculation check
+	 */
+	public ValidationEngine withoutArithmeticCheck() {
+		return new ValidationEngine(notices, false, executor, resultCache, timings, listener, schematronProfiler, validationLevel, failFast, aggregation);
+	}
+
+	/***
+	 * @param executor runs independent stages of each validation concurrently, see ZUGFeRDValidator.setExecutor,
+	 *                 null for sequential validations
+	 * @return a copy of this engine using the executor
+	 */
+	public ValidationEngine withExecutor(Executor executor) {
+		return new ValidationEngine(notices, arithmeticCheck, executor, resultCache, timings, listener, schematronProfiler, validationLevel, failFast, aggregation);
+	}
+
+	/***
+	 * @param resultCache where to look up reports of files which have been validated before (with the same validator
+	 *                    version and options) and to store new reports, null to always validate
+	 * @return a copy of this engine using the cache
+	 */
+	public ValidationEngine withResultCache(ValidationResultCache resultCache) {
+		return new ValidationEngine(notices, arithmeticCheck, executor, resultCache, timings, listener, schematronProfiler, validationLevel, failFast, aggregation);
+	}
+
+	/***
+	 * @return a copy of this engine which adds the timings section to the XML reports, the timings are available by
+	 * ValidationReport.getTimings() anyway
+	 */
+	public ValidationEngine withTimings() {
+		return new ValidationEngine(notices, arithmeticCheck, executor, resultCache, true, listener, schematronProfiler, validationLevel, failFast, aggregation);
+	}
+
+	/***
+	 * @param listener to be notified about the stages of all validations of the engine, has to be thread-safe.
+	 *                 Reports taken from the result cache are not notified. Null for none
+	 * @return a copy of this engine using the listener
+	 */
+	public ValidationEngine withListener(ValidationListener listener) {
+		return new ValidationEngine(notices, arithmeticCheck, executor, resultCache, timings, listener, schematronProfiler, validationLevel, failFast, aggregation);
+	}
+
+	/***
+	 * @param schematronProfiler where to add the numbers of the schematron patterns and rules of all validations of
+	 *                           the engine, reports taken from the result cache are not profiled. Null to not profile
+	 * @return a copy of this engine using the profiler
+	 */
+	public ValidationEngine withSchematronProfiler(SchematronProfiler schematronProfiler) {
+		return new ValidationEngine(notices, arithmeticCheck, executor, resultCache, timings, listener, schematronProfiler, validationLevel, failFast, aggregation);
+	}
+
+	/***
+	 * @param validationLevel which checks to perform, see ZUGFeRDValidator.setValidationLevel, the default is full
+	 * @return a copy of this engine validating up to the level
+	 */
+	public ValidationEngine withValidationLevel(EValidationLevel validationLevel) {
+		return new ValidationEngine(notices, arithmeticCheck, executor, resultCache, timings, listener, schematronProfiler, validationLevel, failFast, aggregation);
+	}
+
+	/***
+	 * @return a copy of this engine which skips the remaining stages of a validation as soon as a stage reported an
+	 * error, see ZUGFeRDValidator.enableFailFast
+	 */
+	public ValidationEngine withFailFast() {
+		return new ValidationEngine(notices, arithmeticCheck, executor, resultCache, timings, listener, schematronProfiler, validationLevel, true, aggregation);
+	}
+
+	/***
+	 * @param maxLocations how many locations each aggregated finding lists at most, see
+	 *                     ZUGFeRDValidator.setAggregation, 0 to report every finding as an item of its own
+	 * @return a copy of this engine which aggregates repeated findings
+	 */
+	public ValidationEngine withAggregation(int maxLocations) {
+		if (maxLocations < 0) {
+			throw new IllegalArgumentException("maxLocations must not be negative");
+		}
+		return new ValidationEngine(notices, arithmeticCheck, executor, resultCache, timings, listener, schematronProfiler, validationLevel, failFast, maxLocations);
+	}
+
+	/***
+	 * compiles all shipped schematron stylesheets now, instead of during the first validations
+	 * @return this engine
+	 */
+	public ValidationEngine preload() {
+		SchematronCache.getInstance().preload(SchematronCache.KNOWN_STYLESHEETS.toArray(new String[0]));
+		return this;
+	}
+
+	/***
+	 * validates a PDF or XML file
+	 * @param file the file
+	 * @return the report
+	 */
+	public ValidationReport validate(Path file) {
+		final String filename = Objects.toString(file.getFileName(), file.toString());
+		if (!Files.isRegularFile(file)) {
+			// reported as not found
+			final long start = System.nanoTime();
+			final ZUGFeRDValidator validator = newValidator();
+			final String xml = validator.validate(file);
+			return new ValidationReport(filename, xml, validator, (System.nanoTime() - start) / 1_000_000);
+		}
+		final long readStart = System.nanoTime();
+		final FileContent content;
+		try {
+			content = FileContent.read(file);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return validate(content, filename, readStart);
+	}
+
+	/***
+	 * validates a PDF or XML file
+	 * @param content the content of the file
+	 * @param filename the name of the file to be mentioned in the report
+	 * @return the report
+	 */
+	public ValidationReport validate(byte[] content, String filename) {
+		return validate(FileContent.of(content), filename, System.nanoTime());
+	}
+
+	private ValidationReport validate(FileContent content, String filename, long readStart) {
+		String key = null;
+		if (resultCache != null) {
+			key = ValidationResultCache.key(content.sha1(), notices, arithmeticCheck, timings, validationLevel, failFast, aggregation);
+			final ValidationReport cached = resultCache.get(key);
+			if (cached != null) {
+				// the content may have been validated under another name
+				return cached.restamp(filename, new Date());
+			}
+		}
+		final long start = System.nanoTime();
+		final ZUGFeRDValidator validator = newValidator();
+		final String xml = validator.validate(content, filename, readStart);
+		final ValidationReport report = new ValidationReport(filename, xml, validator, (System.nanoTime() - start) / 1_000_000);
+		if (key != null) {
+			resultCache.put(key, report);
+		}
+		return report;
+	}
+
+	/***
+	 * validates a PDF or XML file, the stream is read completely but not closed
+	 * @param inputStream the content of the file
+	 * @param filename the name of the file to be mentioned in the report
+	 * @return the report
+	 */
+	public ValidationReport validate(InputStream inputStream, String filename) {
+		final long readStart = System.nanoTime();
+		final byte[] content;
+		try {
+			content = IOUtils.toByteArray(inputStream);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return validate(FileContent.of(content), filename, readStart);
+	}
+
+	public boolean isReportingNotices() {
+		return notices;
+	}
+
+	public boolean isCheckingArithmetics() {
+		return arithmeticCheck;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public ValidationResultCache getResultCache() {
+		return resultCache;
+	}
+
+	public boolean isReportingTimings() {
+		return timings;
+	}
+
+	public ValidationListener getListener() {
+		return listener;
+	}
+
+	public SchematronProfiler getSchematronProfiler() {
+		return schematronProfiler;
+	}
+
+	public EValidationLevel getValidationLevel() {
+		return validationLevel;
+	}
+
+	public boolean isFailingFast() {
+		return failFast;
+	}
+
+	public int getAggregation() {
+		return aggregation;
+	}
+
+	private ZUGFeRDValidator newValidator() {
+		final ZUGFeRDValidator validator = new ZUGFeRDValidator();
+		if (!notices) {
+			validator.disableNotices();
+		}
+		if (!arithmeticCheck) {
+			validator.disableArithmeticCheck();
+		}
+		validator.setExecutor(executor);
+		if (timings) {
+			validator.enableTimings();
+		}
+		validator.setListener(listener);
+		validator.setSchematronProfiler(schematronProfiler);
+		validator.setValidationLevel(validationLevel);
+		if (failFast) {
+			validator.enableFailFast();
+		}
+		validator.setAggregation(aggregation);
+		return validator;
+	}
+
+}
@@ -0,0 +1,28 @@
+package org.mustangproject.validator;
+
+import java.util.List;
+
+/***
+ * is notified about the progress of validations, e.g. to export the stage timings to a monitoring system. If the
+ * validator runs stages concurrently (see ZUGFeRDValidator.setExecutor) the methods are called from several threads,
+ * and a listener shared by several validators has to be thread-safe anyway.
+ */
+public interface ValidationListener {
+
+	/***
+	 * a stage of a validation has been completed
+	 * @param filename the file being validated
+	 * @param timing which stage, and how long it took
+	 */
+	void stageCompleted(String filename, StageTiming timing);
+
+	/***
+	 * a validation has been completed
+	 * @param filename the validated file
+	 * @param timings all stages in the order they have been completed
+	 * @param totalNanos the time the complete validation took, including the report generation
+	 */
+	default void validationCompleted(String filename, List<StageTiming> timings, long totalNanos) {
+	}
+
+}
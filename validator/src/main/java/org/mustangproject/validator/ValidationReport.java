@@ -0,0 +1,180 @@
+package org.mustangproject.validator;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.mustangproject.XMLTools;
+
+/***
+ * the immutable outcome of a validation by the ValidationEngine, can be passed between threads freely
+ */
+public final class ValidationReport {
+	private final String filename;
+	private final String xml;
+	private final boolean valid;
+	private final boolean pdf;
+	private final boolean pdfValid;
+	private final String sha1Checksum;
+	private final String signature;
+	private final String format;
+	private final String generation;
+	private final String profile;
+	private final List<ValidationResultItem> items;
+	private final long durationMillis;
+	private final List<StageTiming> timings;
+
+	ValidationReport(String filename, String xml, ZUGFeRDValidator validator, long durationMillis) {
+		this(filename, xml, validator.wasCompletelyValid(), validator.getContext().hasPDF(), validator.isPDFValid(),
+			validator.getSHA1Checksum(), validator.getSignature(), validator.getContext().getFormat(),
+			validator.getContext().getGeneration(), validator.getContext().getProfile(), validator.getResultItems(),
+			durationMillis, validator.getTimings());
+	}
+
+	ValidationReport(String filename, String xml, boolean valid, boolean pdf, boolean pdfValid, String sha1Checksum,
+					 String signature, String format, String generation, String profile, List<ValidationResultItem> items,
+					 long durationMillis, List<StageTiming> timings) {
+		this.filename = filename;
+		this.xml = xml;
+		this.valid = valid;
+		this.pdf = pdf;
+		this.pdfValid = pdfValid;
+		this.sha1Checksum = sha1Checksum;
+		this.signature = signature;
+		this.format = format;
+		this.generation = generation;
+		this.profile = profile;
+		this.items = Collections.unmodifiableList(new ArrayList<>(items));
+		this.durationMillis = durationMillis;
+		this.timings = Collections.unmodifiableList(new ArrayList<>(timings));
+	}
+
+	/***
+	 * the report of the same content validated under another name or at another time, e.g. for a report taken from a
+	 * ValidationResultCache
+	 * @param filename the name of the file to be mentioned in the report
+	 * @param date when the file has been validated
+	 * @return a report with the filename and datetime replaced, otherwise the same
+	 */
+	ValidationReport restamp(String filename, Date date) {
+		String restamped = xml;
+		final int start = xml.indexOf("<validation ");
+		final int end = start < 0 ? -1 : xml.indexOf('>', start);
+		if (end > 0) {
+			final String tag = xml.substring(start, end)
+				.replaceFirst("filename=\"[^\"]*\"", Matcher.quoteReplacement("filename=\"" + new XMLTools().escapeAttributeEntities(filename) + "\""))
+				.replaceFirst("datetime=\"[^\"]*\"", "datetime=\"" + new SimpleDateFormat(ValidationReportWriter.DATETIME_FORMAT).format(date) + "\"");
+			restamped = xml.substring(0, start) + tag + xml.substring(end);
+		}
+		return new ValidationReport(filename, restamped, valid, pdf, pdfValid, sha1Checksum, signature, format, generation,
+			profile, items, durationMillis, timings);
+	}
+
+	/***
+	 * @return the name of the validated file as passed to the engine, without path
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	/***
+	 * @return the report in the same format ZUGFeRDValidator.validate returns it
+	 */
+	public String getXML() {
+		return xml;
+	}
+
+	/***
+	 * @return true if neither the PDF nor the XML contained errors, notices and warnings are ignored
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+	/***
+	 * @return true if the file was a PDF (and not a XML file)
+	 */
+	public boolean isPDF() {
+		return pdf;
+	}
+
+	/***
+	 * @return true if the PDF part was valid, also true for XML files
+	 */
+	public boolean isPDFValid() {
+		return pdfValid;
+	}
+
+	/***
+	 * @return uppercase hex SHA-1 of the file, null if it could not be read
+	 */
+	public String getSHA1Checksum() {
+		return sha1Checksum;
+	}
+
+	/***
+	 * @return the authoring tool of the PDF, if recognizable, otherwise null
+	 */
+	public String getSignature() {
+		return signature;
+	}
+
+	/***
+	 * @return CII or UBL
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	/***
+	 * @return 1 for ZUGFeRD 1, 2 for ZUGFeRD 2, Factur-X, XRechnung or UBL, null if not recognized
+	 */
+	public String getGeneration() {
+		return generation;
+	}
+
+	/***
+	 * @return the guideline ID of the invoice, null if not recognized
+	 */
+	public String getProfile() {
+		return profile;
+	}
+
+	/***
+	 * @return the errors, warnings and notices, of the PDF part first. The list is unmodifiable, the items must not be
+	 * modified either
+	 */
+	public List<ValidationResultItem> getItems() {
+		return items;
+	}
+
+	/***
+	 * @param severity the severity to look for
+	 * @return the number of result items with the given severity
+	 */
+	public int count(ESeverity severity) {
+		int count = 0;
+		for (ValidationResultItem item : items) {
+			if (item.getSeverity() == severity) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/***
+	 * @return how long the stages of the validation took, in the order they have been completed. Empty for reports
+	 * read from the disk tier of a ValidationResultCache, the list is unmodifiable
+	 */
+	public List<StageTiming> getTimings() {
+		return timings;
+	}
+
+}
@@ -0,0 +1,416 @@
+package org.mustangproject.validator;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+import org.mustangproject.XMLTools;
+
+/***
+ * writes a validation report while it is produced, section by section straight to a stream, as XML or as JSON. Unlike
+ * ZUGFeRDValidator.validate(String), which returns the report pretty printed by parsing it once more, the report is
+ * neither collected nor parsed:
+ * <pre>
+ * try (ValidationReportWriter report = ValidationReportWriter.json(out, true)) {
+ *   new ZUGFeRDValidator().validate(Paths.get("invoice.pdf"), report);
+ * }
+ * </pre>
+ * The XML has the same elements as the one of validate(String), the details of the PDF and XML parts (veraPDF report,
+ * info) are copied verbatim, in JSON as "details" string. Compact XML has one line per message, indented XML and JSON
+ * one line per element.
+ */
+public abstract class ValidationReportWriter implements Closeable {
+	/*** the format of the datetime of a validation */
+	static final String DATETIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+	protected final Writer out;
+	protected final boolean indent;
+
+	ValidationReportWriter(Writer out, boolean indent) {
+		this.out = out;
+		this.indent = indent;
+	}
+
+	/***
+	 * @param out where to write the UTF-8 encoded report to, closed by close()
+	 * @param indent true to indent the elements, false for compact output
+	 * @return a writer of XML reports
+	 */
+	public static ValidationReportWriter xml(OutputStream out, boolean indent) {
+		return new XMLReportWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), indent);
+	}
+
+	/***
+	 * @param out where to write the UTF-8 encoded report to, closed by close()
+	 * @param indent true to indent the members, false for compact output
+	 * @return a writer of JSON reports
+	 */
+	public static ValidationReportWriter json(OutputStream out, boolean indent) {
+		return new JSONReportWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), indent);
+	}
+
+	/***
+	 * the compact XML ZUGFeRDValidator.validate(String) pretty prints
+	 * @param out where to write to
+	 * @return a writer of XML reports
+	 */
+	static ValidationReportWriter xml(Writer out) {
+		return new XMLReportWriter(out, false);
+	}
+
+	abstract void startValidation(String filename, String datetime) throws IOException;
+
+	/***
+	 * @param name pdf or xml
+	 */
+	abstract void startSection(String name) throws IOException;
+
+	abstract void endSection(String name) throws IOException;
+
+	/***
+	 * @param xml XML added to the report by the validators, may be empty
+	 */
+	abstract void details(String xml) throws IOException;
+
+	abstract void startMessages() throws IOException;
+
+	/***
+	 * @param item a result item, ignored if it has been written before
+	 */
+	abstract void item(ValidationResultItem item) throws IOException;
+
+	abstract void endMessages() throws IOException;
+
+	abstract void summary(boolean valid) throws IOException;
+
+	abstract void timings(List<StageTiming> timings) throws IOException;
+
+	/***
+	 * completes the report and flushes it to the stream
+	 */
+	abstract void endValidation() throws IOException;
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private static final class XMLReportWriter extends ValidationReportWriter {
+		private final XMLTools xt = new XMLTools();
+		private int depth;
+		private boolean messagesPending;
+		private boolean messagesOpen;
+
+		XMLReportWriter(Writer out, boolean indent) {
+			super(out, indent);
+		}
+
+		/***
+		 * writes a complete line if indenting, the bare text otherwise
+		 */
+		private void line(String xml) throws IOException {
+			if (indent) {
+				for (int i = 0; i < depth; i++) {
+					out.write("  ");
+				}
+				out.write(xml);
+				out.write('\n');
+			} else {
+				out.write(xml);
+			}
+		}
+
+		@Override
+		void startValidation(String filename, String datetime) throws IOException {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			line("<validation filename=\"" + xt.escapeAttributeEntities(filename) + "\" datetime=\"" + datetime + "\">");
+			depth++;
+		}
+
+		@Override
+		void startSection(String name) throws IOException {
+			line("<" + name + ">");
+			depth++;
+		}
+
+		@Override
+		void endSection(String name) throws IOException {
+			depth--;
+			line("</" + name + ">");
+			if (!indent && "pdf".equals(name)) {
+				out.write('\n');
+			}
+		}
+
+		@Override
+		void details(String xml) throws IOException {
+			if (!xml.isEmpty()) {
+				line(xml);
+			}
+		}
+
+		@Override
+		void startMessages() throws IOException {
+			if (indent) {
+				// empty message lists are omitted
+				messagesPending = true;
+			} else {
+				out.write("<messages>");
+			}
+		}
+
+		@Override
+		void item(ValidationResultItem item) throws IOException {
+			if (!indent) {
+				out.write(item.getXMLOnce());
+				out.write('\n');
+			} else if (!item.hasBeenOutputted()) {
+				if (messagesPending) {
+					line("<messages>");
+					depth++;
+					messagesPending = false;
+					messagesOpen = true;
+				}
+				line(item.getXML());
+			}
+		}
+
+		@Override
+		void endMessages() throws IOException {
+			if (!indent) {
+				out.write("</messages>");
+			} else if (messagesOpen) {
+				depth--;
+				line("</messages>");
+			}
+			messagesPending = false;
+			messagesOpen = false;
+		}
+
+		@Override
+		void summary(boolean valid) throws IOException {
+			line("<summary status=\"" + (valid ? "valid" : "invalid") + "\"/>");
+		}
+
+		@Override
+		void timings(List<StageTiming> timings) throws IOException {
+			line("<timings>");
+			depth++;
+			for (StageTiming timing : timings) {
+				line(timing.getXML());
+			}
+			depth--;
+			line("</timings>");
+		}
+
+		@Override
+		void endValidation() throws IOException {
+			depth--;
+			line("</validation>");
+			out.flush();
+		}
+	}
+
+	private static final class JSONReportWriter extends ValidationReportWriter {
+		/*** per open object or array, whether it has no members yet */
+		private final Deque<Boolean> empty = new ArrayDeque<>();
+		private boolean messagesPending;
+		private boolean messagesOpen;
+
+		JSONReportWriter(Writer out, boolean indent) {
+			super(out, indent);
+		}
+
+		/***
+		 * starts a member of the current object, or an element of the current array if name is null
+		 */
+		private void member(String name) throws IOException {
+			if (!empty.isEmpty()) {
+				if (!empty.pop()) {
+					out.write(',');
+				}
+				empty.push(false);
+			}
+			newLine(empty.size());
+			if (name != null) {
+				out.write(json(name));
+				out.write(indent ? ": " : ":");
+			}
+		}
+
+		private void newLine(int depth) throws IOException {
+			if (indent) {
+				out.write('\n');
+				for (int i = 0; i < depth; i++) {
+					out.write("  ");
+				}
+			}
+		}
+
+		private void open(char bracket) throws IOException {
+			out.write(bracket);
+			empty.push(true);
+		}
+
+		private void close(char bracket) throws IOException {
+			if (!empty.pop()) {
+				newLine(empty.size());
+			}
+			out.write(bracket);
+		}
+
+		private void value(String name, String value) throws IOException {
+			member(name);
+			out.write(json(value));
+		}
+
+		@Override
+		void startValidation(String filename, String datetime) throws IOException {
+			open('{');
+			value("filename", filename);
+			value("datetime", datetime);
+		}
+
+		@Override
+		void startSection(String name) throws IOException {
+			member(name);
+			open('{');
+		}
+
+		@Override
+		void endSection(String name) throws IOException {
+			close('}');
+		}
+
+		@Override
+		void details(String xml) throws IOException {
+			if (!xml.isEmpty()) {
+				value("details", xml);
+			}
+		}
+
+		@Override
+		void startMessages() {
+			// empty message lists are omitted
+			messagesPending = true;
+		}
+
+		@Override
+		void item(ValidationResultItem item) throws IOException {
+			if (item.hasBeenOutputted()) {
+				return;
+			}
+			if (messagesPending) {
+				member("messages");
+				open('[');
+				messagesPending = false;
+				messagesOpen = true;
+			}
+			member(null);
+			open('{');
+			value("severity", item.getSeverity().name());
+			if (item.getSection() != -1) {
+				member("type");
+				out.write(Integer.toString(item.getSection()));
+			}
+			if (!item.getID().isEmpty()) {
+				value("id", item.getID());
+			}
+			if (item.getLocation() != null) {
+				value("location", item.getLocation());
+			}
+			if (item.getCount() > 1) {
+				member("count");
+				out.write(Integer.toString(item.getCount()));
+				member("locations");
+				open('[');
+				for (String location : item.getLocations()) {
+					value(null, location);
+				}
+				close(']');
+			}
+			if (item.isLocationsTruncated()) {
+				member("truncated");
+				out.write("true");
+			}
+			if (item.getCriterion() != null) {
+				value("criterion", item.getCriterion());
+			}
+			value("message", String.valueOf(item.getMessage()));
+			if (item.getStacktrace() != null) {
+				value("stacktrace", item.getStacktrace());
+			}
+			close('}');
+			item.markOutputted();
+		}
+
+		@Override
+		void endMessages() throws IOException {
+			if (messagesOpen) {
+				close(']');
+			}
+			messagesPending = false;
+			messagesOpen = false;
+		}
+
+		@Override
+		void summary(boolean valid) throws IOException {
+			member("summary");
+			open('{');
+			value("status", valid ? "valid" : "invalid");
+			close('}');
+		}
+
+		@Override
+		void timings(List<StageTiming> timings) throws IOException {
+			member("timings");
+			open('[');
+			for (StageTiming timing : timings) {
+				member(null);
+				open('{');
+				value("stage", timing.getStage().name());
+				if (timing.getName() != null) {
+					value("file", timing.getName());
+				}
+				member("ms");
+				out.write(String.format(Locale.ROOT, "%.3f", timing.getMillis()));
+				close('}');
+			}
+			close(']');
+		}
+
+		@Override
+		void endValidation() throws IOException {
+			close('}');
+			out.write('\n');
+			out.flush();
+		}
+	}
+
+	/***
+	 * @param value a string
+	 * @return the string as quoted JSON string
+	 */
+	static String json(String value) {
+		final StringBuilder sb = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+}
@@ -0,0 +1,420 @@
+package org.mustangproject.validator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * remembers validation reports by the content hash of the validated file, so that a file which is sent again
+ * (resent by the supplier, retried, reprocessed) does not need to be validated again. The key also contains the
+ * validator version and the options, see key().
+ * There is an in-memory LRU tier and optionally a persistent tier in a directory, bounded by its total size.
+ * A cached report is returned as stored, with the filename and date of the validation which created it; the
+ * ValidationEngine replaces them by those of the current request.
+ */
+public class ValidationResultCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ValidationResultCache.class.getCanonicalName()); // log output
+
+	private static final String SUFFIX = ".report";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final int FORMAT_VERSION = 2;
+
+	private final int maxEntries;
+	private final Path directory;
+	private final long maxDiskBytes;
+	/*** least recently used first */
+	private final LinkedHashMap<String, ValidationReport> memory = new LinkedHashMap<>(16, 0.75f, true);
+	/*** key to file size, least recently used first */
+	private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+	private long diskBytes;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/***
+	 * a cache in memory only
+	 * @param maxEntries number of reports kept in memory
+	 */
+	public ValidationResultCache(int maxEntries) {
+		this(maxEntries, null, 0);
+	}
+
+	/***
+	 * a cache in memory which is backed by a directory, which survives restarts of the application
+	 * @param maxEntries number of reports kept in memory
+	 * @param directory where to store the reports, will be created if it does not exist. Should be used by this cache only
+	 * @param maxDiskBytes upper bound for the summed up size of the stored reports, the least recently used are deleted
+	 */
+	public ValidationResultCache(int maxEntries, Path directory, long maxDiskBytes) {
+		this.maxEntries = maxEntries;
+		this.directory = directory;
+		this.maxDiskBytes = maxDiskBytes;
+		if (directory != null) {
+			try {
+				Files.createDirectories(directory);
+				List<Path> files;
+				try (Stream<Path> list = Files.list(directory)) {
+					files = list.collect(Collectors.toList());
+				}
+				for (Path file : files) {
+					// left behind by a write which was interrupted, e.g. by a crash
+					if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+						Files.deleteIfExists(file);
+					}
+				}
+				files.removeIf(file -> !file.getFileName().toString().endsWith(SUFFIX));
+				files.sort(Comparator.comparing(ValidationResultCache::lastModified));
+				synchronized (disk) {
+					for (Path file : files) {
+						String name = file.getFileName().toString();
+						long size = Files.size(file);
+						disk.put(name.substring(0, name.length() - SUFFIX.length()), size);
+						diskBytes += size;
+					}
+					evictFromDisk();
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/***
+	 * the cache key of a file
+	 * @param sha1Checksum the hash of the file content, see ValidationReport.getSHA1Checksum
+	 * @param notices whether notices are reported
+	 * @param arithmeticCheck whether the arithmetic check is performed
+	 * @return a key which is also usable as filename
+	 */
+	public static String key(String sha1Checksum, boolean notices, boolean arithmeticCheck) {
+		return key(sha1Checksum, notices, arithmeticCheck, false);
+	}
+
+	/***
+	 * the cache key of a file
+	 * @param sha1Checksum the hash of the file content, see ValidationReport.getSHA1Checksum
+	 * @param notices whether notices are reported
+	 * @param arithmeticCheck whether the arithmetic check is performed
+	 * @param timings whether the report contains the timings section
+	 * @return a key which is also usable as filename
+	 */
+	public static String key(String sha1Checksum, boolean notices, boolean arithmeticCheck, boolean timings) {
+		return key(sha1Checksum, notices, arithmeticCheck, timings, EValidationLevel.full, false);
+	}
+
+	/***
+	 * the cache key of a file
+	 * @param sha1Checksum the hash of the file content, see ValidationReport.getSHA1Checksum
+	 * @param notices whether notices are reported
+	 * @param arithmeticCheck whether the arithmetic check is performed
+	 * @param timings whether the report contains the timings section
+	 * @param validationLevel which checks are performed
+	 * @param failFast whether the validation stops at the first stage reporting an error
+	 * @return a key which is also usable as filename
+	 */
+	public static String key(String sha1Checksum, boolean notices, boolean arithmeticCheck, boolean timings,
+							 EValidationLevel validationLevel, boolean failFast) {
+		return key(sha1Checksum, notices, arithmeticCheck, timings, validationLevel, failFast, 0);
+	}
+
+	/***
+	 * the cache key of a file
+	 * @param sha1Checksum the hash of the file content, see ValidationReport.getSHA1Checksum
+	 * @param notices whether notices are reported
+	 * @param arithmeticCheck whether the arithmetic check is performed
+	 * @param timings whether the report contains the timings section
+	 * @param validationLevel which checks are performed
+	 * @param failFast whether the validation stops at the first stage reporting an error
+	 * @param aggregation how many locations aggregated findings list, 0 if findings are not aggregated
+	 * @return a key which is also usable as filename
+	 */
+	public static String key(String sha1Checksum, boolean notices, boolean arithmeticCheck, boolean timings,
+							 EValidationLevel validationLevel, boolean failFast, int aggregation) {
+		String version = XMLValidator.class.getPackage().getImplementationVersion();
+		return sha1Checksum + "-" + (version == null ? "dev" : version.replaceAll("[^A-Za-z0-9.]", "_"))
+			+ "-" + (notices ? "n" : "") + (arithmeticCheck ? "a" : "") + (timings ? "t" : "")
+			+ (failFast ? "f" : "") + (validationLevel == EValidationLevel.full ? "" : "-" + validationLevel)
+			+ (aggregation == 0 ? "" : "-g" + aggregation);
+	}
+
+	/***
+	 * @param key see key()
+	 * @return the stored report or null
+	 */
+	public ValidationReport get(String key) {
+		ValidationReport report;
+		synchronized (memory) {
+			report = memory.get(key);
+		}
+		if (report == null && directory != null) {
+			report = readFromDisk(key);
+			if (report != null) {
+				putInMemory(key, report);
+			}
+		}
+		if (report == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return report;
+	}
+
+	/***
+	 * stores a report
+	 * @param key see key()
+	 * @param report the report
+	 */
+	public void put(String key, ValidationReport report) {
+		putInMemory(key, report);
+		if (directory != null) {
+			writeToDisk(key, report);
+		}
+	}
+
+	/***
+	 * drops all reports, also the stored ones
+	 */
+	public void clear() {
+		synchronized (memory) {
+			memory.clear();
+		}
+		if (directory != null) {
+			synchronized (disk) {
+				for (String key : new ArrayList<>(disk.keySet())) {
+					delete(key);
+				}
+			}
+		}
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/***
+	 * @return the summed up size of the stored reports in bytes
+	 */
+	public long getDiskBytes() {
+		synchronized (disk) {
+			return diskBytes;
+		}
+	}
+
+	private void putInMemory(String key, ValidationReport report) {
+		synchronized (memory) {
+			memory.put(key, report);
+			Iterator<String> it = memory.keySet().iterator();
+			while (memory.size() > maxEntries && it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		}
+	}
+
+	private ValidationReport readFromDisk(String key) {
+		synchronized (disk) {
+			if (disk.get(key) == null) { // also marks it as recently used
+				return null;
+			}
+		}
+		final Path file = directory.resolve(key + SUFFIX);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			ValidationReport report = read(in);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return report;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("dropping unreadable cached report {}: {}", file, e.getMessage());
+			synchronized (disk) {
+				delete(key);
+			}
+			return null;
+		}
+	}
+
+	private void writeToDisk(String key, ValidationReport report) {
+		final Path file = directory.resolve(key + SUFFIX);
+		try {
+			final Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+					write(out, report);
+				}
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException | RuntimeException e) {
+				// not counted in diskBytes, it would never be evicted
+				deleteQuietly(temp);
+				throw e;
+			}
+			final long size = Files.size(file);
+			synchronized (disk) {
+				Long previous = disk.put(key, size);
+				diskBytes += size - (previous == null ? 0 : previous);
+				evictFromDisk();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("could not store report {}: {}", file, e.getMessage());
+		}
+	}
+
+	/***
+	 * has to be called while holding the lock on disk
+	 */
+	private void evictFromDisk() {
+		Iterator<String> it = new ArrayList<>(disk.keySet()).iterator();
+		while (diskBytes > maxDiskBytes && it.hasNext()) {
+			delete(it.next());
+		}
+	}
+
+	/***
+	 * has to be called while holding the lock on disk
+	 */
+	private void delete(String key) {
+		Long size = disk.remove(key);
+		if (size != null) {
+			diskBytes -= size;
+		}
+		try {
+			Files.deleteIfExists(directory.resolve(key + SUFFIX));
+		} catch (IOException e) {
+			LOGGER.warn("could not delete cached report {}: {}", key, e.getMessage());
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOGGER.warn("could not delete {}: {}", file, e.getMessage());
+		}
+	}
+
+	private static FileTime lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		} catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	private static void write(DataOutputStream out, ValidationReport report) throws IOException {
+		out.writeInt(FORMAT_VERSION);
+		writeString(out, report.getFilename());
+		writeString(out, report.getXML());
+		out.writeBoolean(report.isValid());
+		out.writeBoolean(report.isPDF());
+		out.writeBoolean(report.isPDFValid());
+		writeString(out, report.getSHA1Checksum());
+		writeString(out, report.getSignature());
+		writeString(out, report.getFormat());
+		writeString(out, report.getGeneration());
+		writeString(out, report.getProfile());
+		out.writeLong(report.getDurationMillis());
+		out.writeInt(report.getItems().size());
+		for (ValidationResultItem item : report.getItems()) {
+			writeString(out, item.getSeverity().name());
+			out.writeInt(item.getSection());
+			writeString(out, item.getMessage());
+			writeString(out, item.getLocation());
+			writeString(out, item.getCriterion());
+			writeString(out, item.getID());
+			writeString(out, item.getPart() == null ? null : item.getPart().name());
+			writeString(out, item.getStacktrace());
+			out.writeInt(item.getCount());
+			// getLocations() starts with getLocation()
+			List<String> locations = item.getLocations();
+			int first = item.getLocation() == null ? 0 : 1;
+			out.writeInt(locations.size() - first);
+			for (String location : locations.subList(first, locations.size())) {
+				writeString(out, location);
+			}
+			out.writeBoolean(item.isLocationsTruncated());
+		}
+	}
+
+	private static ValidationReport read(DataInputStream in) throws IOException {
+		if (in.readInt() != FORMAT_VERSION) {
+			throw new IOException("unknown format");
+		}
+		String filename = readString(in);
+		String xml = readString(in);
+		boolean valid = in.readBoolean();
+		boolean pdf = in.readBoolean();
+		boolean pdfValid = in.readBoolean();
+		String sha1Checksum = readString(in);
+		String signature = readString(in);
+		String format = readString(in);
+		String generation = readString(in);
+		String profile = readString(in);
+		long durationMillis = in.readLong();
+		int count = in.readInt();
+		List<ValidationResultItem> items = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			ValidationResultItem item = new ValidationResultItem(ESeverity.valueOf(readString(in)), null);
+			item.setSection(in.readInt());
+			item.setMessage(readString(in));
+			item.setLocation(readString(in));
+			item.setCriterion(readString(in));
+			item.setID(readString(in));
+			String part = readString(in);
+			item.setPart(part == null ? null : EPart.valueOf(part));
+			item.setStacktrace(readString(in));
+			int occurrences = in.readInt();
+			int moreLocationCount = in.readInt();
+			List<String> moreLocations = new ArrayList<>(moreLocationCount);
+			for (int j = 0; j < moreLocationCount; j++) {
+				moreLocations.add(readString(in));
+			}
+			item.setAggregation(occurrences, moreLocations, in.readBoolean());
+			items.add(item);
+		}
+		// the timings describe the validation which created the report, they are not stored
+		return new ValidationReport(filename, xml, valid, pdf, pdfValid, sha1Checksum, signature, format, generation,
+			profile, items, durationMillis, Collections.emptyList());
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -1,5 +1,9 @@
 package org.mustangproject.validator;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.mustangproject.XMLTools;
 
 /***
@@ -17,6 +21,9 @@ public class ValidationResultItem {
 
 	private String stacktrace;
 	private boolean hasBeenOutputted;
+	private int count = 1; // occurrences, if repeated findings are aggregated
+	private List<String> moreLocations; // locations of further occurrences, if aggregated
+	private boolean locationsTruncated;
 
 
 	private EPart part;
@@ -77,11 +84,23 @@ public class ValidationResultItem {
 		if (criterion != null) {
 			additionalAttributes += " criterion=\"" + xt.escapeAttributeEntities(criterion) + "\"";
 		}
+		if (count > 1) {
+			additionalAttributes += " count=\"" + count + "\"";
+		}
+		if (locationsTruncated) {
+			additionalAttributes += " truncated=\"true\"";
+		}
+		String locationElements = "";
+		if (moreLocations != null) {
+			for (String moreLocation : moreLocations) {
+				locationElements += "<location>" + xt.escapeElementEntities(moreLocation) + "</location>";
+			}
+		}
 		if (stacktrace != null) {
 			additionalContents += "<stacktrace>" + xt.escapeAttributeEntities(stacktrace) + "</stacktrace>";
 		}
 		hasBeenOutputted = true;
-		return "<" + tagname + additionalAttributes + ">" + xt.escapeElementEntities(message + additionalContents) + "</" + tagname + ">";
+		return "<" + tagname + additionalAttributes + ">" + xt.escapeElementEntities(message + additionalContents) + locationElements + "</" + tagname + ">";
 	}
 
 	public String getXMLOnce() {
@@ -92,6 +111,85 @@ public class ValidationResultItem {
 		}
 	}
 
+	/***
+	 * @return true if the item has been written to a report already
+	 */
+	boolean hasBeenOutputted() {
+		return hasBeenOutputted;
+	}
+
+	/***
+	 * records that the item has been written to a report by other means than getXML()
+	 */
+	void markOutputted() {
+		hasBeenOutputted = true;
+	}
+
+	/***
+	 * counts a repetition of this finding, e.g. the same rule failing on another line
+	 * @param repeated the item of the same rule, severity and section to be counted by this one, may itself count
+	 *                 repetitions
+	 * @param maxLocations how many locations to keep at most, further ones are only counted
+	 */
+	void aggregate(ValidationResultItem repeated, int maxLocations) {
+		count += repeated.count;
+		locationsTruncated |= repeated.locationsTruncated;
+		for (String repeatedLocation : repeated.getLocations()) {
+			if (locationCount() < maxLocations) {
+				if (moreLocations == null) {
+					moreLocations = new ArrayList<>();
+				}
+				moreLocations.add(repeatedLocation);
+			} else {
+				locationsTruncated = true;
+			}
+		}
+	}
+
+	/***
+	 * restores the aggregation of a stored item
+	 * @param count how often the finding occurred
+	 * @param moreLocations the locations of the further occurrences, without getLocation()
+	 * @param locationsTruncated whether the finding occurred at more locations
+	 */
+	void setAggregation(int count, List<String> moreLocations, boolean locationsTruncated) {
+		this.count = count;
+		this.moreLocations = moreLocations.isEmpty() ? null : new ArrayList<>(moreLocations);
+		this.locationsTruncated = locationsTruncated;
+	}
+
+	private int locationCount() {
+		return (location == null ? 0 : 1) + (moreLocations == null ? 0 : moreLocations.size());
+	}
+
+	/***
+	 * @return how often the finding occurred, more than 1 only if repeated findings are aggregated
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/***
+	 * @return the location and, if repeated findings are aggregated, those of the further occurrences
+	 */
+	public List<String> getLocations() {
+		final List<String> locations = new ArrayList<>();
+		if (location != null) {
+			locations.add(location);
+		}
+		if (moreLocations != null) {
+			locations.addAll(moreLocations);
+		}
+		return Collections.unmodifiableList(locations);
+	}
+
+	/***
+	 * @return true if the finding occurred at more locations than getLocations() lists
+	 */
+	public boolean isLocationsTruncated() {
+		return locationsTruncated;
+	}
+
 	public ValidationResultItem setCriterion(String test) {
 		 criterion = test;
 		 return this;
@@ -121,4 +219,12 @@ public class ValidationResultItem {
 		return location;
 	}
 
+	public String getCriterion() {
+		return criterion;
+	}
+
+	public String getStacktrace() {
+		return stacktrace;
+	}
+
 }
@@ -3,6 +3,10 @@ package org.mustangproject.validator;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.Source;
@@ -25,6 +29,12 @@ public abstract class Validator {
 
 	protected boolean autoload = true; // load already when filename is set
 
+	protected Executor executor; // if set, independent validation stages run concurrently on it
+
+	protected EValidationLevel validationLevel = EValidationLevel.full; // which checks are performed
+
+	protected boolean failFast; // skip the remaining stages once a stage reported an error
+
 	protected Validator(ValidationContext ctx) {
 		this.context = ctx;
 	}
@@ -61,6 +71,20 @@ public abstract class Validator {
 	 * @throws IrrecoverableValidationError when any fatal errors arise, e.g. when the source file can not be found
 	 */
 	protected void validateSchema(byte[] xmlRawData, String schemaPath, int section, EPart part) throws IrrecoverableValidationError {
+		validateSchema(context, xmlRawData, schemaPath, section, part);
+	}
+
+	/***
+	 * validates a schema, reporting to the given context
+	 * @param context where to add the results, e.g. the context of a stage running concurrently
+	 * @param xmlRawData the XML to be validated
+	 * @param schemaPath the filename of the schema file
+	 * @param section the error message type code
+	 * @param part whether the error message occurs in the pdf or xml part
+	 * @throws IrrecoverableValidationError when any fatal errors arise, e.g. when the source file can not be found
+	 */
+	protected void validateSchema(ValidationContext context, byte[] xmlRawData, String schemaPath, int section, EPart part) throws IrrecoverableValidationError {
+		final long start = System.nanoTime();
 		URL schemaFile = Thread.currentThread().getContextClassLoader().getResource("schema/" + schemaPath);
 		Source xmlData = new StreamSource(new ByteArrayInputStream(xmlRawData));
 		try {
@@ -71,6 +95,9 @@ public abstract class Validator {
 			context.addResultItem(new ValidationResultItem(ESeverity.error, "schema validation fails:" + e).setSection(section).setPart(part));
 		} catch (IOException e) {
 			LOGGER.error(e.getMessage(), e);
+		} finally {
+			// the timings are always collected by the context of the validator, not by the one of a stage
+			this.context.addTiming(EStage.xsd, schemaPath, start);
 		}
 
 	}
@@ -84,5 +111,76 @@ public abstract class Validator {
 		this.autoload = autoload;
 	}
 
+	/***
+	 * opt in to run independent stages of the validation concurrently. The results are merged in the same order
+	 * as in a sequential run, so the report does not depend on the executor.
+	 * @param executor the executor to run the stages on, null (the default) runs everything on the calling thread
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/***
+	 * @param validationLevel which checks to perform, the default is full
+	 */
+	public void setValidationLevel(EValidationLevel validationLevel) {
+		this.validationLevel = validationLevel;
+	}
+
+	/***
+	 * skip the remaining stages of the validation as soon as a stage reported an error, e.g. the schematron passes
+	 * if the schema validation failed
+	 */
+	public void enableFailFast() {
+		failFast = true;
+	}
+
+	/***
+	 * @return true if fail-fast is enabled and an error has been reported, i.e. the next stage is to be skipped
+	 */
+	protected boolean hasFailedFast() {
+		return failFast && !context.isValid();
+	}
+
+	/***
+	 * starts a stage on the executor
+	 * @param stage the work to be done
+	 * @param <T> the result type of the stage
+	 * @return the task, to be passed to await()
+	 */
+	protected <T> FutureTask<T> fork(Callable<T> stage) {
+		FutureTask<T> task = new FutureTask<>(stage);
+		executor.execute(task);
+		return task;
+	}
+
+	/***
+	 * waits for a stage started with fork(). If the executor did not start it yet it is run on the calling thread,
+	 * so that waiting can not dead-lock even if the caller itself is running on a saturated executor.
+	 * @param task the stage
+	 * @param <T> the result type of the stage
+	 * @return the result of the stage
+	 * @throws IrrecoverableValidationError if the stage threw one or got interrupted
+	 */
+	protected static <T> T await(FutureTask<T> task) throws IrrecoverableValidationError {
+		task.run(); // no-op if already started
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IrrecoverableValidationError("Interrupted: " + e.getMessage());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IrrecoverableValidationError) {
+				throw (IrrecoverableValidationError) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IrrecoverableValidationError(cause.getMessage());
+		}
+	}
+
 
 }
@@ -0,0 +1,204 @@
+package org.mustangproject.validator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.features.FeatureExtractorConfig;
+import org.verapdf.features.FeatureFactory;
+import org.verapdf.gf.foundry.VeraGreenfieldFoundryProvider;
+import org.verapdf.metadata.fixer.FixerFactory;
+import org.verapdf.metadata.fixer.MetadataFixerConfig;
+import org.verapdf.pdfa.validation.validators.ValidatorConfig;
+import org.verapdf.pdfa.validation.validators.ValidatorFactory;
+import org.verapdf.processor.ItemProcessor;
+import org.verapdf.processor.ProcessorConfig;
+import org.verapdf.processor.ProcessorFactory;
+import org.verapdf.processor.ProcessorResult;
+import org.verapdf.processor.TaskType;
+import org.verapdf.processor.plugins.PluginsCollectionConfig;
+import org.verapdf.processor.reports.ItemDetails;
+
+/***
+ * a pool of ready to use veraPDF processors. The veraPDF foundry is initialised and the processor configuration is
+ * built only once, the processors are reused across documents. A processor is recycled (closed and replaced by a
+ * fresh one on demand) after a configurable number of documents or as soon as it failed on one.
+ */
+public final class VeraPDFProcessorPool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(VeraPDFProcessorPool.class.getCanonicalName()); // log output
+
+	/***
+	 * number of documents after which a processor is recycled by default
+	 */
+	public static final int DEFAULT_MAX_USES = 250;
+
+	private static volatile VeraPDFProcessorPool instance;
+
+	private final ProcessorConfig processorConfig;
+	private final LinkedBlockingQueue<PooledProcessor> idle = new LinkedBlockingQueue<>();
+	private final Semaphore available;
+	private final int size;
+	private final int maxUses;
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong recycled = new AtomicLong();
+	/*** set by close(), processors returned afterwards are recycled instead of kept idle */
+	private volatile boolean closed;
+
+	private static class PooledProcessor {
+		private final ItemProcessor processor;
+		private int uses;
+
+		PooledProcessor(ItemProcessor processor) {
+			this.processor = processor;
+		}
+	}
+
+	/***
+	 * constructor, usually the shared instance from getInstance() should be used
+	 * @param size maximum number of processors, i.e. of concurrent PDF/A validations. Further ones wait for a processor
+	 * @param maxUses number of documents after which a processor is replaced by a fresh one
+	 */
+	public VeraPDFProcessorPool(int size, int maxUses) {
+		if (size < 1 || maxUses < 1) {
+			throw new IllegalArgumentException("size and maxUses have to be positive");
+		}
+		this.size = size;
+		this.maxUses = maxUses;
+		this.available = new Semaphore(size, true);
+		VeraGreenfieldFoundryProvider.initialise(); // idempotent, but only needed once per pool
+		// Default validator config
+		final ValidatorConfig validatorConfig = ValidatorFactory.defaultConfig();
+		// Default features config
+		final FeatureExtractorConfig featureConfig = FeatureFactory.defaultConfig();
+		// Default plugins config
+		final PluginsCollectionConfig pluginsConfig = PluginsCollectionConfig.defaultConfig();
+		// Default fixer config
+		final MetadataFixerConfig fixerConfig = FixerFactory.defaultConfig();
+		// Tasks configuring
+		final EnumSet<TaskType> tasks = EnumSet.noneOf(TaskType.class);
+		tasks.add(TaskType.VALIDATE);
+		// tasks.add(TaskType.EXTRACT_FEATURES);
+		// tasks.add(TaskType.FIX_METADATA);
+		processorConfig = ProcessorFactory.fromValues(validatorConfig, featureConfig, pluginsConfig, fixerConfig, tasks);
+	}
+
+	/***
+	 * the pool shared by all PDFValidators of this JVM, with one processor per available core
+	 * @return the process-wide instance
+	 */
+	public static VeraPDFProcessorPool getInstance() {
+		VeraPDFProcessorPool pool = instance;
+		if (pool == null) {
+			synchronized (VeraPDFProcessorPool.class) {
+				pool = instance;
+				if (pool == null) {
+					pool = new VeraPDFProcessorPool(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_USES);
+					instance = pool;
+				}
+			}
+		}
+		return pool;
+	}
+
+	/***
+	 * replaces the shared instance, e.g. to change its size. The previous instance is closed, running validations are
+	 * not affected: their processors are closed when they are returned to it
+	 * @param pool the new pool
+	 */
+	public static void setInstance(VeraPDFProcessorPool pool) {
+		VeraPDFProcessorPool previous;
+		synchronized (VeraPDFProcessorPool.class) {
+			previous = instance;
+			instance = pool;
+		}
+		if (previous != null && previous != pool) {
+			previous.close();
+		}
+	}
+
+	/***
+	 * PDF/A validates a document with a processor from the pool, waiting for one if all are busy
+	 * @param itemDetails name (and size) of the document
+	 * @param inputStream the PDF
+	 * @return the veraPDF result
+	 * @throws InterruptedException if interrupted while waiting for a processor
+	 */
+	public ProcessorResult process(ItemDetails itemDetails, InputStream inputStream) throws InterruptedException {
+		available.acquire();
+		PooledProcessor pooled = null;
+		boolean healthy = false;
+		try {
+			pooled = idle.poll();
+			if (pooled == null) {
+				pooled = new PooledProcessor(ProcessorFactory.createProcessor(processorConfig));
+				created.incrementAndGet();
+			}
+			final ProcessorResult result = pooled.processor.process(itemDetails, inputStream);
+			healthy = result != null && !result.getValidationResults().isEmpty();
+			return result;
+		} finally {
+			if (pooled != null) {
+				pooled.uses++;
+				if (healthy && pooled.uses < maxUses && !closed) {
+					idle.offer(pooled);
+					// close() may have drained the idle processors in the meantime
+					if (closed && idle.remove(pooled)) {
+						recycle(pooled);
+					}
+				} else {
+					recycle(pooled);
+				}
+			}
+			available.release();
+		}
+	}
+
+	/***
+	 * closes the idle processors, and those in use once they are returned. Further calls of process() still work but
+	 * create a new processor for each document
+	 */
+	public void close() {
+		closed = true;
+		PooledProcessor pooled;
+		while ((pooled = idle.poll()) != null) {
+			recycle(pooled);
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxUses() {
+		return maxUses;
+	}
+
+	/***
+	 * @return number of processors created so far
+	 */
+	public long getCreatedCount() {
+		return created.get();
+	}
+
+	/***
+	 * @return number of processors closed so far, because they reached maxUses, failed or the pool got closed
+	 */
+	public long getRecycledCount() {
+		return recycled.get();
+	}
+
+	private void recycle(PooledProcessor pooled) {
+		recycled.incrementAndGet();
+		try {
+			pooled.processor.close();
+		} catch (IOException | RuntimeException e) {
+			LOGGER.debug("could not close veraPDF processor", e);
+		}
+	}
+
+}
@@ -10,19 +10,23 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
 
 import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.mustangproject.CalculatedInvoice;
+import org.mustangproject.XMLSniffer;
 import org.mustangproject.XMLTools;
 import org.mustangproject.ZUGFeRD.IZUGFeRDExportableItem;
 import org.mustangproject.ZUGFeRD.LineCalculator;
@@ -30,15 +34,9 @@ import org.mustangproject.ZUGFeRD.ZUGFeRDInvoiceImporter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
-import com.helger.schematron.ISchematronResource;
-import com.helger.schematron.svrl.SVRLMarshaller;
-import com.helger.schematron.svrl.jaxb.SchematronOutputType;
-import com.helger.schematron.xslt.SchematronResourceXSLT;
 
 /****
  * the Validator for the XML part of a Factur-X file, or of a CII or UBL standalone XML file
@@ -61,6 +59,7 @@ public class XMLValidator extends Validator {
 	boolean disableNotices;
 	boolean disableArithmeticCheck;
 	boolean disableXRechnungXSDValidation;
+	SchematronProfiler schematronProfiler;
 
 	public XMLValidator(ValidationContext ctx) {
 		super(ctx);
@@ -129,6 +128,14 @@ public class XMLValidator extends Validator {
 		disableArithmeticCheck = true;
 	}
 
+	/***
+	 * record the patterns and rules of the schematron passes
+	 * @param schematronProfiler where to add the numbers, null to not profile (the default)
+	 */
+	public void setSchematronProfiler(SchematronProfiler schematronProfiler) {
+		this.schematronProfiler = schematronProfiler;
+	}
+
 
 	/***
 	 * perform validation
@@ -167,34 +174,23 @@ public class XMLValidator extends Validator {
 				 *
 				 */
 
+				final long parseStart = System.nanoTime();
 				final DocumentBuilder db = XMLTools.getDocumentBuilder(true);
 				final InputSource is = new InputSource(new StringReader(zfXML));
 				final Document doc = db.parse(is);
-
-				final Element root = doc.getDocumentElement();
-
-				final NodeList ndList;
-
-				// rootNode = document.getDocumentElement();
-				// ApplicableSupplyChainTradeSettlement
-
-				// Create XPathFactory object
-				final XPathFactory xpathFactory = XPathFactory.newInstance();
-
-				// Create XPath object
-				final XPath xpath = xpathFactory.newXPath();
-				final XPathExpression expr = xpath.compile(
-					"(//*[local-name()=\"GuidelineSpecifiedDocumentContextParameter\"]/*[local-name()=\"ID\"])/text()|//*[local-name()=\"CustomizationID\"]/text()");
-				// evaluate expression result on XML document
-				ndList = (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
-
-				for (int bookingIndex = 0; bookingIndex < ndList.getLength(); bookingIndex++) {
-					final Node booking = ndList.item(bookingIndex);
-					// if there is a attribute in the tag number:value
+				// the document is parsed only once, the schema validation gets the bytes encoded once and all
+				// schematron passes share one immutable tree built from the parsed document
+				final byte[] xmlBytes = zfXML.getBytes(StandardCharsets.UTF_8);
+				final Source schematronSource = validationLevel.includes(EValidationLevel.schematron)
+					? SchematronCache.getInstance().buildTree(new DOMSource(doc)) : null;
+				context.addTiming(EStage.parse, null, parseStart);
+
+				// root, guideline and countries are read from the start of the stream instead of searching the tree,
+				// of several guideline IDs the first one is used
+				final XMLSniffer sniffed = XMLSniffer.sniff(xmlBytes);
+				if (sniffed.getGuidelineID() != null) {
 					// urn:ferd:CrossIndustryDocument:invoice:1p0:extended
-					// setForeignReference(booking.getTextContent());
-
-					context.setProfile(booking.getNodeValue());
+					context.setProfile(sniffed.getGuidelineID());
 				}
 				boolean isOrderX = false;
 				boolean isMiniumum = false;
@@ -214,23 +210,19 @@ public class XMLValidator extends Validator {
 
 				// urn:cen.eu:en16931:2017
 				// urn:cen.eu:en16931:2017:compliant:factur-x.eu:1p0:basic
-				String rootLocalName = root.getLocalName();
+				String rootLocalName = sniffed.getRootElement();
 				String contextProfile = context.getProfile();
 				if ("SCRDMCCBDACIOMessageStructure".equalsIgnoreCase(rootLocalName)) {
 					context.setGeneration("1");
 					isOrderX = true;
 					isBasic = contextProfile.contains("basic");
 					isEN16931 = contextProfile.contains("comfort");
-					validateSchema(zfXML.getBytes(StandardCharsets.UTF_8), "OX_10/comfort/SCRDMCCBDACIOMessageStructure_100pD20B.xsd", 99, EPart.ox);
+					validateSchema(xmlBytes, "OX_10/comfort/SCRDMCCBDACIOMessageStructure_100pD20B.xsd", 99, EPart.ox);
 					xsltFilename = XMLValidator.OX10_COMFORT_XSLT;
 
-				} else if (root.getLocalName().equalsIgnoreCase("CrossIndustryInvoice")) { // ZUGFeRD 2.0 or Factur-X
+				} else if (rootLocalName.equalsIgnoreCase("CrossIndustryInvoice")) { // ZUGFeRD 2.0 or Factur-X
 					context.setGeneration("2");
-					final String sellerCountry = getXPathString(doc,
-						"//*[local-name() = 'CrossIndustryInvoice']//*[local-name() = 'SupplyChainTradeTransaction']//*[local-name() = 'ApplicableHeaderTradeAgreement']//*[local-name() = 'SellerTradeParty']//*[local-name() = 'PostalTradeAddress']/*[local-name() = 'CountryID']/text()");
-					final String buyerCountry = getXPathString(doc,
-						"//*[local-name() = 'CrossIndustryInvoice']//*[local-name() = 'SupplyChainTradeTransaction']//*[local-name() = 'ApplicableHeaderTradeAgreement']//*[local-name() = 'BuyerTradeParty']//*[local-name() = 'PostalTradeAddress']/*[local-name() = 'CountryID']/text()");
-					runFrenchCiiSchematron = "FR".equalsIgnoreCase(sellerCountry) && "FR".equalsIgnoreCase(buyerCountry);
+					runFrenchCiiSchematron = "FR".equalsIgnoreCase(sniffed.getSellerCountry()) && "FR".equalsIgnoreCase(sniffed.getBuyerCountry());
 
 					isMiniumum = contextProfile.contains("minimum");
 					isBasic = contextProfile.contains("basic");
@@ -253,19 +245,19 @@ public class XMLValidator extends Validator {
 					}
 					if (isMiniumum) {
 						LOGGER.debug("is Minimum");
-						validateSchema(zfXML.getBytes(StandardCharsets.UTF_8), currentZFVersionDir + "/MINIMUM/FACTUR-X_MINIMUM.xsd", 18, EPart.fx);
+						validateSchema(xmlBytes, currentZFVersionDir + "/MINIMUM/FACTUR-X_MINIMUM.xsd", 18, EPart.fx);
 						xsltFilename = "/xslt/" + currentZFVersionDir + "/FACTUR-X_MINIMUM.xslt";
 					} else if (isBasicWithoutLines) {
 						LOGGER.debug("is Basic/WL");
-						validateSchema(zfXML.getBytes(StandardCharsets.UTF_8), currentZFVersionDir + "/BASIC-WL/FACTUR-X_BASICWL.xsd", 18, EPart.fx);
+						validateSchema(xmlBytes, currentZFVersionDir + "/BASIC-WL/FACTUR-X_BASICWL.xsd", 18, EPart.fx);
 						xsltFilename = "/xslt/" + currentZFVersionDir + "/FACTUR-X_BASIC-WL.xslt";
 					} else if (isBasic) {
 						LOGGER.debug("is Basic");
-						validateSchema(zfXML.getBytes(StandardCharsets.UTF_8), currentZFVersionDir + "/BASIC/FACTUR-X_BASIC.xsd", 18, EPart.fx);
+						validateSchema(xmlBytes, currentZFVersionDir + "/BASIC/FACTUR-X_BASIC.xsd", 18, EPart.fx);
 						xsltFilename = "/xslt/" + currentZFVersionDir + "/FACTUR-X_BASIC.xslt";
 					} else if (isEN16931) {
 						LOGGER.debug("is EN16931");
-						validateSchema(zfXML.getBytes(StandardCharsets.UTF_8), currentZFVersionDir + "/EN16931/FACTUR-X_EN16931.xsd", 18, EPart.fx);
+						validateSchema(xmlBytes, currentZFVersionDir + "/EN16931/FACTUR-X_EN16931.xsd", 18, EPart.fx);
 						xsltFilename = "/xslt/" + currentZFVersionDir + "/FACTUR-X_EN16931.xslt";
 					} else if (isXRechnung) {
 						LOGGER.debug("is XRechnung");
@@ -274,12 +266,12 @@ public class XMLValidator extends Validator {
 							XRechnung is a EN16931 subset so the validation vis a vis FACTUR-X_EN16931.xslt=schematron also has to pass
 						*/
 						if (!disableXRechnungXSDValidation) {
-							validateSchema(zfXML.getBytes(StandardCharsets.UTF_8), currentZFVersionDir + "/EN16931/FACTUR-X_EN16931.xsd", 18, EPart.fx);
+							validateSchema(xmlBytes, currentZFVersionDir + "/EN16931/FACTUR-X_EN16931.xsd", 18, EPart.fx);
 						}
 						XrechnungSeverity = ESeverity.error;
 					} else if (isExtended) {
 						LOGGER.debug("is EXTENDED");
-						validateSchema(zfXML.getBytes(StandardCharsets.UTF_8), currentZFVersionDir + "/EXTENDED/FACTUR-X_EXTENDED.xsd", 18, EPart.fx);
+						validateSchema(xmlBytes, currentZFVersionDir + "/EXTENDED/FACTUR-X_EXTENDED.xsd", 18, EPart.fx);
 						xsltFilename = "/xslt/" + currentZFVersionDir + "/FACTUR-X_EXTENDED.xslt";
 					}
 
@@ -295,13 +287,15 @@ public class XMLValidator extends Validator {
 					isXRechnung = contextProfile.contains("xrechnung");
 					// UBL
 					LOGGER.debug("UBL");
-					validateSchema(zfXML.getBytes(StandardCharsets.UTF_8), "UBL_21/maindoc/UBL-" + rootLocalName + "-2.1.xsd", 18, EPart.fx);
+					validateSchema(xmlBytes, "UBL_21/maindoc/UBL-" + rootLocalName + "-2.1.xsd", 18, EPart.fx);
 					xsltFilename = XMLValidator.EN16931_UBL_SCHEMATRON;
 
 					mainSchematronSectionErrorTypeCode = 24;
 
 					if (isXRechnung) {
-						validateSchematron(zfXML, xsltFilename, 24, ESeverity.error);
+						if (validationLevel.includes(EValidationLevel.full) && !hasFailedFast()) {
+							validateSchematron(schematronSource, xsltFilename, 24, ESeverity.error);
+						}
 						/*
 						the validation against the XRechnung Schematron will happen below but a
 						XRechnung is a EN16931 subset so the validation vis a vis FACTUR-X_EN16931.xslt=schematron also has to pass
@@ -331,7 +325,7 @@ public class XMLValidator extends Validator {
 					if (validZF1Profiles.stream().noneMatch(profile -> matchesURI(contextProfile, profile))) {
 						addUnsupportedProfileResultItem();
 					}
-					validateSchema(zfXML.getBytes(StandardCharsets.UTF_8), "ZF_10/ZUGFeRD1p0.xsd", 18, EPart.fx);
+					validateSchema(xmlBytes, "ZF_10/ZUGFeRD1p0.xsd", 18, EPart.fx);
 
 					xsltFilename = XMLValidator.ZUGEFERD_1_XSLT;
 				} else { // unknown document root
@@ -385,32 +379,39 @@ public class XMLValidator extends Validator {
 					}
 				}
 
-				if (xsltFilename != null) {
+				// the schematron passes are independent of each other, they are collected and run in one go
+				final List<SchematronPass> passes = new ArrayList<>();
+				final boolean runSchematron = validationLevel.includes(EValidationLevel.schematron) && !hasFailedFast();
+				// the secondary passes are only part of a full validation
+				final boolean runSecondary = runSchematron && validationLevel.includes(EValidationLevel.full);
+				if (xsltFilename != null && runSchematron) {
 					// main schematron validation
-					validateSchematron(zfXML, xsltFilename, mainSchematronSectionErrorTypeCode, ESeverity.error);
+					passes.add(new SchematronPass(xsltFilename, mainSchematronSectionErrorTypeCode, ESeverity.error));
 
-					if (runFrenchCiiSchematron) {
+					if (runFrenchCiiSchematron && runSecondary) {
 						String xsltFRFilename = "/xslt/" + currentXPZ12VersionDir + "/20260216_BR-FR-Flux2-Schematron-CII_V1.3.0.xsl";
-						validateSchematron(zfXML, xsltFRFilename, mainSchematronSectionErrorTypeCode, ESeverity.error);
+						passes.add(new SchematronPass(xsltFRFilename, mainSchematronSectionErrorTypeCode, ESeverity.error));
 					}
 
 				}
 
 				if ("CII".equals(context.getFormat()) && ("2".equals(context.getGeneration()))) {
 
-					if (isXRechnung) {
+					if (isXRechnung && runSecondary) {
 						//additionally validate against CEN, the CEN rules are part of the ZF Schematron anyway
-						validateSchematron(zfXML, "/xslt/en16931schematron/EN16931-CII-validation.xslt", 24, ESeverity.error);
+						passes.add(new SchematronPass("/xslt/en16931schematron/EN16931-CII-validation.xslt", 24, ESeverity.error));
 					}
-					if (isXRechnung || isBasic || isEN16931) {
+					// the XRechnung schematron is the main one of a XRechnung
+					if (isXRechnung && runSchematron || (isBasic || isEN16931) && runSecondary) {
 						//potentially (basic or EN) or definitely validate against XR
 						if (!disableNotices || XrechnungSeverity != ESeverity.notice) {
-							validateXR(zfXML, XrechnungSeverity);
+							passes.add(new SchematronPass(getXRStylesheet(zfXML), 27, XrechnungSeverity));
 						}
 					}
 				}
-				if (!disableArithmeticCheck) {
-					checkArithmetics(context);
+				validateSchematron(schematronSource, passes);
+				if (!disableArithmeticCheck && validationLevel.includes(EValidationLevel.full) && !hasFailedFast()) {
+					checkArithmetics(context, doc, xmlBytes);
 				}
 
 
@@ -432,6 +433,16 @@ public class XMLValidator extends Validator {
 		context.addCustomXML(getInfoXml(endTime, startXMLTime));
 	}
 
+	/***
+	 * schema validations are part of all validation levels from xsd on
+	 */
+	@Override
+	protected void validateSchema(byte[] xmlRawData, String schemaPath, int section, EPart part) throws IrrecoverableValidationError {
+		if (validationLevel.includes(EValidationLevel.xsd)) {
+			super.validateSchema(xmlRawData, schemaPath, section, part);
+		}
+	}
+
 	private void addUnsupportedProfileResultItem() throws IrrecoverableValidationError {
 		context.addResultItem(new ValidationResultItem(ESeverity.error, "Unsupported profile type " + context.getProfile())
 			.setSection(25).setPart(EPart.fx));
@@ -455,10 +466,11 @@ public class XMLValidator extends Validator {
 		);
 	}
 
-	private void checkArithmetics(ValidationContext context) {
+	private void checkArithmetics(ValidationContext context, Document doc, byte[] xmlBytes) {
+		final long start = System.nanoTime();
 		ZUGFeRDInvoiceImporter zi = new ZUGFeRDInvoiceImporter();
 		try {
-			zi.fromXML(zfXML);
+			zi.fromDocument(doc, xmlBytes);
 			CalculatedInvoice ci = new CalculatedInvoice();
 			zi.extractInto(ci);
 
@@ -472,6 +484,8 @@ public class XMLValidator extends Validator {
 			}
 		} catch (ParseException | XPathExpressionException e) {
 			LOGGER.error(e.getMessage(), e);
+		} finally {
+			context.addTiming(EStage.arithmetic, null, start);
 		}
 	}
 
@@ -546,36 +560,109 @@ public class XMLValidator extends Validator {
 		}
 	}
 
-	private String getXPathString(Document doc, String expression) throws IrrecoverableValidationError {
-		try {
-			XPath xpath = XPathFactory.newInstance().newXPath();
-			String value = (String) xpath.compile(expression).evaluate(doc, XPathConstants.STRING);
-			return value == null ? "" : value.trim();
-		} catch (XPathExpressionException e) {
-			throw new IrrecoverableValidationError(e.getMessage());
-		}
-	}
-
+	/***
+	 * validate against the XRechnung schematron matching the version mentioned in the xml
+	 * @param xml the xml to be checked
+	 * @param errorImpact how serious a error should be treated - may only be notice
+	 * @throws IrrecoverableValidationError if anything happened that prevents further checks
+	 */
 	public void validateXR(String xml, ESeverity errorImpact) throws IrrecoverableValidationError {
+		validateSchematron(new StreamSource(new StringReader(xml)), getXRStylesheet(xml), 27, errorImpact);
+	}
 
+	/***
+	 * the XRechnung schematron matching the version mentioned in the xml
+	 * @param xml the xml to be checked
+	 * @return the filename of the intermediate XSLT file
+	 */
+	private static String getXRStylesheet(String xml) {
 		//Guideline ID=urn:cen.eu:en16931:2017#compliant#urn:xoev-de:kosit:standard:xrechnung_1.2  or
 		if (xml.contains(":xrechnung_1.")) {
-			validateSchematron(xml, "/xslt/XR_12/XRechnung-CII-validation.xslt", 27, errorImpact);
+			return "/xslt/XR_12/XRechnung-CII-validation.xslt";
 		} else if (xml.contains(":xrechnung_2.0")) {
 			// urn:cen.eu:en16931:2017#compliant#urn:xoev-dede:kosit:standard:xrechnung_2.0#conformant#urn:xoev-de:kosit:extension:xrechnung_2.0
-			validateSchematron(xml, "/xslt/XR_20/XRechnung-CII-validation.xslt", 27, errorImpact);
+			return "/xslt/XR_20/XRechnung-CII-validation.xslt";
 		} else if (xml.contains(":xrechnung_2.1")) { // This is the default check which is also run on en16931 files to generate notices.
-			validateSchematron(xml, "/xslt/XR_21/XRechnung-CII-validation.xslt", 27, errorImpact);
+			return "/xslt/XR_21/XRechnung-CII-validation.xslt";
 		} else if (xml.contains(":xrechnung_2.2")) { // This is the default check which is also run on en16931 files to generate notices.
-			validateSchematron(xml, "/xslt/XR_22/XRechnung-CII-validation.xslt", 27, errorImpact);
+			return "/xslt/XR_22/XRechnung-CII-validation.xslt";
 		} else if (xml.contains(":xrechnung_2.3")) { // This is the default check which is also run on en16931 files to generate notices.
-			validateSchematron(xml, "/xslt/XR_23/XRechnung-CII-validation.xslt", 27, errorImpact);
+			return "/xslt/XR_23/XRechnung-CII-validation.xslt";
 		} else { // This is the default check which is also run on en16931 files to generate notices.
-			validateSchematron(xml, "/xslt/XR_30/XRechnung-CII-validation.xslt", 27, errorImpact);
+			return "/xslt/XR_30/XRechnung-CII-validation.xslt";
 		}
+	}
 
+	/***
+	 * a schematron stylesheet to be run as part of the validation
+	 */
+	private static class SchematronPass {
+		private final String xsltFilename;
+		private final int section;
+		private final ESeverity defaultSeverity;
+
+		SchematronPass(String xsltFilename, int section, ESeverity defaultSeverity) {
+			this.xsltFilename = xsltFilename;
+			this.section = section;
+			this.defaultSeverity = defaultSeverity;
+		}
 	}
 
+	/***
+	 * runs the schematron passes, concurrently if an executor has been set. The first pass runs on the calling thread,
+	 * each pass reports into a context of its own and these are merged in the order of the passes afterwards,
+	 * i.e. the result is exactly that of a sequential run
+	 * @param source the xml to be checked, has to be usable for concurrent transformations, see SchematronCache.buildTree
+	 * @param passes the stylesheets to be run, in order
+	 * @throws IrrecoverableValidationError if anything happened that prevents further checks
+	 */
+	private void validateSchematron(Source source, List<SchematronPass> passes) throws IrrecoverableValidationError {
+		if (executor == null || passes.size() < 2) {
+			for (SchematronPass pass : passes) {
+				validateSchematron(source, pass.xsltFilename, pass.section, pass.defaultSeverity);
+			}
+			return;
+		}
+		final List<FutureTask<Void>> tasks = new ArrayList<>();
+		final List<ValidationContext> stages = new ArrayList<>();
+		final List<SVRLCollector> collectors = new ArrayList<>();
+		for (SchematronPass pass : passes) {
+			final ValidationContext stage = new ValidationContext(null);
+			stage.setAggregation(context.getAggregation());
+			final SVRLCollector collector = newSVRLCollector(stage, pass.xsltFilename, pass.section, pass.defaultSeverity);
+			stages.add(stage);
+			collectors.add(collector);
+			final Callable<Void> run = () -> {
+				final long start = System.nanoTime();
+				try {
+					runSchematron(stage, collector, source, pass.xsltFilename);
+				} finally {
+					context.addTiming(EStage.schematron, pass.xsltFilename, start);
+				}
+				return null;
+			};
+			// the first one is not forked but run by await() on this thread
+			tasks.add(tasks.isEmpty() ? new FutureTask<>(run) : fork(run));
+		}
+		int passIndex = 0;
+		try {
+			for (; passIndex < passes.size(); passIndex++) {
+				try {
+					await(tasks.get(passIndex));
+				} finally {
+					// like in a sequential run, the asserts reported until a pass failed are kept
+					context.addResultItems(stages.get(passIndex));
+					failedRules += collectors.get(passIndex).getFailedAssertCount();
+				}
+				firedRules = collectors.get(passIndex).getFiredRuleCount();
+			}
+		} finally {
+			// a sequential run would not have started the passes after a failed one
+			for (passIndex++; passIndex < tasks.size(); passIndex++) {
+				tasks.get(passIndex).cancel(true);
+			}
+		}
+	}
 
 	/***
 	 * validate using a xslt file generated from a schematron in the build preparation of this software
@@ -586,125 +673,109 @@ public class XMLValidator extends Validator {
 	 * @throws IrrecoverableValidationError if anything happened that prevents further checks
 	 */
 	public void validateSchematron(String xml, String xsltFilename, int section, ESeverity defaultSeverity) throws IrrecoverableValidationError {
-		ISchematronResource aResSCH = null;
-		aResSCH = SchematronResourceXSLT.fromClassPath(xsltFilename);
-
-		if (aResSCH != null) {
-			if (!aResSCH.isValidSchematron()) {
-				throw new IllegalArgumentException(xsltFilename + " is invalid Schematron!");
-			}
-
-			final SchematronOutputType sout;
-			try {
-				sout = aResSCH
-					.applySchematronValidationToSVRL(new StreamSource(new StringReader(xml)));
-			} catch (final Exception e) {
-				throw new IrrecoverableValidationError(e.getMessage());
-			}
-			// SVRLHelper.getAllFailedAssertions (sout);
-			Document SVRLReport = new SVRLMarshaller().getAsDocument(sout);
-			XPath xPath = XPathFactory.newInstance().newXPath();
-			String expression = "//*[local-name() = 'failed-assert']";
-			NodeList failedAsserts = null;
-			try {
-				failedAsserts = (NodeList) xPath.compile(expression).evaluate(SVRLReport, XPathConstants.NODESET);
-
-				String thisFailText = "";
-				String thisFailID = "";
-				String thisFailIDStr = "";
-				String thisFailTest = "";
-				String thisFailLocation = "";
-				if (failedAsserts.getLength() > 0) {
-
-					for (int nodeIndex = 0; nodeIndex < failedAsserts.getLength(); nodeIndex++) {
-						//nodes.item(i).getTextContent())) {
-						Node currentFailNode = failedAsserts.item(nodeIndex);
-						if (currentFailNode.getAttributes().getNamedItem("id") != null) {
-							thisFailID = currentFailNode.getAttributes().getNamedItem("id").getNodeValue();
-							thisFailIDStr = " [ID " + thisFailID + "]";
-						}
-						if (currentFailNode.getAttributes().getNamedItem("test") != null) {
-							thisFailTest = currentFailNode.getAttributes().getNamedItem("test").getNodeValue();
-						}
-						if (currentFailNode.getAttributes().getNamedItem("location") != null) {
-							thisFailLocation = currentFailNode.getAttributes().getNamedItem("location").getNodeValue();
-						}
-
-						ESeverity severity;
-						Node failNode = currentFailNode.getAttributes().getNamedItem("flag");
-						String failVal = failNode == null ? null : failNode.getNodeValue();
-						if (defaultSeverity == ESeverity.notice) {
-							severity = defaultSeverity;
-						} else if ("warning".equals(failVal)) {
-							// the XR issues warnings with flag=warning
-							severity = ESeverity.warning;
-						} else if ("information".equals(failVal)) {
-							severity = ESeverity.notice;
-						} else {
-							severity = ESeverity.error;
-						}
-
-						NodeList failChilds = currentFailNode.getChildNodes();
-						for (int failChildIndex = 0; failChildIndex < failChilds.getLength(); failChildIndex++) {
-							if (failChilds.item(failChildIndex).getLocalName() != null) {
-
-								if (failChilds.item(failChildIndex).getLocalName().equals("text")) {
-									//	if (itemChilds.item(failChildIndex).getAttributes().getNamedItem("schemeID") != null) {
-									thisFailText = failChilds.item(failChildIndex).getTextContent();
+		validateSchematron(new StreamSource(new StringReader(xml)), xsltFilename, section, defaultSeverity);
+	}
 
-								}
-							}
-						}
+	/***
+	 * validate using a xslt file generated from a schematron in the build preparation of this software
+	 * @param source the xml to be checked, e.g. a tree built by SchematronCache.buildTree which can be reused for several passes
+	 * @param xsltFilename the filename of the intermediate XSLT file
+	 * @param section the error type code, if one arises
+	 * @param defaultSeverity how serious a error should be treated - may only be notice
+	 * @throws IrrecoverableValidationError if anything happened that prevents further checks
+	 */
+	protected void validateSchematron(Source source, String xsltFilename, int section, ESeverity defaultSeverity) throws IrrecoverableValidationError {
+		final SVRLCollector collector = newSVRLCollector(context, xsltFilename, section, defaultSeverity);
+		final long start = System.nanoTime();
+		try {
+			runSchematron(context, collector, source, xsltFilename);
+		} finally {
+			context.addTiming(EStage.schematron, xsltFilename, start);
+			failedRules += collector.getFailedAssertCount();
+		}
+		firedRules = collector.getFiredRuleCount();
+		//  for (String currentString : sout.getText()) {
+		// schematronValidationString += "<output>" + currentString + "</output>";
+		// }
 
-						LOGGER.info("FailedAssert {}", thisFailText);
+		// schematronValidationString += new SVRLMarshaller ().getAsString (sout);
+		// returns the complete SVRL
 
-						context.addResultItem(new ValidationResultItem(severity, thisFailText + thisFailIDStr + " from " + xsltFilename + ")")
-							.setLocation(thisFailLocation).setCriterion(thisFailTest).setSection(section).setID(thisFailID)
-							.setPart(EPart.fx));
-						failedRules++;
+	}
 
-					}
 
-				}
+	/***
+	 * a collector which reports the failed asserts of a schematron run as result items
+	 * @param context where to add the result items
+	 * @param xsltFilename the filename of the intermediate XSLT file, mentioned in the messages
+	 * @param section the error type code, if one arises
+	 * @param defaultSeverity how serious a error should be treated - may only be notice
+	 * @return the collector to pass to runSchematron
+	 */
+	private SVRLCollector newSVRLCollector(ValidationContext context, String xsltFilename, int section, ESeverity defaultSeverity) {
+		// failed asserts are reported while the SVRL output is still being written, the report itself is never materialized
+		final SVRLCollector collector = new SVRLCollector(failedAssert -> {
+			String thisFailID = failedAssert.getID();
+			String thisFailIDStr = thisFailID == null ? "" : " [ID " + thisFailID + "]";
+
+			ESeverity severity;
+			String failVal = failedAssert.getFlag();
+			if (defaultSeverity == ESeverity.notice) {
+				severity = defaultSeverity;
+			} else if ("warning".equals(failVal)) {
+				// the XR issues warnings with flag=warning
+				severity = ESeverity.warning;
+			} else if ("information".equals(failVal)) {
+				severity = ESeverity.notice;
+			} else {
+				severity = ESeverity.error;
+			}
 
-			} catch (XPathExpressionException e) {
-				LOGGER.error(e.getMessage(), e);
+			final ValidationResultItem vri = new ValidationResultItem(severity, failedAssert.getText() + thisFailIDStr + " from " + xsltFilename + ")")
+				.setLocation(failedAssert.getLocation() == null ? "" : failedAssert.getLocation())
+				.setCriterion(failedAssert.getTest() == null ? "" : failedAssert.getTest()).setSection(section)
+				.setID(thisFailID == null ? "" : thisFailID).setPart(EPart.fx);
+			if (!context.isRepetition(vri)) {
+				LOGGER.info("FailedAssert {}", failedAssert.getText());
 			}
-			expression = "//*[local-name() = 'fired-rule']";
-			NodeList firedAsserts = null;
+
 			try {
-				firedAsserts = (NodeList) xPath.compile(expression).evaluate(SVRLReport, XPathConstants.NODESET);
-				firedRules = firedAsserts.getLength();
-			} catch (XPathExpressionException e) {
-				LOGGER.error(e.getMessage(), e);
+				context.addResultItem(vri);
+			} catch (IrrecoverableValidationError e) {
+				throw new SAXException(e);
 			}
-		/*	int activePatterns=0;
-			expression = "//*[local-name() = 'active-pattern']";
-			 firedAsserts = null;
-			try {
-				firedAsserts = (NodeList) xPath.compile(expression).evaluate(SVRLReport, XPathConstants.NODESET);
-				activePatterns = firedAsserts.getLength();
-			} catch (XPathExpressionException e) {
-				LOGGER.error(e.getMessage(), e);
-			}*/
-
-
-			if (firedRules == 0) {
-				context.addResultItem(new ValidationResultItem(ESeverity.error, "No rules matched, XML too minimal?").setSection(26)
-					.setPart(EPart.fx));
+		});
+		if (schematronProfiler != null) {
+			collector.setProfile(schematronProfiler.newRun(xsltFilename));
+		}
+		return collector;
+	}
 
-			}
-			//  for (String currentString : sout.getText()) {
-			// schematronValidationString += "<output>" + currentString + "</output>";
-			// }
+	/***
+	 * transforms the source with the stylesheet, the collector reports the failed asserts
+	 * @param context where to add the result items
+	 * @param collector consumes the SVRL output
+	 * @param source the xml to be checked
+	 * @param xsltFilename the filename of the intermediate XSLT file
+	 * @throws IrrecoverableValidationError if anything happened that prevents further checks
+	 */
+	private static void runSchematron(ValidationContext context, SVRLCollector collector, Source source, String xsltFilename) throws IrrecoverableValidationError {
+		try {
+			final Transformer transformer = SchematronCache.getInstance().newTransformer(xsltFilename);
+			transformer.transform(source, new SAXResult(collector));
+		} catch (final IllegalArgumentException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new IrrecoverableValidationError(e.getMessage());
+		}
 
-			// schematronValidationString += new SVRLMarshaller ().getAsString (sout);
-			// returns the complete SVRL
+		if (collector.getFiredRuleCount() == 0) {
+			context.addResultItem(new ValidationResultItem(ESeverity.error, "No rules matched, XML too minimal?").setSection(26)
+				.setPart(EPart.fx));
 
 		}
 	}
 
-
 	public int getFiredRules() {
 		return firedRules;
 	}
@@ -2,20 +2,19 @@ package org.mustangproject.validator;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.xml.parsers.DocumentBuilder;
 
@@ -24,7 +23,6 @@ import org.dom4j.DocumentException;
 import org.dom4j.DocumentHelper;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.XMLWriter;
-import org.mustangproject.util.ByteArraySearcher;
 import org.mustangproject.XMLTools;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,8 +31,6 @@ import org.xml.sax.InputSource;
 
 import com.helger.commons.io.stream.StreamHelper;
 
-import jakarta.xml.bind.DatatypeConverter;
-
 //abstract class
 
 /***
@@ -54,6 +50,13 @@ public class ZUGFeRDValidator {
 	protected String signature;
 	protected boolean wasCompletelyValid; // overall result
 	protected String logAppend;
+	protected List<ValidationResultItem> pdfResults = new ArrayList<>(); // the context is cleared after the PDF part
+	protected Executor executor; // runs independent validation stages concurrently, if set
+	protected boolean reportTimings; // add the timings section to the report
+	protected long startNanos; // start of the validation, for the listener
+	protected SchematronProfiler schematronProfiler; // records the schematron rules, if set
+	protected EValidationLevel validationLevel = EValidationLevel.full; // which checks are performed
+	protected boolean failFast; // skip the remaining stages once a stage reported an error
 
 	/***
 	 * within the validation it turned out something in the options was wrong, e.g.
@@ -66,6 +69,74 @@ public class ZUGFeRDValidator {
 
 	}
 
+	/***
+	 * opt in to run independent validation stages concurrently, e.g. the PDF/A check alongside the extraction
+	 * and XMP checks, and the schematron passes alongside each other. The report is the same as in a sequential run,
+	 * only the latency of a single validation is reduced on multi-core hosts.
+	 * @param executor the executor to run the stages on, null (the default) runs everything on the calling thread
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/***
+	 * add a timings section to the report, listing how long each stage took, e.g. veraPDF, each schema and each
+	 * schematron file
+	 */
+	public void enableTimings() {
+		reportTimings = true;
+	}
+
+	/***
+	 * @param listener to be notified about each completed stage and each completed validation, null for none
+	 */
+	public void setListener(ValidationListener listener) {
+		context.setListener(listener);
+	}
+
+	/***
+	 * record the patterns and rules of the schematron passes, see SchematronProfiler
+	 * @param schematronProfiler where to add the numbers of the following validations, null to not profile (the default)
+	 */
+	public void setSchematronProfiler(SchematronProfiler schematronProfiler) {
+		this.schematronProfiler = schematronProfiler;
+	}
+
+	/***
+	 * validate only up to a certain depth, e.g. xsd and schematron for a quick check before an invoice is sent,
+	 * skipping veraPDF and the secondary schematron passes
+	 * @param validationLevel which checks to perform, the default is full
+	 */
+	public void setValidationLevel(EValidationLevel validationLevel) {
+		this.validationLevel = validationLevel;
+	}
+
+	/***
+	 * skip the remaining stages as soon as a stage reported an error: the XML part of a PDF whose PDF part is
+	 * invalid, the schematron passes of a XML which does not match the schema and the arithmetic check of a XML which
+	 * fails the schematron
+	 */
+	public void enableFailFast() {
+		failFast = true;
+	}
+
+	/***
+	 * aggregate repeated findings to one item per rule ID, severity and section, which counts the occurrences, see
+	 * ValidationContext.setAggregation
+	 * @param maxLocations how many locations each aggregated item lists at most, 0 (the default) to report every
+	 *                     finding as an item of its own
+	 */
+	public void setAggregation(int maxLocations) {
+		context.setAggregation(maxLocations);
+	}
+
+	/***
+	 * @return how long the stages of the last validation took, in the order they have been completed
+	 */
+	public List<StageTiming> getTimings() {
+		return context.getTimings();
+	}
+
 	public void setLogAppend(String tobeappended) {
 		logAppend = tobeappended;
 	}
@@ -88,17 +159,82 @@ public class ZUGFeRDValidator {
 		return context;
 	}
 
-	private String internalValidate(String contextFilename, InputStream inputStream, long inputLength) {
+	/***
+	 * @return the SHA-1 of the last validated file as uppercase hex, or null if it could not be read
+	 */
+	public String getSHA1Checksum() {
+		return sha1Checksum;
+	}
+
+	/***
+	 * @return the Factur-X authoring tool which created the last validated PDF, if recognizable
+	 */
+	public String getSignature() {
+		return signature;
+	}
+
+	/***
+	 * @return true if the PDF part of the last validated file was valid (or if it was a XML file)
+	 */
+	public boolean isPDFValid() {
+		return pdfValidity;
+	}
+
+	/***
+	 * all result items of the last validation, those of the PDF part followed by those of the XML part
+	 * @return a new list
+	 */
+	public List<ValidationResultItem> getResultItems() {
+		List<ValidationResultItem> all = new ArrayList<>(pdfResults);
+		all.addAll(context.getResults());
+		return all;
+	}
+
+	/***
+	 * @param contextFilename the filename to be mentioned in the report
+	 * @param inputStream the file to read, if it has not been mapped
+	 * @param mapped the mapped file, if there is no stream
+	 * @param inputLength the size of the file
+	 * @param readStartNanos when mapping the file started, if it has been mapped
+	 * @return a xml string with the validation result
+	 */
+	private String internalValidate(String contextFilename, InputStream inputStream, FileContent mapped, long inputLength, long readStartNanos) {
+		final StringWriter finalStringResult = new StringWriter();
+		try {
+			internalValidate(contextFilename, inputStream, mapped, inputLength, readStartNanos, ValidationReportWriter.xml(finalStringResult));
+		} catch (IOException e) {
+			// not thrown by a StringWriter
+			throw new UncheckedIOException(e);
+		}
+		return formatOutput(finalStringResult.toString());
+	}
+
+	/***
+	 * @param contextFilename the filename to be mentioned in the report
+	 * @param inputStream the file to read, if it has not been mapped
+	 * @param mapped the mapped file, if there is no stream
+	 * @param inputLength the size of the file
+	 * @param readStartNanos when mapping the file started, if it has been mapped
+	 * @param report where to write the report to, section by section
+	 * @throws IOException if writing the report fails
+	 */
+	private void internalValidate(String contextFilename, InputStream inputStream, FileContent mapped, long inputLength, long readStartNanos,
+								  ValidationReportWriter report) throws IOException {
 		context.clear();
-		StringBuilder finalStringResult = new StringBuilder();
-		SimpleDateFormat isoDF = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		context.clearTimings();
+		pdfResults = new ArrayList<>();
+		SimpleDateFormat isoDF = new SimpleDateFormat(ValidationReportWriter.DATETIME_FORMAT);
 		Date date = new Date();
 		startTime = Calendar.getInstance().getTimeInMillis();
+		startNanos = mapped != null ? readStartNanos : System.nanoTime();
 		context.setFilename(contextFilename); // fallback to provided name
-		finalStringResult.append("<validation filename='").append(contextFilename).append("' datetime='").append(isoDF.format(date)).append("'>");
+		if (mapped != null) {
+			context.addTiming(EStage.read, null, readStartNanos);
+		}
+		report.startValidation(contextFilename, isoDF.format(date));
 
 		boolean isPDF = false;
-		byte[] content = null;
+		FileContent content;
 		try {
 
 			if (contextFilename == null || contextFilename.isEmpty()) {
@@ -108,7 +244,12 @@ public class ZUGFeRDValidator {
 			}
 
 			PDFValidator pdfv = new PDFValidator(context);
-			if (inputStream == null) {
+			pdfv.setExecutor(executor);
+			pdfv.setValidationLevel(validationLevel);
+			if (failFast) {
+				pdfv.enableFailFast();
+			}
+			if (inputStream == null && mapped == null) {
 				context.addResultItem(
 					new ValidationResultItem(ESeverity.fatal, "File not found").setSection(1).setPart(EPart.pdf));
 			} else if (inputLength < 32) {
@@ -116,40 +257,56 @@ public class ZUGFeRDValidator {
 				// Except it is "<?xml version='1.0'?><xml/>" LOL
 				context.addResultItem(
 					new ValidationResultItem(ESeverity.fatal, "File too small").setSection(5).setPart(EPart.pdf));
-			} else if (inputLength >= Integer.MAX_VALUE) {
-				// Byte arrays are limited to 2GB in Java
+			} else if (inputLength >= Integer.MAX_VALUE && mapped == null) {
+				// Byte arrays are limited to 2GB in Java, mapped files are not
 				context.addResultItem(
 					new ValidationResultItem(ESeverity.fatal, "File too big").setSection(5).setPart(EPart.pdf));
 			} else {
-				content = IOUtils.toByteArray(inputStream);
+				if (mapped != null) {
+					content = mapped;
+				} else {
+					final long readStart = System.nanoTime();
+					content = FileContent.of(IOUtils.toByteArray(inputStream));
+					context.addTiming(EStage.read, null, readStart);
+				}
 				XMLValidator xv = new XMLValidator(context);
+				xv.setExecutor(executor);
 				if (disableNotices) {
 					xv.disableNotices();
 				}
 				if (disableArithmeticCheck) {
 					xv.disableArithmeticCheck();
 				}
-				isPDF = ByteArraySearcher.startsWith(content, new byte[]{'%', 'P', 'D', 'F'});
-				if (isPDF) {
+				xv.setSchematronProfiler(schematronProfiler);
+				xv.setValidationLevel(validationLevel);
+				if (failFast) {
+					xv.enableFailFast();
+				}
+				isPDF = content.startsWith(new byte[]{'%', 'P', 'D', 'F'});
+				if (!isPDF && content.length() >= Integer.MAX_VALUE) {
+					// the XML has to fit into a String
+					context.addResultItem(
+						new ValidationResultItem(ESeverity.fatal, "File too big").setSection(5).setPart(EPart.pdf));
+				} else if (isPDF) {
 					// Avoid reading again from file
 					pdfv.setFilenameAndContents(contextFilename, content);
 
 					context.setHasPDF();
 					optionsRecognized = true;
-					finalStringResult.append("<pdf>");
+					report.startSection("pdf");
 					try {
 						pdfv.validate();
 
-						sha1Checksum = calcSHA1(content);
+						sha1Checksum = content.sha1();
 
 						// Validate PDF
 
-						getPdfValidationResults(finalStringResult, pdfv, xv);
+						getPdfValidationResults(report, pdfv, xv);
 					} catch (IrrecoverableValidationError irx) {
 						LOGGER.info(irx.getMessage());
 					}
 
-					finalStringResult.append("</pdf>\n");
+					report.endSection("pdf");
 
 					context.clearCustomXML();
 				} else {
@@ -158,8 +315,7 @@ public class ZUGFeRDValidator {
 					try {
 						DocumentBuilder db = XMLTools.getDocumentBuilder(true);
 
-						content = XMLTools.removeBOM(content);
-						xmlAsString = new String(content, StandardCharsets.UTF_8);
+						xmlAsString = content.toUTF8String();
 						InputSource is = new InputSource(new StringReader(xmlAsString));
 						Document doc = db.parse(is);
 
@@ -178,7 +334,8 @@ public class ZUGFeRDValidator {
 						xv.setStringContent(xmlAsString);
 						xv.setAutoload(false);
 						xv.setFilename(contextFilename);
-						sha1Checksum = calcSHA1(content);
+						// like the XML itself, the checksum of an XML file does not include a byte order mark
+						sha1Checksum = content.withoutBOM().sha1();
 
 						displayXMLValidationOutput = true;
 
@@ -189,15 +346,18 @@ public class ZUGFeRDValidator {
 
 					}
 				}
-				if (optionsRecognized && displayXMLValidationOutput) {
-					finalStringResult.append("<xml>");
+				if (failFast && isPDF && !pdfValidity && displayXMLValidationOutput) {
+					LOGGER.info("PDF part is invalid, skipping the XML part");
+					context.setInvalid();
+				} else if (optionsRecognized && displayXMLValidationOutput) {
+					report.startSection("xml");
 					try {
 						xv.validate();
 					} catch (IrrecoverableValidationError irx) {
 						LOGGER.error("XML validation threw an exception ", irx);
 					}
-					finalStringResult.append(xv.getXMLResult());
-					finalStringResult.append("</xml>");
+					context.writeResult(report);
+					report.endSection("xml");
 					context.clearCustomXML();
 				}
 
@@ -206,12 +366,15 @@ public class ZUGFeRDValidator {
 			LOGGER.info(irx.getMessage());
 			context.setInvalid();
 		} finally {
-			finalStringResult.append(context.getXMLResult());
-			finalStringResult.append("</validation>");
+			context.writeResult(report);
+			if (reportTimings) {
+				report.timings(context.getTimings());
+			}
+			report.endValidation();
 
 		}
 
-		return formatOutput(finalStringResult, isPDF);
+		completeValidation(isPDF);
 	}
 
 	/***
@@ -221,38 +384,46 @@ public class ZUGFeRDValidator {
 	 * @return a xml string with the validation result
 	 */
 	public String validate(String filename) {
-		String contextFilename;
-		InputStream inputStream;
-		long inputLength;
 		if (filename == null) {
 			// No filename provided
-			contextFilename = "";
-			inputStream = null;
-			inputLength = 0;
-		} else {
-			File file = new File(filename);
-			// set filename without path
-			contextFilename = file.getName();
-			if (file.isFile()) {
-				try {
-					inputStream = new FileInputStream(file);
-					inputLength = Files.size(file.toPath());
-				} catch (IOException ex) {
-					throw new UncheckedIOException(ex);
-				}
-			} else {
-				// Non-existing or Directory
-				inputStream = null;
-				inputLength = 0;
-			}
+			return internalValidate("", null, null, 0, 0);
+		}
+		return validate(new File(filename).toPath());
+	}
+
+	/***
+	 * performs a validation on a file. Large files are memory mapped instead of read into the heap, all checks share
+	 * the read-only mapping, so the file is not copied for them and may exceed 2 GB
+	 *
+	 * @param file a PDF or XML
+	 * @return a xml string with the validation result
+	 */
+	public String validate(Path file) {
+		// set filename without path
+		final String contextFilename = file.getFileName() == null ? "" : file.getFileName().toString();
+		if (!Files.isRegularFile(file)) {
+			// Non-existing or Directory
+			return internalValidate(contextFilename, null, null, 0, 0);
 		}
 		try {
-			return internalValidate(contextFilename, inputStream, inputLength);
-		} finally {
-			StreamHelper.close(inputStream);
+			final long readStart = System.nanoTime();
+			return validate(FileContent.read(file), contextFilename, readStart);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
 		}
 	}
 
+	/***
+	 * performs a validation on a file which has already been read or mapped
+	 * @param content the file
+	 * @param filename the filename to be mentioned in the report
+	 * @param readStartNanos System.nanoTime() when reading or mapping the file started
+	 * @return a xml string with the validation result
+	 */
+	String validate(FileContent content, String filename, long readStartNanos) {
+		return internalValidate(filename, null, content, content.length(), readStartNanos);
+	}
+
 	public String validate(InputStream inputStream, String fileNameOfInputStream) {
 		long inputLength;
 		try {
@@ -261,7 +432,7 @@ public class ZUGFeRDValidator {
 			throw new UncheckedIOException(ex);
 		}
 		try {
-			return internalValidate(fileNameOfInputStream, inputStream, inputLength);
+			return internalValidate(fileNameOfInputStream, inputStream, null, inputLength, 0);
 		} finally {
 			StreamHelper.close(inputStream);
 		}
@@ -269,17 +440,53 @@ public class ZUGFeRDValidator {
 
 	public String validate(byte[] bytes, String fileNameOfInputStream) {
 		try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes)) {
-			return internalValidate(fileNameOfInputStream, bais, bytes.length);
+			return internalValidate(fileNameOfInputStream, bais, null, bytes.length, 0);
 		} catch (IOException ex) {
 			throw new UncheckedIOException(ex);
 		}
 	}
 
-	private void getPdfValidationResults(StringBuilder finalStringResult, PDFValidator pdfv, XMLValidator xv) throws IrrecoverableValidationError {
-		finalStringResult.append(pdfv.getXMLResult());
+	/***
+	 * performs a validation on a file, which is memory mapped if it is large, and writes the report while validating
+	 * instead of returning it
+	 *
+	 * @param file a PDF or XML
+	 * @param report where to write the report to, e.g. ValidationReportWriter.json(System.out, true), not closed
+	 * @throws IOException if writing the report fails
+	 */
+	public void validate(Path file, ValidationReportWriter report) throws IOException {
+		final String contextFilename = file.getFileName() == null ? "" : file.getFileName().toString();
+		if (!Files.isRegularFile(file)) {
+			internalValidate(contextFilename, null, null, 0, 0, report);
+			return;
+		}
+		final long readStart = System.nanoTime();
+		final FileContent content = FileContent.read(file);
+		internalValidate(contextFilename, null, content, content.length(), readStart, report);
+	}
+
+	/***
+	 * performs a validation and writes the report while validating instead of returning it
+	 *
+	 * @param inputStream a PDF or XML, read completely and closed
+	 * @param fileNameOfInputStream the filename to be mentioned in the report
+	 * @param report where to write the report to, not closed
+	 * @throws IOException if writing the report fails
+	 */
+	public void validate(InputStream inputStream, String fileNameOfInputStream, ValidationReportWriter report) throws IOException {
+		try {
+			internalValidate(fileNameOfInputStream, inputStream, null, inputStream == null ? 0 : inputStream.available(), 0, report);
+		} finally {
+			StreamHelper.close(inputStream);
+		}
+	}
+
+	private void getPdfValidationResults(ValidationReportWriter report, PDFValidator pdfv, XMLValidator xv) throws IrrecoverableValidationError, IOException {
+		context.writeResult(report);
 		pdfValidity = context.isValid();
 
 		signature = context.getSignature();
+		pdfResults = new ArrayList<>(context.getResults());
 		context.clear(); // clear sets valid to true again
 		if (pdfv.getRawXML() != null) {
 			xv.setStringContent(pdfv.getRawXML());
@@ -291,13 +498,12 @@ public class ZUGFeRDValidator {
 		}
 	}
 
-	private String formatOutput(StringBuilder finalStringResult, boolean isPDF) {
-		boolean xmlValidity;
+	private String formatOutput(String finalStringResult) {
 		OutputFormat format = OutputFormat.createPrettyPrint();
 		StringWriter sw = new StringWriter();
 		org.dom4j.Document document = null;
 		try {
-			document = DocumentHelper.parseText(finalStringResult.toString());
+			document = DocumentHelper.parseText(finalStringResult);
 		} catch (DocumentException e1) {
 			LOGGER.error(e1.getMessage());
 		}
@@ -308,8 +514,15 @@ public class ZUGFeRDValidator {
 		} catch (Exception e) {
 			LOGGER.error(e.getMessage());
 		}
+		return sw.toString();
+	}
 
-		xmlValidity = context.isValid();
+	/***
+	 * logs the outcome of a validation and notifies the listener
+	 * @param isPDF whether a PDF has been validated
+	 */
+	private void completeValidation(boolean isPDF) {
+		boolean xmlValidity = context.isValid();
 		long duration = Calendar.getInstance().getTimeInMillis() - startTime;
 
 		String toBeAppended = "";
@@ -331,7 +544,9 @@ public class ZUGFeRDValidator {
 			+ " Version:" + context.getGeneration() + " Took:" + duration + "ms Errors:[" + context.getCSVResult()
 			+ "] ErrorIDs: [" + context.getCSVIDResult() + "]" + toBeAppended);
 		wasCompletelyValid = xmlValidity;
-		return sw.toString();
+		if (context.getListener() != null) {
+			context.getListener().validationCompleted(context.getFilename(), context.getTimings(), System.nanoTime() - startNanos);
+		}
 	}
 
 	/***
@@ -349,30 +564,13 @@ public class ZUGFeRDValidator {
 	}
 
 	/**
-	 * Read the file and calculate the SHA-1 checksum
+	 * Calculate the SHA-1 checksum of a file content
 	 *
-	 * @param data the InputStream to read
+	 * @param data the content of the file
 	 * @return the hex representation of the SHA-1 using uppercase chars
-	 * @throws FileNotFoundException    if the file does not exist, is a directory
-	 *                                  rather than a regular file, or for some
-	 *                                  other reason cannot be opened for reading
-	 * @throws IOException              if an I/O error occurs
-	 * @throws NoSuchAlgorithmException should never happen
 	 */
-	private static String calcSHA1(byte[] data) {
-		MessageDigest sha1 = null;
-		try {
-
-			sha1 = MessageDigest.getInstance("SHA-1");
-			sha1.update(data, 0, data.length);
-		} catch (NoSuchAlgorithmException e) {
-			LOGGER.error(e.getMessage(), e);
-		}
-		if (sha1 == null) {
-			return "";
-		} else {
-			return DatatypeConverter.printHexBinary(sha1.digest());
-		}
+	static String calcSHA1(byte[] data) {
+		return FileContent.of(data).sha1();
 	}
 
 }
@@ -0,0 +1,128 @@
+package org.mustangproject.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+public class BatchValidatorTest extends ResourceCase {
+
+	public void testFailuresDoNotAbortTheBatch() throws Exception {
+		File valid = getResourceAsFile("validV2.xml");
+		byte[] validContent = Files.readAllBytes(valid.toPath());
+		BatchValidator.Input unreadable = new BatchValidator.Input() {
+			@Override
+			public String getName() {
+				return "unreadable.xml";
+			}
+
+			@Override
+			public long getSize() {
+				return 1000;
+			}
+
+			@Override
+			public byte[] read() throws IOException {
+				throw new IOException("disk on fire");
+			}
+		};
+		BatchValidator.Input tooBig = new BatchValidator.Input() {
+			@Override
+			public String getName() {
+				return "too-big.xml";
+			}
+
+			@Override
+			public long getSize() {
+				return 1000;
+			}
+
+			@Override
+			public byte[] read() {
+				throw new OutOfMemoryError("Java heap space");
+			}
+		};
+		List<BatchValidator.Input> inputs = Arrays.asList(
+			BatchValidator.Input.of(valid.toPath()),
+			unreadable,
+			tooBig,
+			BatchValidator.Input.of("copy.xml", validContent),
+			BatchValidator.Input.of(new File(valid.getParentFile(), "does-not-exist.xml").toPath()));
+
+		List<BatchValidator.Result> results = Collections.synchronizedList(new ArrayList<>());
+		// a budget smaller than one file, so that they are validated one after another
+		try (BatchValidator batch = new BatchValidator(new ValidationEngine(), 2, 1024)) {
+			assertEquals(5, batch.validate(inputs.iterator(), results::add));
+		}
+		assertEquals(5, results.size());
+		int valids = 0;
+		int failures = 0;
+		for (BatchValidator.Result result : results) {
+			if (result.isFailed()) {
+				failures++;
+			} else if (result.getReport().isValid()) {
+				valids++;
+			}
+		}
+		assertEquals(2, valids);
+		assertEquals(3, failures);
+	}
+
+	public void testFailingIterator() throws InterruptedException {
+		File valid = getResourceAsFile("validV2.xml");
+		Iterator<BatchValidator.Input> inputs = new Iterator<BatchValidator.Input>() {
+			private int pulled;
+
+			@Override
+			public boolean hasNext() {
+				if (pulled == 3) {
+					throw new UncheckedIOException(new IOException("directory not readable"));
+				}
+				return true;
+			}
+
+			@Override
+			public BatchValidator.Input next() {
+				pulled++;
+				return BatchValidator.Input.of(valid.toPath());
+			}
+		};
+		List<BatchValidator.Result> results = Collections.synchronizedList(new ArrayList<>());
+		try (BatchValidator batch = new BatchValidator(new ValidationEngine(), 2, 64L * 1024 * 1024)) {
+			batch.validate(inputs, results::add);
+			fail("the failure of the iterator has to be passed on");
+		} catch (UncheckedIOException e) {
+			// the validations already submitted have been awaited
+			assertEquals(3, results.size());
+		}
+
+		BatchValidator closed = new BatchValidator(new ValidationEngine(), 1, 1024);
+		closed.close();
+		try {
+			closed.validate(Collections.nCopies(3, BatchValidator.Input.of(valid.toPath())).iterator(), results::add);
+			fail("a closed batch does not validate");
+		} catch (RejectedExecutionException e) {
+			// the permits have been released, otherwise the wait for the running validations would not end
+			assertEquals(3, results.size());
+		}
+	}
+
+	public void testIterate() {
+		File valid = getResourceAsFile("validV2.xml");
+		try (BatchValidator batch = new BatchValidator(new ValidationEngine(), 2, 64L * 1024 * 1024)) {
+			Iterator<BatchValidator.Result> results = batch.iterate(Collections.nCopies(3, BatchValidator.Input.of(valid.toPath())).iterator());
+			int count = 0;
+			while (results.hasNext()) {
+				assertTrue(results.next().getReport().isValid());
+				count++;
+			}
+			assertEquals(3, count);
+		}
+	}
+}
@@ -1,9 +1,19 @@
 package org.mustangproject.validator;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.verapdf.processor.ProcessorResult;
+import org.verapdf.processor.reports.ItemDetails;
 
 public class PDFValidatorTest extends ResourceCase {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ZUGFeRDValidator.class.getCanonicalName()); // log
@@ -194,4 +204,74 @@ public class PDFValidatorTest extends ResourceCase {
 
 	}
 
+	public void testProcessorPoolRecycling() throws IrrecoverableValidationError {
+		final VeraPDFProcessorPool pool = new VeraPDFProcessorPool(1, 2);
+		final byte[] contents = getResourceAsByteArray("validXRechnung.pdf");
+		String firstResult = null;
+		for (int run = 0; run < 3; run++) {
+			final ValidationContext vc = new ValidationContext(null);
+			final PDFValidator pv = new PDFValidator(vc);
+			pv.setProcessorPool(pool);
+			pv.setFilenameAndContents("validXRechnung.pdf", contents);
+			pv.validate();
+			final String result = pv.getXMLResult().replaceAll("<duration unit=\"ms\">\\d+</duration>", "");
+			if (firstResult == null) {
+				firstResult = result;
+			} else {
+				// a reused processor has to come to the same result
+				assertEquals(firstResult, result);
+			}
+		}
+		// the processor is replaced after two documents
+		assertEquals(2, pool.getCreatedCount());
+		assertEquals(1, pool.getRecycledCount());
+		pool.close();
+		assertEquals(2, pool.getRecycledCount());
+	}
+
+	public void testProcessorPoolSwap() throws Exception {
+		final VeraPDFProcessorPool previous = new VeraPDFProcessorPool(1, 10);
+		VeraPDFProcessorPool.setInstance(previous);
+		final CountDownLatch reading = new CountDownLatch(1);
+		final CountDownLatch swapped = new CountDownLatch(1);
+		// keeps veraPDF busy until the shared pool has been replaced
+		final FilterInputStream pdf = new FilterInputStream(new ByteArrayInputStream(getResourceAsByteArray("validXRechnung.pdf"))) {
+			@Override
+			public int read() throws IOException {
+				awaitSwap();
+				return super.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				awaitSwap();
+				return super.read(b, off, len);
+			}
+
+			private void awaitSwap() throws IOException {
+				reading.countDown();
+				try {
+					swapped.await();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+		};
+		final ExecutorService thread = Executors.newSingleThreadExecutor();
+		try {
+			final Future<ProcessorResult> running = thread.submit(() -> VeraPDFProcessorPool.getInstance()
+				.process(ItemDetails.fromValues("validXRechnung.pdf"), pdf));
+			reading.await();
+			VeraPDFProcessorPool.setInstance(new VeraPDFProcessorPool(1, 10));
+			swapped.countDown();
+			// a healthy processor, which would have been kept idle
+			assertFalse(running.get().getValidationResults().isEmpty());
+			// the processor in use has been closed when it was returned to the replaced pool
+			assertEquals(1, previous.getCreatedCount());
+			assertEquals(1, previous.getRecycledCount());
+		} finally {
+			thread.shutdown();
+			VeraPDFProcessorPool.setInstance(null);
+		}
+	}
 }
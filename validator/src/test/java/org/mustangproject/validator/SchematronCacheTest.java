@@ -0,0 +1,57 @@
+package org.mustangproject.validator;
+
+import javax.xml.transform.Templates;
+
+public class SchematronCacheTest extends ResourceCase {
+
+	private static final String MINIMUM_XSLT = "/xslt/ZF_250/FACTUR-X_MINIMUM.xslt";
+	private static final String XR_XSLT = "/xslt/XR_30/XRechnung-CII-validation.xslt";
+
+	public void testCompiledOnlyOnce() {
+		SchematronCache cache = new SchematronCache(SchematronCache.DEFAULT_MAX_WEIGHT);
+		assertFalse(cache.contains(MINIMUM_XSLT));
+
+		cache.preload(MINIMUM_XSLT);
+		assertTrue(cache.contains(MINIMUM_XSLT));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0, cache.getHitCount());
+
+		Templates first = cache.get(MINIMUM_XSLT);
+		Templates second = cache.get(MINIMUM_XSLT);
+		assertSame(first, second);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2, cache.getHitCount());
+		assertTrue(cache.getWeight() > 0);
+	}
+
+	public void testLeastRecentlyUsedIsEvicted() {
+		SchematronCache cache = new SchematronCache(SchematronCache.DEFAULT_MAX_WEIGHT);
+		cache.preload(MINIMUM_XSLT, XR_XSLT);
+		assertEquals(2, cache.size());
+
+		cache.get(MINIMUM_XSLT); // XR is now the least recently used one
+		cache.setMaxWeight(cache.getWeight() - 1);
+
+		assertEquals(1, cache.size());
+		assertTrue(cache.contains(MINIMUM_XSLT));
+		assertFalse(cache.contains(XR_XSLT));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	public void testMissingStylesheet() {
+		SchematronCache cache = new SchematronCache(SchematronCache.DEFAULT_MAX_WEIGHT);
+		try {
+			cache.get("/xslt/does/not/exist.xslt");
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("is invalid Schematron"));
+		}
+		assertFalse(cache.contains("/xslt/does/not/exist.xslt"));
+	}
+
+	public void testKnownStylesheetsExist() {
+		for (String xsltPath : SchematronCache.KNOWN_STYLESHEETS) {
+			assertNotNull(xsltPath + " not found", getClass().getResource(xsltPath));
+		}
+	}
+}
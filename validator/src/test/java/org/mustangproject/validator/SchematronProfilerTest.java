@@ -0,0 +1,79 @@
+package org.mustangproject.validator;
+
+import java.io.File;
+import java.io.StringWriter;
+
+import org.xml.sax.helpers.AttributesImpl;
+
+public class SchematronProfilerTest extends ResourceCase {
+
+	private static final String SVRL = "http://purl.oclc.org/dsdl/svrl";
+
+	public void testCountsFromSVRL() throws Exception {
+		SchematronProfiler profiler = new SchematronProfiler();
+		for (int run = 0; run < 2; run++) {
+			SVRLCollector collector = new SVRLCollector(failedAssert -> {
+			});
+			collector.setProfile(profiler.newRun("/xslt/test.xslt"));
+			collector.startDocument();
+			collector.startElement(SVRL, "schematron-output", "svrl:schematron-output", new AttributesImpl());
+			element(collector, "active-pattern", "id", "p1");
+			element(collector, "fired-rule", "context", "ram:A");
+			element(collector, "failed-assert", "id", "BR-1");
+			element(collector, "fired-rule", "context", "ram:B");
+			element(collector, "fired-rule", "context", "ram:A");
+			collector.endElement(SVRL, "schematron-output", "svrl:schematron-output");
+			collector.endDocument();
+		}
+
+		assertEquals(2, profiler.getRules().size());
+		for (SchematronProfiler.RuleProfile rule : profiler.getRules()) {
+			assertEquals("/xslt/test.xslt", rule.getStylesheet());
+			assertEquals("p1", rule.getPattern());
+			if ("ram:A".equals(rule.getContext())) {
+				assertEquals(4, rule.getFiredCount());
+				assertEquals(2, rule.getFailedAssertCount());
+			} else {
+				assertEquals(2, rule.getFiredCount());
+				assertEquals(0, rule.getFailedAssertCount());
+			}
+		}
+		assertEquals(1, profiler.getPatterns().size());
+		assertEquals(2, profiler.getPatterns().get(0).getRunCount());
+
+		StringWriter csv = new StringWriter();
+		profiler.writeCSV(csv);
+		assertTrue(csv.toString().startsWith("stylesheet,pattern,context,id,fired,failedAsserts,ms\n"));
+		assertTrue(csv.toString().contains("/xslt/test.xslt,p1,ram:A,,4,2,"));
+
+		profiler.reset();
+		assertTrue(profiler.getRules().isEmpty());
+	}
+
+	public void testValidationIsProfiled() throws Exception {
+		File tempFile = getResourceAsFile("validV2.xml");
+		SchematronProfiler profiler = new SchematronProfiler();
+		ValidationEngine engine = new ValidationEngine().withSchematronProfiler(profiler);
+		engine.validate(tempFile.toPath());
+
+		long fired = 0;
+		for (SchematronProfiler.RuleProfile rule : profiler.getRules()) {
+			fired += rule.getFiredCount();
+		}
+		assertTrue(fired > 0);
+		assertFalse(profiler.getPatterns().isEmpty());
+
+		StringWriter json = new StringWriter();
+		profiler.writeJSON(json);
+		assertTrue(json.toString().startsWith("{\"patterns\":["));
+		assertTrue(json.toString().contains("\"context\":"));
+	}
+
+	private static void element(SVRLCollector collector, String name, String attribute, String value) throws Exception {
+		AttributesImpl attributes = new AttributesImpl();
+		attributes.addAttribute("", attribute, attribute, "CDATA", value);
+		collector.startElement(SVRL, name, "svrl:" + name, attributes);
+		collector.endElement(SVRL, name, "svrl:" + name);
+	}
+
+}
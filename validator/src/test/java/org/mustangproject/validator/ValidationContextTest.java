@@ -0,0 +1,48 @@
+package org.mustangproject.validator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+public class ValidationContextTest extends TestCase {
+
+	public void testAggregation() throws Exception {
+		ValidationContext context = new ValidationContext(null);
+		context.setAggregation(2);
+		for (int line = 1; line <= 5; line++) {
+			context.addResultItem(new ValidationResultItem(ESeverity.error, "line " + line).setID("BR-CO-10")
+				.setSection(24).setLocation("/Invoice/Line[" + line + "]"));
+		}
+		context.addResultItem(new ValidationResultItem(ESeverity.warning, "warning").setID("BR-CO-10").setSection(24));
+		// findings without ID are not aggregated
+		context.addResultItem(new ValidationResultItem(ESeverity.error, "schema").setSection(18));
+		context.addResultItem(new ValidationResultItem(ESeverity.error, "schema").setSection(18));
+
+		assertFalse(context.isValid());
+		assertEquals(4, context.getResults().size());
+		ValidationResultItem aggregated = context.getResults().get(0);
+		assertEquals(5, aggregated.getCount());
+		assertEquals(2, aggregated.getLocations().size());
+		assertEquals("/Invoice/Line[2]", aggregated.getLocations().get(1));
+		assertTrue(aggregated.isLocationsTruncated());
+		assertEquals(1, context.getResults().get(1).getCount());
+
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		try (ValidationReportWriter report = ValidationReportWriter.json(json, false)) {
+			report.startValidation("invoice.xml", "");
+			context.writeResult(report);
+			report.endValidation();
+		}
+		assertTrue(json.toString(StandardCharsets.UTF_8.name()).contains(
+			"\"location\":\"/Invoice/Line[1]\",\"count\":5,\"locations\":[\"/Invoice/Line[1]\",\"/Invoice/Line[2]\"],\"truncated\":true"));
+
+		assertTrue(aggregated.getXML().startsWith("<error type=\"24\" location=\"/Invoice/Line[1]\" count=\"5\" truncated=\"true\">line 1"));
+		assertTrue(aggregated.getXML().endsWith("<location>/Invoice/Line[2]</location></error>"));
+
+		context.clear();
+		context.addResultItem(new ValidationResultItem(ESeverity.error, "line 1").setID("BR-CO-10").setSection(24));
+		assertEquals(1, context.getResults().get(0).getCount());
+	}
+
+}
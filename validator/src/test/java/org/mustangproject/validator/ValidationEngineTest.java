@@ -0,0 +1,216 @@
+package org.mustangproject.validator;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ValidationEngineTest extends ResourceCase {
+
+	public void testReport() {
+		File tempFile = getResourceAsFile("invalidXRV30.xml");
+		ValidationReport report = new ValidationEngine().validate(tempFile.toPath());
+
+		assertFalse(report.isValid());
+		assertFalse(report.isPDF());
+		assertEquals("CII", report.getFormat());
+		assertTrue(report.count(ESeverity.error) > 0);
+		assertTrue(report.getXML().contains("<summary status=\"invalid\"/>"));
+		assertEquals(40, report.getSHA1Checksum().length());
+		try {
+			report.getItems().clear();
+			fail("the items have to be unmodifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testPathWithoutFileName() {
+		Path root = Paths.get("").toAbsolutePath().getRoot();
+		ValidationReport report = new ValidationEngine().validate(root);
+
+		assertEquals(root.toString(), report.getFilename());
+		assertFalse(report.isValid());
+	}
+
+	public void testTimings() {
+		File tempFile = getResourceAsFile("validV2.xml");
+		List<StageTiming> notified = Collections.synchronizedList(new ArrayList<>());
+		ValidationReport report = new ValidationEngine().withTimings()
+			.withListener((filename, timing) -> notified.add(timing)).validate(tempFile.toPath());
+
+		assertEquals(EStage.read, report.getTimings().get(0).getStage());
+		assertEquals(report.getTimings(), notified);
+		boolean schematron = false;
+		for (StageTiming timing : report.getTimings()) {
+			if (timing.getStage() == EStage.schematron) {
+				assertTrue(timing.getName().startsWith("/xslt/"));
+				assertTrue(report.getXML().contains("<stage name=\"schematron\" file=\"" + timing.getName() + "\""));
+				schematron = true;
+			}
+		}
+		assertTrue(schematron);
+		assertTrue(report.getXML().contains("<timings>"));
+		assertFalse(new ValidationEngine().validate(tempFile.toPath()).getXML().contains("<timings>"));
+	}
+
+	public void testValidationLevels() {
+		File tempFile = getResourceAsFile("validV2.xml");
+		ValidationEngine engine = new ValidationEngine().withTimings();
+
+		ValidationReport report = engine.withValidationLevel(EValidationLevel.wellformed).validate(tempFile.toPath());
+		assertTrue(report.isValid());
+		assertEquals(0, countStages(report, EStage.xsd));
+		assertEquals(0, countStages(report, EStage.schematron));
+
+		report = engine.withValidationLevel(EValidationLevel.xsd).validate(tempFile.toPath());
+		assertEquals(1, countStages(report, EStage.xsd));
+		assertEquals(0, countStages(report, EStage.schematron));
+
+		report = engine.withValidationLevel(EValidationLevel.schematron).validate(tempFile.toPath());
+		assertEquals(1, countStages(report, EStage.schematron));
+		assertEquals(0, countStages(report, EStage.arithmetic));
+
+		report = engine.validate(tempFile.toPath());
+		assertEquals(1, countStages(report, EStage.arithmetic));
+	}
+
+	public void testFailFast() {
+		// does not match the schema
+		File tempFile = getResourceAsFile("invalidV1ExtraTags.xml");
+		ValidationEngine engine = new ValidationEngine().withTimings();
+
+		ValidationReport report = engine.withFailFast().validate(tempFile.toPath());
+		assertFalse(report.isValid());
+		assertEquals(1, countStages(report, EStage.xsd));
+		assertEquals(0, countStages(report, EStage.schematron));
+		assertTrue(countStages(engine.validate(tempFile.toPath()), EStage.schematron) > 0);
+	}
+
+	private static int countStages(ValidationReport report, EStage stage) {
+		int count = 0;
+		for (StageTiming timing : report.getTimings()) {
+			if (timing.getStage() == stage) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public void testSharedBetweenThreads() throws Exception {
+		ValidationEngine engine = new ValidationEngine().withoutNotices();
+		File valid = getResourceAsFile("validV2.xml");
+		File invalid = getResourceAsFile("invalidXRV30.xml");
+		int invalidErrors = engine.validate(invalid.toPath()).count(ESeverity.error);
+
+		ExecutorService threads = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<ValidationReport>> reports = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				File file = i % 2 == 0 ? valid : invalid;
+				reports.add(threads.submit(() -> engine.validate(file.toPath())));
+			}
+			for (int i = 0; i < reports.size(); i++) {
+				ValidationReport report = reports.get(i).get();
+				if (i % 2 == 0) {
+					assertTrue(report.isValid());
+					assertEquals(0, report.count(ESeverity.notice));
+				} else {
+					assertFalse(report.isValid());
+					assertEquals(invalidErrors, report.count(ESeverity.error));
+				}
+			}
+		} finally {
+			threads.shutdown();
+		}
+	}
+
+	public void testResultCache() throws Exception {
+		File tempFile = getResourceAsFile("invalidXRV30.xml");
+		Path directory = Files.createTempDirectory("mustang-reports");
+		ValidationResultCache cache = new ValidationResultCache(10, directory, 10L * 1024 * 1024);
+		ValidationEngine engine = new ValidationEngine().withResultCache(cache);
+
+		ValidationReport first = engine.validate(tempFile.toPath());
+		assertEquals(first.getItems(), engine.validate(tempFile.toPath()).getItems());
+		assertEquals(1, cache.getHitCount());
+		assertTrue(cache.getDiskBytes() > 0);
+
+		// the same content resent under another name
+		Path resent = Files.copy(tempFile.toPath(), directory.resolveSibling(directory.getFileName() + "-resent.xml"));
+		ValidationReport resentReport = engine.validate(resent);
+		assertEquals(2, cache.getHitCount());
+		assertEquals(resent.getFileName().toString(), resentReport.getFilename());
+		assertTrue(resentReport.getXML().contains("filename=\"" + resent.getFileName() + "\""));
+		assertFalse(resentReport.getXML().contains(tempFile.getName()));
+		Files.delete(resent);
+
+		// other options, other key
+		engine.withoutNotices().validate(tempFile.toPath());
+		assertEquals(2, cache.getMissCount());
+
+		// a new cache on the same directory, e.g. after a restart
+		ValidationResultCache restarted = new ValidationResultCache(10, directory, 10L * 1024 * 1024);
+		ValidationReport stored = new ValidationEngine().withResultCache(restarted).validate(tempFile.toPath());
+		assertEquals(1, restarted.getHitCount());
+		assertEquals(first.getXML().replaceFirst("datetime=\"[^\"]*\"", ""), stored.getXML().replaceFirst("datetime=\"[^\"]*\"", ""));
+		assertEquals(first.isValid(), stored.isValid());
+		assertEquals(first.getItems().size(), stored.getItems().size());
+		assertEquals(first.count(ESeverity.error), stored.count(ESeverity.error));
+
+		restarted.clear();
+		assertEquals(0, restarted.getDiskBytes());
+	}
+
+	public void testResultCacheAggregation() throws Exception {
+		ValidationContext context = new ValidationContext(null);
+		context.setAggregation(2);
+		for (int line = 1; line <= 5; line++) {
+			context.addResultItem(new ValidationResultItem(ESeverity.error, "line " + line).setID("BR-CO-10")
+				.setSection(24).setLocation("/Invoice/Line[" + line + "]"));
+		}
+		ValidationReport report = new ValidationReport("invoice.xml", "<validation/>", false, false, false, "sha1",
+			null, "CII", "2", "EN16931", context.getResults(), 1, Collections.emptyList());
+		Path directory = Files.createTempDirectory("mustang-reports");
+		String key = ValidationResultCache.key("sha1", true, true, false, EValidationLevel.full, false, 2);
+		new ValidationResultCache(10, directory, 10L * 1024 * 1024).put(key, report);
+
+		ValidationResultCache restarted = new ValidationResultCache(10, directory, 10L * 1024 * 1024);
+		ValidationResultItem stored = restarted.get(key).getItems().get(0);
+		assertEquals(5, stored.getCount());
+		assertEquals(context.getResults().get(0).getLocations(), stored.getLocations());
+		assertTrue(stored.isLocationsTruncated());
+		assertEquals(context.getResults().get(0).getXML(), stored.getXML());
+		restarted.clear();
+	}
+
+	public void testResultCacheTempFiles() throws Exception {
+		ValidationReport report = new ValidationReport("invoice.xml", "<validation/>", true, false, false, "sha1",
+			null, "CII", "2", "EN16931", Collections.emptyList(), 1, Collections.emptyList());
+		Path directory = Files.createTempDirectory("mustang-reports");
+		Path stale = Files.createFile(directory.resolve("interrupted.tmp"));
+		ValidationResultCache cache = new ValidationResultCache(10, directory, 10L * 1024 * 1024);
+		assertFalse(Files.exists(stale));
+
+		// a directory where the report should go makes the move fail
+		String key = ValidationResultCache.key("sha1", true, true);
+		Path blocked = Files.createDirectory(directory.resolve(key + ".report"));
+		Files.createFile(blocked.resolve("content"));
+		cache.put(key, report);
+		assertEquals(0, cache.getDiskBytes());
+		try (Stream<Path> list = Files.list(directory)) {
+			assertEquals(Collections.singletonList(blocked), list.collect(Collectors.toList()));
+		}
+		Files.delete(blocked.resolve("content"));
+		Files.delete(blocked);
+		Files.delete(directory);
+	}
+}
@@ -1,7 +1,13 @@
 package org.mustangproject.validator;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.xmlunit.assertj.XmlAssert.assertThat;
 
@@ -166,6 +172,35 @@ public class ZUGFeRDValidatorTest extends ResourceCase {
 
 	}
 
+	public void testStreamedReports() throws IOException {
+		File tempFile = getResourceAsFile("invalidV1addition.xml");
+
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		try (ValidationReportWriter report = ValidationReportWriter.xml(xml, true)) {
+			new ZUGFeRDValidator().validate(tempFile.toPath(), report);
+		}
+		String res = xml.toString("UTF-8");
+		assertThat(res).valueByXPath("/validation/xml/summary/@status")
+			.isEqualTo("invalid");
+		assertThat(res).valueByXPath("count(/validation/xml/messages/error)")
+			.asInt()
+			.isNotEqualTo(0);
+		// the items of the xml part are not repeated
+		assertThat(res).valueByXPath("count(/validation/messages)")
+			.asInt()
+			.isEqualTo(0);
+
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		try (ValidationReportWriter report = ValidationReportWriter.json(json, false)) {
+			new ZUGFeRDValidator().validate(tempFile.toPath(), report);
+		}
+		res = json.toString("UTF-8");
+		assertTrue(res.startsWith("{\"filename\":\"invalidV1addition.xml\",\"datetime\":"));
+		assertTrue(res.contains(",\"xml\":{\"details\":\"<info>"));
+		assertTrue(res.contains("{\"severity\":\"error\""));
+		assertTrue(res.endsWith("\"summary\":{\"status\":\"invalid\"}}\n"));
+	}
+
 	public void testXR23Validation() {
 		File tempFile = getResourceAsFile("validXRV23.xml");
 		ZUGFeRDValidator zfv = new ZUGFeRDValidator();
@@ -294,4 +329,67 @@ public class ZUGFeRDValidatorTest extends ResourceCase {
 
 		assertThat(res).valueByXPath("/validation/xml/summary/@status").isEqualTo("invalid");
 	}
+
+	/***
+	 * the report of a parallel run has to be the same as a sequential one, apart from timestamp and durations
+	 */
+	public void testParallelValidationMatchesSequential() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (String resource : new String[]{"invalidPDF.pdf", "validXRechnung.pdf", "invalidXRV30.xml", "validV2FR.xml"}) {
+				File tempFile = getResourceAsFile(resource);
+
+				String sequential = new ZUGFeRDValidator().validate(tempFile.getAbsolutePath());
+
+				ZUGFeRDValidator zfv = new ZUGFeRDValidator();
+				zfv.setExecutor(executor);
+				String parallel = zfv.validate(tempFile.getAbsolutePath());
+
+				assertEquals(resource, withoutTimes(sequential), withoutTimes(parallel));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testMappedFileMatchesBytes() throws IOException {
+		for (String resource : new String[]{"validXRechnung.pdf", "validV2FR.xml"}) {
+			File tempFile = getResourceAsFile(resource);
+
+			String fromBytes = new ZUGFeRDValidator().validate(Files.readAllBytes(tempFile.toPath()), tempFile.getName());
+			ZUGFeRDValidator zfv = new ZUGFeRDValidator();
+			String mapped = zfv.validate(tempFile.toPath());
+
+			assertEquals(resource, withoutTimes(fromBytes), withoutTimes(mapped));
+			assertEquals(ZUGFeRDValidator.calcSHA1(Files.readAllBytes(tempFile.toPath())), zfv.getSHA1Checksum());
+		}
+	}
+
+	public void testMappedFileWithBOMMatchesBytes() throws IOException {
+		final byte[] xml = Files.readAllBytes(getResourceAsFile("validV2FR.xml").toPath());
+		final byte[] withBOM = new byte[xml.length + 3];
+		withBOM[0] = (byte) 0xEF;
+		withBOM[1] = (byte) 0xBB;
+		withBOM[2] = (byte) 0xBF;
+		System.arraycopy(xml, 0, withBOM, 3, xml.length);
+		final Path tempFile = Files.createTempFile("validV2FR-bom", ".xml");
+		try {
+			Files.write(tempFile, withBOM);
+			ZUGFeRDValidator fromBytes = new ZUGFeRDValidator();
+			String fromBytesReport = fromBytes.validate(withBOM, tempFile.getFileName().toString());
+			ZUGFeRDValidator zfv = new ZUGFeRDValidator();
+			String mapped = zfv.validate(tempFile);
+
+			assertEquals(withoutTimes(fromBytesReport), withoutTimes(mapped));
+			// the checksum of an XML file is calculated without the byte order mark
+			assertEquals(ZUGFeRDValidator.calcSHA1(xml), zfv.getSHA1Checksum());
+			assertEquals(ZUGFeRDValidator.calcSHA1(xml), fromBytes.getSHA1Checksum());
+		} finally {
+			Files.delete(tempFile);
+		}
+	}
+
+	private static String withoutTimes(String report) {
+		return report.replaceAll("datetime=\"[^\"]*\"", "").replaceAll("<duration unit=\"ms\">\\d+</duration>", "");
+	}
 }